@@ -0,0 +1,36 @@
+package com.reomor.locker.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}: regular JMH command line with the GC profiler
+ * (allocation rate and GC counts per operation) always on and JSON results in {@code jmh-result.json}.
+ * <p>
+ * Compare implementations side by side with {@code -p implementation=DEFAULT,METRICS}.
+ */
+public final class BenchmarkRunner {
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()) {
+      Main.main(args);
+      return;
+    }
+
+    new Runner(new OptionsBuilder()
+      .parent(commandLineOptions)
+      .addProfiler(GCProfiler.class)
+      .resultFormat(ResultFormatType.JSON)
+      .result("jmh-result.json")
+      .build())
+      .run();
+  }
+
+  private BenchmarkRunner() {
+  }
+}
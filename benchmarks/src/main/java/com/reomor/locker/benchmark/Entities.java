@@ -0,0 +1,46 @@
+package com.reomor.locker.benchmark;
+
+/**
+ * Entity classes used as lock namespaces.
+ */
+final class Entities {
+
+  static final class Order {
+  }
+
+  static final class Account {
+  }
+
+  // one class per thread of the escalation suite, so every escalation can succeed
+  static final Class<?>[] ISOLATED = {
+    Isolated0.class, Isolated1.class, Isolated2.class, Isolated3.class,
+    Isolated4.class, Isolated5.class, Isolated6.class, Isolated7.class
+  };
+
+  static final class Isolated0 {
+  }
+
+  static final class Isolated1 {
+  }
+
+  static final class Isolated2 {
+  }
+
+  static final class Isolated3 {
+  }
+
+  static final class Isolated4 {
+  }
+
+  static final class Isolated5 {
+  }
+
+  static final class Isolated6 {
+  }
+
+  static final class Isolated7 {
+  }
+
+  private Entities() {
+  }
+}
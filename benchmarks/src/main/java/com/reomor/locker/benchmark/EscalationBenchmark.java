@@ -0,0 +1,84 @@
+package com.reomor.locker.benchmark;
+
+import com.reomor.locker.EntityLocker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Escalation storm: every operation locks enough entities to escalate to the class global lock and releases it.
+ * Each thread works with its own entity class, so escalation always succeeds
+ * and the threads meet only in the locker internals.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EscalationBenchmark {
+
+  private static final AtomicInteger THREADS = new AtomicInteger();
+
+  @State(Scope.Benchmark)
+  public static class EscalationState {
+
+    @Param({"DEFAULT"})
+    public LockerImplementation implementation;
+
+    @Param({"10"})
+    public int globalEscalationThreshold;
+
+    EntityLocker<Long> locker;
+    Keys keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      locker = implementation.create(globalEscalationThreshold);
+      keys = Keys.uniform(globalEscalationThreshold);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadClass {
+
+    Class<?> entityClass;
+
+    @Setup
+    public void setUp() {
+      entityClass = Entities.ISOLATED[THREADS.getAndIncrement() % Entities.ISOLATED.length];
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void escalate1(EscalationState state, ThreadClass threadClass) throws InterruptedException {
+    escalate(state, threadClass.entityClass);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void escalate8(EscalationState state, ThreadClass threadClass) throws InterruptedException {
+    escalate(state, threadClass.entityClass);
+  }
+
+  private static void escalate(EscalationState state, Class<?> entityClass) throws InterruptedException {
+    for (int i = 0; i < state.keys.size(); i++) {
+      state.locker.lock(state.keys.get(i), entityClass);
+    }
+    // the last lock has escalated to the class global lock
+    state.locker.globalUnlock(entityClass);
+  }
+}
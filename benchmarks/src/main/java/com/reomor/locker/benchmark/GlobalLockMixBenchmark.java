@@ -0,0 +1,58 @@
+package com.reomor.locker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity traffic of one class while another thread keeps taking the global lock of that class.
+ * JMH reports both sides of the group separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GlobalLockMixBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class UniformKeys {
+    final Keys keys = Keys.uniform(1_000);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(7)
+  public void entityTraffic(LockerState state, UniformKeys keys) throws InterruptedException {
+    Long key = keys.keys.next();
+    state.locker.lock(key, Entities.Account.class);
+    try {
+      Blackhole.consumeCPU(20);
+    } finally {
+      state.locker.unlock(key, Entities.Account.class);
+    }
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public void globalLock(LockerState state) throws InterruptedException {
+    state.locker.globalLock(Entities.Account.class);
+    try {
+      Blackhole.consumeCPU(200);
+    } finally {
+      state.locker.globalUnlock(Entities.Account.class);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.reomor.locker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All threads fight for a single entity. Sample time mode reports the tail of the handoff latency.
+ * Compare entity lock kinds with {@code -p implementation=DEFAULT,QUEUED}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HotKeyBenchmark {
+
+  private static final Long HOT_KEY = 42L;
+
+  // a little work inside the protected code, so the lock is really held for a while
+  private static final int TOKENS = 50;
+
+  @Benchmark
+  @Threads(4)
+  public void hotKey4(LockerState state) throws InterruptedException {
+    lockUnlock(state);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void hotKey32(LockerState state) throws InterruptedException {
+    lockUnlock(state);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void hotKey64(LockerState state) throws InterruptedException {
+    lockUnlock(state);
+  }
+
+  @Benchmark
+  @Threads(128)
+  public void hotKey128(LockerState state) throws InterruptedException {
+    lockUnlock(state);
+  }
+
+  // the same work published to the thread that holds the lock
+  @Benchmark
+  @Threads(32)
+  public Object hotKeyCombine32(LockerState state) throws InterruptedException {
+    return combine(state);
+  }
+
+  @Benchmark
+  @Threads(128)
+  public Object hotKeyCombine128(LockerState state) throws InterruptedException {
+    return combine(state);
+  }
+
+  private static Object combine(LockerState state) throws InterruptedException {
+    return state.locker.combine(HOT_KEY, Entities.Order.class, () -> {
+      Blackhole.consumeCPU(TOKENS);
+      return HOT_KEY;
+    });
+  }
+
+  private static void lockUnlock(LockerState state) throws InterruptedException {
+    state.locker.lock(HOT_KEY, Entities.Order.class);
+    try {
+      Blackhole.consumeCPU(TOKENS);
+    } finally {
+      state.locker.unlock(HOT_KEY, Entities.Order.class);
+    }
+  }
+}
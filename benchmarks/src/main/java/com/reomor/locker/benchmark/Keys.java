@@ -0,0 +1,65 @@
+package com.reomor.locker.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pre-boxed entity ids and key distributions, so benchmarks measure locking and not boxing.
+ */
+final class Keys {
+
+  private final Long[] ids;
+  // cumulative probabilities, null for uniform distribution
+  private final double[] cdf;
+
+  private Keys(Long[] ids, double[] cdf) {
+    this.ids = ids;
+    this.cdf = cdf;
+  }
+
+  static Keys uniform(int size) {
+    return new Keys(ids(size), null);
+  }
+
+  /**
+   * @param size     number of distinct keys
+   * @param exponent skew, 0 is uniform, ~1 is typical for real traffic
+   */
+  static Keys zipf(int size, double exponent) {
+    double[] cdf = new double[size];
+    double sum = 0;
+    for (int rank = 1; rank <= size; rank++) {
+      sum += 1.0 / Math.pow(rank, exponent);
+      cdf[rank - 1] = sum;
+    }
+    for (int i = 0; i < size; i++) {
+      cdf[i] /= sum;
+    }
+    return new Keys(ids(size), cdf);
+  }
+
+  Long next() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (cdf == null) {
+      return ids[random.nextInt(ids.length)];
+    }
+    int index = Arrays.binarySearch(cdf, random.nextDouble());
+    return ids[Math.min(index >= 0 ? index : -index - 1, ids.length - 1)];
+  }
+
+  Long get(int index) {
+    return ids[index];
+  }
+
+  int size() {
+    return ids.length;
+  }
+
+  private static Long[] ids(int size) {
+    Long[] ids = new Long[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = (long) i;
+    }
+    return ids;
+  }
+}
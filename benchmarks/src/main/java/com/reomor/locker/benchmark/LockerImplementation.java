@@ -0,0 +1,89 @@
+package com.reomor.locker.benchmark;
+
+import com.reomor.locker.CanonicalizingEntityLocker;
+import com.reomor.locker.EntityLocker;
+import com.reomor.locker.EntityLockerConfig;
+import com.reomor.locker.EntityLockerImpl;
+import com.reomor.locker.EntityLockKind;
+
+/**
+ * Implementations under test, selected by the {@code implementation} JMH parameter:
+ * {@code -p implementation=DEFAULT,METRICS,CANONICAL} runs every suite for all of them side by side.
+ */
+public enum LockerImplementation {
+
+  DEFAULT {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(globalEscalationThreshold);
+    }
+  },
+
+  METRICS {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .globalEscalationThreshold(globalEscalationThreshold)
+        .metricsEnabled(true)
+        .build());
+    }
+  },
+
+  // every entity lock has a priority queue, all callers use the normal priority
+  PRIORITY {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .globalEscalationThreshold(globalEscalationThreshold)
+        .entityLockKind(EntityLockKind.PRIORITY)
+        .build());
+    }
+  },
+
+  // every entity lock is an MCS queue with direct handoff
+  QUEUED {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .globalEscalationThreshold(globalEscalationThreshold)
+        .entityLockKind(EntityLockKind.QUEUED)
+        .build());
+    }
+  },
+
+  // released entity locks stay in the table, warm keys lock without allocating
+  CACHED {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .globalEscalationThreshold(globalEscalationThreshold)
+        .idleLockCacheCapacity(IDLE_LOCKS)
+        .build());
+    }
+  },
+
+  // entities locked over and over by one thread skip the locker
+  BIASED {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .globalEscalationThreshold(globalEscalationThreshold)
+        .biasThreshold(BIAS_THRESHOLD)
+        .build());
+    }
+  },
+
+  // ids interned into canonical keys in front of the default locker
+  CANONICAL {
+    @Override
+    EntityLocker<Long> create(int globalEscalationThreshold) {
+      return new CanonicalizingEntityLocker<>(new EntityLockerImpl<>(globalEscalationThreshold));
+    }
+  };
+
+  // enough for the key sets of all suites
+  private static final int IDLE_LOCKS = 1 << 16;
+  private static final int BIAS_THRESHOLD = 4;
+
+  abstract EntityLocker<Long> create(int globalEscalationThreshold);
+}
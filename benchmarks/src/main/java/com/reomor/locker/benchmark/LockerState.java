@@ -0,0 +1,29 @@
+package com.reomor.locker.benchmark;
+
+import com.reomor.locker.EntityLocker;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Locker shared by all benchmark threads, a fresh one for every trial.
+ */
+@State(Scope.Benchmark)
+public class LockerState {
+
+  @Param({"DEFAULT"})
+  public LockerImplementation implementation;
+
+  // high enough to never escalate unless a suite asks for it
+  @Param({"1000000"})
+  public int globalEscalationThreshold;
+
+  public EntityLocker<Long> locker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    locker = implementation.create(globalEscalationThreshold);
+  }
+}
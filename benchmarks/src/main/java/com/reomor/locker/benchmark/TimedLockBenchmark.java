@@ -0,0 +1,72 @@
+package com.reomor.locker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code lock(id, class, timeout, unit)}: the uncontended cost and a hot key where some attempts time out.
+ * The number of failed attempts goes to the blackhole as {@code false}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TimedLockBenchmark {
+
+  private static final AtomicLong KEYS = new AtomicLong();
+  private static final Long HOT_KEY = 7L;
+
+  @State(Scope.Thread)
+  public static class ThreadKey {
+
+    Long key;
+
+    @Setup
+    public void setUp() {
+      key = KEYS.getAndIncrement() + 1_000;
+    }
+  }
+
+  @Param({"100"})
+  public long timeoutMicros;
+
+  @Benchmark
+  @Threads(1)
+  public boolean uncontended(LockerState state, ThreadKey threadKey) throws InterruptedException {
+    boolean locked = state.locker.lock(threadKey.key, Entities.Order.class, timeoutMicros, TimeUnit.MICROSECONDS);
+    if (locked) {
+      state.locker.unlock(threadKey.key, Entities.Order.class);
+    }
+    return locked;
+  }
+
+  @Benchmark
+  @Threads(8)
+  public boolean hotKey(LockerState state) throws InterruptedException {
+    boolean locked = state.locker.lock(HOT_KEY, Entities.Order.class, timeoutMicros, TimeUnit.MICROSECONDS);
+    if (locked) {
+      try {
+        Blackhole.consumeCPU(200);
+      } finally {
+        state.locker.unlock(HOT_KEY, Entities.Order.class);
+      }
+    }
+    return locked;
+  }
+}
@@ -0,0 +1,75 @@
+package com.reomor.locker.benchmark;
+
+import com.reomor.locker.EntityKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock/unlock of an entity nobody else touches: the cost of the bookkeeping alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UncontendedBenchmark {
+
+  private static final AtomicLong KEYS = new AtomicLong();
+
+  @State(Scope.Thread)
+  public static class ThreadKey {
+
+    Long key;
+    EntityKey<Long> entityKey;
+
+    @Setup
+    public void setUp() {
+      key = KEYS.getAndIncrement();
+      entityKey = EntityKey.of(key, Entities.Order.class);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void lockUnlock(LockerState state, ThreadKey threadKey) throws InterruptedException {
+    state.locker.lock(threadKey.key, Entities.Order.class);
+    state.locker.unlock(threadKey.key, Entities.Order.class);
+  }
+
+  // the key is built once, lock and unlock reuse its hash
+  @Benchmark
+  @Threads(1)
+  public void lockUnlockPrebuiltKey(LockerState state, ThreadKey threadKey) throws InterruptedException {
+    state.locker.lock(threadKey.entityKey);
+    state.locker.unlock(threadKey.entityKey);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void reentrantLockUnlock(LockerState state, ThreadKey threadKey) throws InterruptedException {
+    state.locker.lock(threadKey.key, Entities.Order.class);
+    state.locker.lock(threadKey.key, Entities.Order.class);
+    state.locker.unlock(threadKey.key, Entities.Order.class);
+    state.locker.unlock(threadKey.key, Entities.Order.class);
+  }
+
+  // different entities on different threads, only the locker internals are shared
+  @Benchmark
+  @Threads(8)
+  public void lockUnlockDisjointKeys(LockerState state, ThreadKey threadKey) throws InterruptedException {
+    state.locker.lock(threadKey.key, Entities.Order.class);
+    state.locker.unlock(threadKey.key, Entities.Order.class);
+  }
+}
@@ -0,0 +1,80 @@
+package com.reomor.locker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keys drawn from a Zipf distribution: a few hot entities and a long tail, from 1 to 64 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ZipfBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ZipfKeys {
+
+    @Param({"10000"})
+    public int keys;
+
+    @Param({"0.99"})
+    public double exponent;
+
+    Keys distribution;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      distribution = Keys.zipf(keys, exponent);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void threads1(LockerState state, ZipfKeys keys) throws InterruptedException {
+    lockUnlock(state, keys);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void threads4(LockerState state, ZipfKeys keys) throws InterruptedException {
+    lockUnlock(state, keys);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void threads16(LockerState state, ZipfKeys keys) throws InterruptedException {
+    lockUnlock(state, keys);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void threads64(LockerState state, ZipfKeys keys) throws InterruptedException {
+    lockUnlock(state, keys);
+  }
+
+  private static void lockUnlock(LockerState state, ZipfKeys keys) throws InterruptedException {
+    Long key = keys.distribution.next();
+    state.locker.lock(key, Entities.Order.class);
+    try {
+      Blackhole.consumeCPU(20);
+    } finally {
+      state.locker.unlock(key, Entities.Order.class);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.reomor.locker.loadgen;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random durations in nanoseconds: {@code 50us} (fixed), {@code uniform(10us,200us)}, {@code exp(100us)} (mean)
+ * or {@code lognormal(100us,1.0)} (median and sigma), a long tail of lock hold times is usually lognormal.
+ */
+final class DurationDistribution {
+
+  private enum Kind {FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL}
+
+  private final String spec;
+  private final Kind kind;
+  private final long first;
+  private final long second;
+  private final double sigma;
+
+  private DurationDistribution(String spec, Kind kind, long first, long second, double sigma) {
+    this.spec = spec;
+    this.kind = kind;
+    this.first = first;
+    this.second = second;
+    this.sigma = sigma;
+  }
+
+  static DurationDistribution parse(String spec) {
+    String trimmed = spec.trim();
+    int open = trimmed.indexOf('(');
+    if (open < 0) {
+      return new DurationDistribution(trimmed, Kind.FIXED, parseNanos(trimmed), 0, 0);
+    }
+    if (!trimmed.endsWith(")")) {
+      throw new IllegalArgumentException("Unbalanced parentheses in " + spec);
+    }
+    String[] args = trimmed.substring(open + 1, trimmed.length() - 1).split(",");
+    switch (trimmed.substring(0, open).trim()) {
+      case "uniform":
+        checkArgs(spec, args, 2);
+        long from = parseNanos(args[0]);
+        long to = parseNanos(args[1]);
+        if (to < from) {
+          throw new IllegalArgumentException("Empty range in " + spec);
+        }
+        return new DurationDistribution(trimmed, Kind.UNIFORM, from, to, 0);
+      case "exp":
+        checkArgs(spec, args, 1);
+        return new DurationDistribution(trimmed, Kind.EXPONENTIAL, parseNanos(args[0]), 0, 0);
+      case "lognormal":
+        checkArgs(spec, args, 2);
+        return new DurationDistribution(trimmed, Kind.LOGNORMAL, parseNanos(args[0]), 0, Double.parseDouble(args[1].trim()));
+      default:
+        throw new IllegalArgumentException("Unknown distribution " + spec + ", expected uniform, exp or lognormal");
+    }
+  }
+
+  long nextNanos(SplittableRandom random) {
+    switch (kind) {
+      case UNIFORM:
+        return first == second ? first : random.nextLong(first, second + 1);
+      case EXPONENTIAL:
+        return (long) (-first * Math.log(1 - random.nextDouble()));
+      case LOGNORMAL:
+        return (long) (first * Math.exp(sigma * gaussian(random)));
+      default:
+        return first;
+    }
+  }
+
+  /**
+   * @param value {@code 0}, {@code 750ns}, {@code 50us}, {@code 10ms} or {@code 2s}
+   */
+  static long parseNanos(String value) {
+    String trimmed = value.trim();
+    int unitStart = 0;
+    while (unitStart < trimmed.length() && (Character.isDigit(trimmed.charAt(unitStart)) || trimmed.charAt(unitStart) == '.')) {
+      unitStart++;
+    }
+    if (unitStart == 0) {
+      throw new IllegalArgumentException("Not a duration: " + value);
+    }
+    double amount = Double.parseDouble(trimmed.substring(0, unitStart));
+    String unit = trimmed.substring(unitStart).trim();
+    switch (unit) {
+      case "ns":
+        return (long) amount;
+      case "us":
+        return (long) (amount * TimeUnit.MICROSECONDS.toNanos(1));
+      case "ms":
+        return (long) (amount * TimeUnit.MILLISECONDS.toNanos(1));
+      case "s":
+        return (long) (amount * TimeUnit.SECONDS.toNanos(1));
+      case "":
+        if (amount == 0) {
+          return 0;
+        }
+        // fall through
+      default:
+        throw new IllegalArgumentException("Duration needs a unit (ns, us, ms, s): " + value);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return spec;
+  }
+
+  private static double gaussian(SplittableRandom random) {
+    // Box-Muller, SplittableRandom has no nextGaussian
+    double u = 1 - random.nextDouble();
+    return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+  }
+
+  private static void checkArgs(String spec, String[] args, int expected) {
+    if (args.length != expected) {
+      throw new IllegalArgumentException("Expected " + expected + " arguments in " + spec);
+    }
+  }
+}
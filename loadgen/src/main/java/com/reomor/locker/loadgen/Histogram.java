@@ -0,0 +1,75 @@
+package com.reomor.locker.loadgen;
+
+/**
+ * Single-writer log-linear histogram of nanoseconds: 16 sub-buckets per power of two, so percentiles are
+ * within ~6% of the real value. Every worker records into its own and they are merged at the end of a run.
+ */
+final class Histogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private long total;
+  private long max;
+
+  void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts[bucketOf(value)]++;
+    total++;
+    max = Math.max(max, value);
+  }
+
+  void add(Histogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+    max = Math.max(max, other.max);
+  }
+
+  long count() {
+    return total;
+  }
+
+  long maxNanos() {
+    return max;
+  }
+
+  /**
+   * @param percentile from 0 to 100
+   * @return upper bound of the bucket the percentile falls into, 0 for an empty histogram
+   */
+  long percentileNanos(double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestOf(i), max);
+      }
+    }
+    return max;
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  static long highestOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+    long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (exponent - SUB_BITS);
+    return lowest + (1L << (exponent - SUB_BITS)) - 1;
+  }
+}
@@ -0,0 +1,82 @@
+package com.reomor.locker.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Entity ids {@code 0..keys-1}: uniform, Zipf (low ids are the hot ones) or a hotspot,
+ * where a small share of the keys gets most of the traffic.
+ */
+final class KeyDistribution {
+
+  private final String description;
+  private final int keys;
+  // Zipf cumulative probabilities, null otherwise
+  private final double[] cdf;
+  // hotspot: keys [0, hotKeys) get hotShare of the traffic, 0 otherwise
+  private final int hotKeys;
+  private final double hotShare;
+
+  private KeyDistribution(String description, int keys, double[] cdf, int hotKeys, double hotShare) {
+    this.description = description;
+    this.keys = keys;
+    this.cdf = cdf;
+    this.hotKeys = hotKeys;
+    this.hotShare = hotShare;
+  }
+
+  static KeyDistribution uniform(int keys) {
+    return new KeyDistribution("uniform(" + keys + ")", checkKeys(keys), null, 0, 0);
+  }
+
+  /**
+   * @param exponent skew, 0 is uniform, ~1 is typical for real traffic
+   */
+  static KeyDistribution zipf(int keys, double exponent) {
+    double[] cdf = new double[checkKeys(keys)];
+    double sum = 0;
+    for (int rank = 1; rank <= keys; rank++) {
+      sum += 1.0 / Math.pow(rank, exponent);
+      cdf[rank - 1] = sum;
+    }
+    for (int i = 0; i < keys; i++) {
+      cdf[i] /= sum;
+    }
+    return new KeyDistribution("zipf(" + keys + ", " + exponent + ")", keys, cdf, 0, 0);
+  }
+
+  /**
+   * @param hotFraction share of the keys that are hot
+   * @param hotShare    share of the traffic that goes to the hot keys
+   */
+  static KeyDistribution hotspot(int keys, double hotFraction, double hotShare) {
+    if (hotFraction <= 0 || hotFraction >= 1 || hotShare < 0 || hotShare > 1) {
+      throw new IllegalArgumentException("Hotspot fractions must be in (0, 1): " + hotFraction + ", " + hotShare);
+    }
+    int hotKeys = Math.max(1, (int) (checkKeys(keys) * hotFraction));
+    return new KeyDistribution("hotspot(" + keys + ", " + hotFraction + ", " + hotShare + ")", keys, null, hotKeys, hotShare);
+  }
+
+  long next(SplittableRandom random) {
+    if (cdf != null) {
+      int index = Arrays.binarySearch(cdf, random.nextDouble());
+      return Math.min(index >= 0 ? index : -index - 1, keys - 1);
+    }
+    if (hotKeys > 0 && hotKeys < keys) {
+      return random.nextDouble() < hotShare ? random.nextInt(hotKeys) : random.nextInt(hotKeys, keys);
+    }
+    return random.nextInt(keys);
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+
+  private static int checkKeys(int keys) {
+    if (keys <= 0) {
+      throw new IllegalArgumentException("Key count must be positive: " + keys);
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,228 @@
+package com.reomor.locker.loadgen;
+
+import com.reomor.locker.EntityLocker;
+import com.reomor.locker.EntityLockerImpl;
+import com.reomor.locker.LockMetrics;
+import com.reomor.locker.LockMetricsSnapshot;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of {@code loadgen.jar}:
+ * <pre>
+ *   run [scenario.properties] [key=value ...]   synthetic workload, see {@link Scenario} for the keys
+ *   replay trace.elt [key=value ...]            operations of a recorded trace, one thread per recorded thread
+ * </pre>
+ * Common keys: {@code implementation=DEFAULT,QUEUED} and {@code globalEscalationThreshold=64,256,1000000}
+ * run every combination and print one report line each, so thresholds can be sized against the same traffic.
+ * {@code run} records its measured operations with {@code trace=file}, {@code replay} keeps the recorded pace
+ * scaled by {@code speed} (1 by default, 0 replays as fast as possible). Calls shed by admission control
+ * ({@code maxWaitersPerEntity}, {@code maxWaitersPerClass}, {@code rejectLikelyTimeouts}) are reported as rejected.
+ */
+public final class LoadGenerator {
+
+  private static final String USAGE = "usage: run [scenario.properties] [key=value ...] | replay <trace> [key=value ...]";
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    int next = 1;
+    Path file = null;
+    if (args.length > 1 && !args[1].contains("=")) {
+      file = Path.of(args[1]);
+      next = 2;
+    }
+    Properties properties = new Properties();
+    if (file != null && "run".equals(args[0])) {
+      try (Reader reader = Files.newBufferedReader(file)) {
+        properties.load(reader);
+      }
+    }
+    for (int i = next; i < args.length; i++) {
+      int equals = args[i].indexOf('=');
+      if (equals < 0) {
+        throw new IllegalArgumentException("Expected key=value: " + args[i] + "\n" + USAGE);
+      }
+      properties.setProperty(args[i].substring(0, equals).trim(), args[i].substring(equals + 1).trim());
+    }
+
+    List<String> implementations = List.of(properties.getProperty("implementation", "DEFAULT").split(","));
+    List<Integer> thresholds = new ArrayList<>();
+    for (String threshold : properties.getProperty("globalEscalationThreshold", "1000000").split(",")) {
+      thresholds.add(Integer.parseInt(threshold.trim()));
+    }
+
+    switch (args[0]) {
+      case "run": {
+        Scenario scenario = Scenario.of(file != null ? file.getFileName().toString() : "default", properties);
+        String trace = properties.getProperty("trace");
+        System.out.println(scenario);
+        Report.printHeader(System.out);
+        boolean first = true;
+        for (String implementation : implementations) {
+          for (int threshold : thresholds) {
+            // one trace is enough, every run of the scenario draws the same operations
+            Path tracePath = first && trace != null ? Path.of(trace) : null;
+            run(scenario, implementation.trim(), threshold, properties, tracePath).print(System.out);
+            first = false;
+          }
+        }
+        break;
+      }
+      case "replay": {
+        if (file == null) {
+          throw new IllegalArgumentException("Trace file is missing\n" + USAGE);
+        }
+        Trace trace = Trace.read(file);
+        double speed = Double.parseDouble(properties.getProperty("speed", "1"));
+        System.out.println(file + ": " + trace.threads() + " threads, " + trace.size() + " operations, classes " + trace.classNames);
+        Report.printHeader(System.out);
+        for (String implementation : implementations) {
+          for (int threshold : thresholds) {
+            replay(trace, speed, implementation.trim(), threshold, properties).print(System.out);
+          }
+        }
+        break;
+      }
+      default:
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+  }
+
+  static Report run(Scenario scenario, String implementation, int threshold, Properties properties, Path tracePath)
+    throws InterruptedException, IOException {
+
+    EntityLocker<Long> locker = LockerFactory.create(implementation, threshold, properties);
+    Worker.Control control = new Worker.Control();
+    TraceWriter traceWriter = tracePath != null ? new TraceWriter(tracePath, scenario.classNames, System.nanoTime()) : null;
+    try {
+      List<Worker> workers = new ArrayList<>(scenario.threads);
+      for (int i = 0; i < scenario.threads; i++) {
+        SplittableRandom random = scenario.random(i);
+        Worker.Source source = () -> {
+          if (control.stopped) {
+            return null;
+          }
+          Worker.pause(scenario.thinkTime.nextNanos(random));
+          return scenario.next(random);
+        };
+        workers.add(new Worker(locker, source, control, traceWriter != null ? traceWriter.thread(i) : null));
+      }
+      List<Thread> threads = start(workers);
+
+      TimeUnit.NANOSECONDS.sleep(scenario.warmupNanos);
+      long measureStart = System.nanoTime();
+      control.measuring = true;
+      TimeUnit.NANOSECONDS.sleep(scenario.durationNanos);
+      control.stopped = true;
+      long measured = System.nanoTime() - measureStart;
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      return report(implementation, threshold, locker, workers, measured);
+    } finally {
+      if (traceWriter != null) {
+        traceWriter.close();
+      }
+      close(locker);
+    }
+  }
+
+  static Report replay(Trace trace, double speed, String implementation, int threshold, Properties properties) throws InterruptedException {
+    if (trace.classNames.size() > Namespaces.size()) {
+      throw new IllegalArgumentException("At most " + Namespaces.size() + " classes are supported: " + trace.classNames);
+    }
+    EntityLocker<Long> locker = LockerFactory.create(implementation, threshold, properties);
+    Worker.Control control = new Worker.Control();
+    control.measuring = true;
+    try {
+      // the trace starts with its first operation, not with the warmup of the recorded run
+      long firstMicros = Long.MAX_VALUE;
+      for (long[] starts : trace.starts) {
+        if (starts.length > 0) {
+          firstMicros = Math.min(firstMicros, starts[0]);
+        }
+      }
+      long offsetMicros = firstMicros;
+      long startNanos = System.nanoTime();
+
+      List<Worker> workers = new ArrayList<>(trace.threads());
+      for (int i = 0; i < trace.threads(); i++) {
+        long[] starts = trace.starts.get(i);
+        List<Operation> operations = trace.operations.get(i);
+        int[] position = new int[1];
+        Worker.Source source = () -> {
+          int index = position[0]++;
+          if (index == operations.size()) {
+            return null;
+          }
+          if (speed > 0) {
+            Worker.pauseUntil(startNanos + (long) ((starts[index] - offsetMicros) * 1000 / speed));
+          }
+          return operations.get(index);
+        };
+        workers.add(new Worker(locker, source, control, null));
+      }
+      List<Thread> threads = start(workers);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      return report(implementation, threshold, locker, workers, System.nanoTime() - startNanos);
+    } finally {
+      close(locker);
+    }
+  }
+
+  private static List<Thread> start(List<Worker> workers) {
+    List<Thread> threads = new ArrayList<>(workers.size());
+    for (int i = 0; i < workers.size(); i++) {
+      Thread thread = new Thread(workers.get(i), "loadgen-" + i);
+      thread.setDaemon(true);
+      threads.add(thread);
+      thread.start();
+    }
+    return threads;
+  }
+
+  private static Report report(String implementation, int threshold, EntityLocker<Long> locker,
+                               List<Worker> workers, long measuredNanos) {
+    Worker.Stats total = new Worker.Stats();
+    workers.forEach(worker -> total.add(worker.stats()));
+    return new Report(implementation, threshold, measuredNanos, total, escalations(locker));
+  }
+
+  private static long escalations(EntityLocker<Long> locker) {
+    if (!(locker instanceof EntityLockerImpl)) {
+      return -1;
+    }
+    LockMetrics metrics = ((EntityLockerImpl<Long>) locker).getMetrics();
+    if (metrics == null) {
+      return -1;
+    }
+    return metrics.snapshot().values().stream().mapToLong(LockMetricsSnapshot::getEscalations).sum();
+  }
+
+  private static void close(EntityLocker<Long> locker) {
+    if (locker instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable) locker).close();
+      } catch (Exception ignore) {
+        /* NOP */
+      }
+    }
+  }
+
+  private LoadGenerator() {
+  }
+}
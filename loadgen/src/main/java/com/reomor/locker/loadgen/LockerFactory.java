@@ -0,0 +1,74 @@
+package com.reomor.locker.loadgen;
+
+import com.reomor.locker.CanonicalizingEntityLocker;
+import com.reomor.locker.EntityLocker;
+import com.reomor.locker.EntityLockerConfig;
+import com.reomor.locker.EntityLockerImpl;
+import com.reomor.locker.EntityLockKind;
+
+import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Implementation under load, by name: {@code DEFAULT}, {@code METRICS}, {@code PRIORITY}, {@code QUEUED}, {@code CANONICAL}
+ * or the class name of any {@link EntityLocker} with a public {@code (int globalEscalationThreshold)} or no-arg constructor.
+ * <p>
+ * Built-in implementations also take admission control settings from the run properties:
+ * {@code maxWaitersPerEntity}, {@code maxWaitersPerClass} and {@code rejectLikelyTimeouts},
+ * the idle lock cache ones: {@code idleLockCacheCapacity} and {@code idleLockTimeout} in milliseconds,
+ * {@code lockTrace}, the file of the binary lock trace, {@code biasThreshold}
+ * and partition escalation: {@code partitionEscalationThreshold} and {@code escalationPartitions}.
+ */
+final class LockerFactory {
+
+  @SuppressWarnings("unchecked")
+  static EntityLocker<Long> create(String implementation, int globalEscalationThreshold, Properties properties) {
+    switch (implementation) {
+      case "DEFAULT":
+        return new EntityLockerImpl<>(config(globalEscalationThreshold, properties).build());
+      case "METRICS":
+        return new EntityLockerImpl<>(config(globalEscalationThreshold, properties).metricsEnabled(true).build());
+      case "PRIORITY":
+        return new EntityLockerImpl<>(config(globalEscalationThreshold, properties).entityLockKind(EntityLockKind.PRIORITY).build());
+      case "QUEUED":
+        return new EntityLockerImpl<>(config(globalEscalationThreshold, properties).entityLockKind(EntityLockKind.QUEUED).build());
+      case "CANONICAL":
+        return new CanonicalizingEntityLocker<>(new EntityLockerImpl<>(config(globalEscalationThreshold, properties).build()));
+      default:
+        break;
+    }
+    try {
+      Class<?> clazz = Class.forName(implementation);
+      if (!EntityLocker.class.isAssignableFrom(clazz)) {
+        throw new IllegalArgumentException(implementation + " is not an EntityLocker");
+      }
+      try {
+        Constructor<?> withThreshold = clazz.getConstructor(int.class);
+        return (EntityLocker<Long>) withThreshold.newInstance(globalEscalationThreshold);
+      } catch (NoSuchMethodException e) {
+        return (EntityLocker<Long>) clazz.getConstructor().newInstance();
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Cannot create implementation " + implementation, e);
+    }
+  }
+
+  private static EntityLockerConfig.EntityLockerConfigBuilder config(int globalEscalationThreshold, Properties properties) {
+    return EntityLockerConfig.builder()
+      .globalEscalationThreshold(globalEscalationThreshold)
+      .maxWaitersPerEntity(Integer.parseInt(properties.getProperty("maxWaitersPerEntity", "0")))
+      .maxWaitersPerClass(Integer.parseInt(properties.getProperty("maxWaitersPerClass", "0")))
+      .rejectLikelyTimeouts(Boolean.parseBoolean(properties.getProperty("rejectLikelyTimeouts", "false")))
+      .idleLockCacheCapacity(Integer.parseInt(properties.getProperty("idleLockCacheCapacity", "0")))
+      .idleLockTimeout(Duration.ofMillis(Long.parseLong(properties.getProperty("idleLockTimeout", "30000"))))
+      .traceFile(properties.containsKey("lockTrace") ? Path.of(properties.getProperty("lockTrace")) : null)
+      .biasThreshold(Integer.parseInt(properties.getProperty("biasThreshold", "0")))
+      .partitionEscalationThreshold(Integer.parseInt(properties.getProperty("partitionEscalationThreshold", "0")))
+      .escalationPartitions(Integer.parseInt(properties.getProperty("escalationPartitions", "16")));
+  }
+
+  private LockerFactory() {
+  }
+}
@@ -0,0 +1,75 @@
+package com.reomor.locker.loadgen;
+
+/**
+ * Placeholder entity classes, the lockers only need distinct {@code Class} objects as namespaces.
+ * Scenario and trace classes are mapped onto them by position.
+ */
+final class Namespaces {
+
+  private static final Class<?>[] CLASSES = {
+    N0.class, N1.class, N2.class, N3.class, N4.class, N5.class, N6.class, N7.class,
+    N8.class, N9.class, N10.class, N11.class, N12.class, N13.class, N14.class, N15.class
+  };
+
+  static Class<?> of(int index) {
+    if (index < 0 || index >= CLASSES.length) {
+      throw new IllegalArgumentException("At most " + CLASSES.length + " entity classes are supported, got index " + index);
+    }
+    return CLASSES[index];
+  }
+
+  static int size() {
+    return CLASSES.length;
+  }
+
+  static final class N0 {
+  }
+
+  static final class N1 {
+  }
+
+  static final class N2 {
+  }
+
+  static final class N3 {
+  }
+
+  static final class N4 {
+  }
+
+  static final class N5 {
+  }
+
+  static final class N6 {
+  }
+
+  static final class N7 {
+  }
+
+  static final class N8 {
+  }
+
+  static final class N9 {
+  }
+
+  static final class N10 {
+  }
+
+  static final class N11 {
+  }
+
+  static final class N12 {
+  }
+
+  static final class N13 {
+  }
+
+  static final class N14 {
+  }
+
+  static final class N15 {
+  }
+
+  private Namespaces() {
+  }
+}
@@ -0,0 +1,46 @@
+package com.reomor.locker.loadgen;
+
+/**
+ * One unit of work: lock a set of entities or a whole class, hold it, unlock.
+ * Classes are indexes into the scenario (or trace) class list.
+ */
+final class Operation {
+
+  static final long UNTIMED = -1;
+
+  // class of a global lock, -1 for entity locks
+  final int globalClass;
+  // entity lock set, empty for a global lock
+  final int[] classes;
+  final long[] ids;
+  final long holdNanos;
+  // UNTIMED for lock() without a timeout
+  final long timeoutNanos;
+
+  private Operation(int globalClass, int[] classes, long[] ids, long holdNanos, long timeoutNanos) {
+    this.globalClass = globalClass;
+    this.classes = classes;
+    this.ids = ids;
+    this.holdNanos = holdNanos;
+    this.timeoutNanos = timeoutNanos;
+  }
+
+  static Operation entities(int[] classes, long[] ids, long holdNanos, long timeoutNanos) {
+    if (classes.length == 0 || classes.length != ids.length) {
+      throw new IllegalArgumentException("Lock set needs a class for every id");
+    }
+    return new Operation(-1, classes, ids, holdNanos, timeoutNanos);
+  }
+
+  static Operation global(int clazz, long holdNanos) {
+    return new Operation(clazz, new int[0], new long[0], holdNanos, UNTIMED);
+  }
+
+  boolean isGlobal() {
+    return globalClass >= 0;
+  }
+
+  boolean isTimed() {
+    return timeoutNanos != UNTIMED;
+  }
+}
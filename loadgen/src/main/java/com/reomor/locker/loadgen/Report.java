@@ -0,0 +1,57 @@
+package com.reomor.locker.loadgen;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of one run: throughput, timeout rate and lock wait percentiles of the measured operations.
+ * Timed out operations are counted in the timeout rate and left out of the wait percentiles,
+ * so are operations rejected by admission control of the locker.
+ */
+final class Report {
+
+  private static final String HEADER_FORMAT = "%-12s %10s %12s %9s %9s %9s %9s %9s %9s %9s %11s %11s%n";
+  private static final String ROW_FORMAT = "%-12s %10d %12.0f %8.3f%% %8.3f%% %9.1f %9.1f %9.1f %9.1f %9.1f %11.1f %11s%n";
+
+  private final String implementation;
+  private final int globalEscalationThreshold;
+  private final long measuredNanos;
+  private final Worker.Stats stats;
+  // -1 when the locker has no metrics
+  private final long escalations;
+
+  Report(String implementation, int globalEscalationThreshold, long measuredNanos, Worker.Stats stats, long escalations) {
+    this.implementation = implementation;
+    this.globalEscalationThreshold = globalEscalationThreshold;
+    this.measuredNanos = measuredNanos;
+    this.stats = stats;
+    this.escalations = escalations;
+  }
+
+  static void printHeader(PrintStream out) {
+    out.printf(HEADER_FORMAT, "impl", "threshold", "ops/s", "timeouts", "rejected",
+      "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "global p99", "escalations");
+  }
+
+  void print(PrintStream out) {
+    out.printf(ROW_FORMAT, implementation, globalEscalationThreshold,
+      throughput(),
+      stats.timedOperations == 0 ? 0.0 : 100.0 * stats.timeouts / stats.timedOperations,
+      stats.operations == 0 ? 0.0 : 100.0 * stats.rejections / stats.operations,
+      micros(stats.entityWait.percentileNanos(50)),
+      micros(stats.entityWait.percentileNanos(90)),
+      micros(stats.entityWait.percentileNanos(99)),
+      micros(stats.entityWait.percentileNanos(99.9)),
+      micros(stats.entityWait.maxNanos()),
+      micros(stats.globalWait.percentileNanos(99)),
+      escalations < 0 ? "n/a" : String.valueOf(escalations));
+  }
+
+  double throughput() {
+    return measuredNanos == 0 ? 0 : stats.operations * (double) TimeUnit.SECONDS.toNanos(1) / measuredNanos;
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+}
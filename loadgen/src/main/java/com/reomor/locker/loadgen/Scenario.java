@@ -0,0 +1,132 @@
+package com.reomor.locker.loadgen;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic workload read from properties, every key is optional:
+ * <pre>
+ *   threads=16
+ *   warmup=2s
+ *   duration=10s
+ *   seed=42
+ *   # entity classes and their share of the lock set entries
+ *   classes=order:70,account:25,customer:5
+ *   # uniform, zipf or hotspot over ids 0..keyCount-1
+ *   keys=zipf
+ *   keyCount=10000
+ *   zipfExponent=0.99
+ *   hotspotKeys=0.01
+ *   hotspotShare=0.9
+ *   # entities locked together, larger sets go through LockRequest
+ *   lockSetSizes=1:80,2:15,4:5
+ *   holdTime=lognormal(50us,1.0)
+ *   thinkTime=0
+ *   # none is lock() without a timeout
+ *   timeouts=none:50,10ms:30,100ms:20
+ *   # share of the operations that lock a whole class instead
+ *   globalLockRate=0.0001
+ *   globalHoldTime=1ms
+ * </pre>
+ */
+final class Scenario {
+
+  final String name;
+  final int threads;
+  final long warmupNanos;
+  final long durationNanos;
+  final long seed;
+  final List<String> classNames;
+  final Weighted<Integer> classes;
+  final KeyDistribution keys;
+  final Weighted<Integer> lockSetSizes;
+  final DurationDistribution holdTime;
+  final DurationDistribution thinkTime;
+  final Weighted<Long> timeouts;
+  final double globalLockRate;
+  final DurationDistribution globalHoldTime;
+
+  private Scenario(String name, Properties properties) {
+    this.name = name;
+    this.threads = positive(properties, "threads", Integer.parseInt(properties.getProperty("threads", "8")));
+    this.warmupNanos = DurationDistribution.parseNanos(properties.getProperty("warmup", "2s"));
+    this.durationNanos = DurationDistribution.parseNanos(properties.getProperty("duration", "10s"));
+    this.seed = Long.parseLong(properties.getProperty("seed", "42"));
+
+    List<String> names = Weighted.parse(properties.getProperty("classes", "order"), String::trim).values();
+    if (names.size() > Namespaces.size()) {
+      throw new IllegalArgumentException("At most " + Namespaces.size() + " classes are supported: " + names);
+    }
+    this.classNames = names;
+    this.classes = Weighted.parse(properties.getProperty("classes", "order"), names::indexOf);
+
+    int keyCount = Integer.parseInt(properties.getProperty("keyCount", "10000"));
+    String keys = properties.getProperty("keys", "uniform");
+    switch (keys) {
+      case "uniform":
+        this.keys = KeyDistribution.uniform(keyCount);
+        break;
+      case "zipf":
+        this.keys = KeyDistribution.zipf(keyCount, Double.parseDouble(properties.getProperty("zipfExponent", "0.99")));
+        break;
+      case "hotspot":
+        this.keys = KeyDistribution.hotspot(keyCount,
+          Double.parseDouble(properties.getProperty("hotspotKeys", "0.01")),
+          Double.parseDouble(properties.getProperty("hotspotShare", "0.9")));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown key distribution " + keys + ", expected uniform, zipf or hotspot");
+    }
+
+    this.lockSetSizes = Weighted.parse(properties.getProperty("lockSetSizes", "1"),
+      size -> positive(properties, "lockSetSizes", Integer.parseInt(size)));
+    this.holdTime = DurationDistribution.parse(properties.getProperty("holdTime", "10us"));
+    this.thinkTime = DurationDistribution.parse(properties.getProperty("thinkTime", "0"));
+    this.timeouts = Weighted.parse(properties.getProperty("timeouts", "none"),
+      timeout -> "none".equals(timeout) ? Operation.UNTIMED : DurationDistribution.parseNanos(timeout));
+    this.globalLockRate = Double.parseDouble(properties.getProperty("globalLockRate", "0"));
+    if (globalLockRate < 0 || globalLockRate > 1) {
+      throw new IllegalArgumentException("globalLockRate must be in [0, 1]: " + globalLockRate);
+    }
+    this.globalHoldTime = DurationDistribution.parse(properties.getProperty("globalHoldTime", "1ms"));
+  }
+
+  static Scenario of(String name, Properties properties) {
+    return new Scenario(name, properties);
+  }
+
+  Operation next(SplittableRandom random) {
+    if (globalLockRate > 0 && random.nextDouble() < globalLockRate) {
+      return Operation.global(classes.next(random), globalHoldTime.nextNanos(random));
+    }
+    int size = lockSetSizes.next(random);
+    int[] lockClasses = new int[size];
+    long[] ids = new long[size];
+    for (int i = 0; i < size; i++) {
+      lockClasses[i] = classes.next(random);
+      ids[i] = keys.next(random);
+    }
+    return Operation.entities(lockClasses, ids, holdTime.nextNanos(random), timeouts.next(random));
+  }
+
+  /**
+   * @return random numbers of a worker, the same for every run of the scenario
+   */
+  SplittableRandom random(int worker) {
+    return new SplittableRandom(seed * 31 + worker);
+  }
+
+  @Override
+  public String toString() {
+    return name + ": " + threads + " threads, classes " + classNames + ", keys " + keys
+      + ", hold " + holdTime + ", think " + thinkTime + ", global lock rate " + globalLockRate;
+  }
+
+  private static int positive(Properties properties, String key, int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(key + " must be positive: " + properties.getProperty(key));
+    }
+    return value;
+  }
+}
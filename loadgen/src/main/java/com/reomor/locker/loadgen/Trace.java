@@ -0,0 +1,125 @@
+package com.reomor.locker.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operations of a recorded {@link TraceFormat} file, per thread in start order.
+ */
+final class Trace {
+
+  final List<String> classNames;
+  // per recorded thread: start offsets (us) and operations
+  final List<long[]> starts;
+  final List<List<Operation>> operations;
+
+  private Trace(List<String> classNames, List<long[]> starts, List<List<Operation>> operations) {
+    this.classNames = classNames;
+    this.starts = starts;
+    this.operations = operations;
+  }
+
+  static Trace read(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != TraceFormat.MAGIC) {
+        throw new IOException(path + " is not a lock trace");
+      }
+      int version = in.readUnsignedByte();
+      if (version != TraceFormat.VERSION) {
+        throw new IOException("Unsupported trace version " + version);
+      }
+      int classCount = TraceFormat.readVarInt(in);
+      List<String> classNames = new ArrayList<>(classCount);
+      for (int i = 0; i < classCount; i++) {
+        classNames.add(in.readUTF());
+      }
+
+      List<ThreadRecords> threads = new ArrayList<>();
+      while (true) {
+        int thread;
+        try {
+          thread = TraceFormat.readVarInt(in);
+        } catch (EOFException end) {
+          break;
+        }
+        byte[] chunk = new byte[TraceFormat.readVarInt(in)];
+        in.readFully(chunk);
+        while (threads.size() <= thread) {
+          threads.add(new ThreadRecords());
+        }
+        threads.get(thread).read(chunk, classCount);
+      }
+
+      List<long[]> starts = new ArrayList<>(threads.size());
+      List<List<Operation>> operations = new ArrayList<>(threads.size());
+      for (ThreadRecords records : threads) {
+        long[] threadStarts = new long[records.starts.size()];
+        for (int i = 0; i < threadStarts.length; i++) {
+          threadStarts[i] = records.starts.get(i);
+        }
+        starts.add(threadStarts);
+        operations.add(records.operations);
+      }
+      return new Trace(List.copyOf(classNames), starts, operations);
+    }
+  }
+
+  int threads() {
+    return operations.size();
+  }
+
+  long size() {
+    return operations.stream().mapToLong(List::size).sum();
+  }
+
+  private static final class ThreadRecords {
+
+    private final List<Long> starts = new ArrayList<>();
+    private final List<Operation> operations = new ArrayList<>();
+    private long lastStartMicros;
+
+    private void read(byte[] chunk, int classCount) throws IOException {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(chunk));
+      while (in.available() > 0) {
+        lastStartMicros += TraceFormat.readZigZag(in);
+        int flags = in.readUnsignedByte();
+        Operation operation;
+        if ((flags & TraceFormat.GLOBAL) != 0) {
+          int clazz = checkClass(TraceFormat.readVarInt(in), classCount);
+          operation = Operation.global(clazz, micros(TraceFormat.readVarLong(in)));
+        } else {
+          int size = TraceFormat.readVarInt(in);
+          int[] classes = new int[size];
+          long[] ids = new long[size];
+          for (int i = 0; i < size; i++) {
+            classes[i] = checkClass(TraceFormat.readVarInt(in), classCount);
+            ids[i] = TraceFormat.readZigZag(in);
+          }
+          long holdNanos = micros(TraceFormat.readVarLong(in));
+          long timeoutNanos = (flags & TraceFormat.TIMED) != 0 ? micros(TraceFormat.readVarLong(in)) : Operation.UNTIMED;
+          operation = Operation.entities(classes, ids, holdNanos, timeoutNanos);
+        }
+        starts.add(lastStartMicros);
+        operations.add(operation);
+      }
+    }
+
+    private static long micros(long micros) {
+      return micros * 1000;
+    }
+
+    private static int checkClass(int clazz, int classCount) throws IOException {
+      if (clazz >= classCount) {
+        throw new IOException("Malformed trace, class " + clazz + " of " + classCount);
+      }
+      return clazz;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.reomor.locker.loadgen;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary lock trace:
+ * <pre>
+ *   header: int magic "ELTR", byte version, varint class count, class names (modified UTF-8)
+ *   chunk*: varint thread, varint length, records of the thread
+ *   record: varlong start delta (us, zigzag, from the previous record of the thread)
+ *           byte flags (GLOBAL, TIMED)
+ *           GLOBAL: varint class
+ *           else:   varint set size, (varint class, varlong id zigzag)*
+ *           varlong hold (us)
+ *           TIMED:  varlong timeout (us)
+ * </pre>
+ * Chunks of different threads interleave, records of one thread are in start order, so a trace is written as it goes.
+ */
+final class TraceFormat {
+
+  static final int MAGIC = 0x454C5452;
+  static final int VERSION = 1;
+
+  static final int GLOBAL = 1;
+  static final int TIMED = 2;
+
+  static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  static void writeZigZag(DataOutput out, long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  static long readZigZag(DataInput in) throws IOException {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static int readVarInt(DataInput in) throws IOException {
+    long value = readVarLong(in);
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new IOException("Malformed trace, value out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  static long toMicros(long nanos) {
+    return (nanos + 500) / 1000;
+  }
+
+  private TraceFormat() {
+  }
+}
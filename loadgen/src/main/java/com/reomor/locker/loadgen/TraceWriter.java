@@ -0,0 +1,103 @@
+package com.reomor.locker.loadgen;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes operations of a run into a {@link TraceFormat} file, every worker buffers its own records
+ * and appends them as a chunk once the buffer is full.
+ */
+final class TraceWriter implements Closeable {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final DataOutputStream out;
+  private final long startNanos;
+
+  TraceWriter(Path path, List<String> classNames, long startNanos) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    this.startNanos = startNanos;
+    out.writeInt(TraceFormat.MAGIC);
+    out.writeByte(TraceFormat.VERSION);
+    TraceFormat.writeVarLong(out, classNames.size());
+    for (String className : classNames) {
+      out.writeUTF(className);
+    }
+  }
+
+  ThreadTrace thread(int thread) {
+    return new ThreadTrace(thread);
+  }
+
+  private synchronized void append(int thread, ByteArrayOutputStream chunk) {
+    try {
+      TraceFormat.writeVarLong(out, thread);
+      TraceFormat.writeVarLong(out, chunk.size());
+      chunk.writeTo(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  /**
+   * Records of one worker thread, not thread safe
+   */
+  final class ThreadTrace {
+
+    private final int thread;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE);
+    private final DataOutputStream data = new DataOutputStream(buffer);
+    private long lastStartMicros;
+
+    private ThreadTrace(int thread) {
+      this.thread = thread;
+    }
+
+    void record(long startNanos, Operation operation) {
+      try {
+        long startMicros = TraceFormat.toMicros(startNanos - TraceWriter.this.startNanos);
+        TraceFormat.writeZigZag(data, startMicros - lastStartMicros);
+        lastStartMicros = startMicros;
+        data.writeByte((operation.isGlobal() ? TraceFormat.GLOBAL : 0) | (operation.isTimed() ? TraceFormat.TIMED : 0));
+        if (operation.isGlobal()) {
+          TraceFormat.writeVarLong(data, operation.globalClass);
+        } else {
+          TraceFormat.writeVarLong(data, operation.ids.length);
+          for (int i = 0; i < operation.ids.length; i++) {
+            TraceFormat.writeVarLong(data, operation.classes[i]);
+            TraceFormat.writeZigZag(data, operation.ids[i]);
+          }
+        }
+        TraceFormat.writeVarLong(data, TraceFormat.toMicros(operation.holdNanos));
+        if (operation.isTimed()) {
+          TraceFormat.writeVarLong(data, TraceFormat.toMicros(operation.timeoutNanos));
+        }
+      } catch (IOException e) {
+        // in-memory stream
+        throw new UncheckedIOException(e);
+      }
+      if (buffer.size() >= CHUNK_SIZE) {
+        flush();
+      }
+    }
+
+    void flush() {
+      if (buffer.size() > 0) {
+        append(thread, buffer);
+        buffer.reset();
+      }
+    }
+  }
+}
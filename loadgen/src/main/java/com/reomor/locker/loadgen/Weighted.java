@@ -0,0 +1,64 @@
+package com.reomor.locker.loadgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Weighted choice from a spec like {@code 1:80,2:15,4:5}, an entry without a weight weighs 1.
+ *
+ * @param <T> value type
+ */
+final class Weighted<T> {
+
+  private final List<T> values;
+  // cumulative weights
+  private final double[] cdf;
+
+  private Weighted(List<T> values, double[] cdf) {
+    this.values = values;
+    this.cdf = cdf;
+  }
+
+  static <T> Weighted<T> parse(String spec, Function<String, T> valueParser) {
+    List<T> values = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (String entry : spec.split(",")) {
+      String trimmed = entry.trim();
+      int colon = trimmed.lastIndexOf(':');
+      values.add(valueParser.apply(colon < 0 ? trimmed : trimmed.substring(0, colon).trim()));
+      double weight = colon < 0 ? 1 : Double.parseDouble(trimmed.substring(colon + 1).trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Negative weight in " + spec);
+      }
+      weights.add(weight);
+    }
+    double[] cdf = new double[weights.size()];
+    double sum = 0;
+    for (int i = 0; i < cdf.length; i++) {
+      sum += weights.get(i);
+      cdf[i] = sum;
+    }
+    if (sum <= 0) {
+      throw new IllegalArgumentException("No positive weight in " + spec);
+    }
+    return new Weighted<>(List.copyOf(values), cdf);
+  }
+
+  T next(SplittableRandom random) {
+    if (cdf.length == 1) {
+      return values.get(0);
+    }
+    double point = random.nextDouble() * cdf[cdf.length - 1];
+    int index = Arrays.binarySearch(cdf, point);
+    // exact hit on a boundary belongs to the next entry
+    index = index >= 0 ? index + 1 : -index - 1;
+    return values.get(Math.min(index, values.size() - 1));
+  }
+
+  List<T> values() {
+    return values;
+  }
+}
@@ -0,0 +1,217 @@
+package com.reomor.locker.loadgen;
+
+import com.reomor.locker.EntityLocker;
+import com.reomor.locker.LockRejectedException;
+import com.reomor.locker.LockRequest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs operations of one source against the locker and keeps its own statistics,
+ * only operations started while the run is measuring are counted.
+ */
+final class Worker implements Runnable {
+
+  // shorter holds and pauses spin, parking is too coarse for them
+  private static final long SPIN_LIMIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  // LockRequest has no untimed lock
+  private static final long UNTIMED_REQUEST_DAYS = 1;
+
+  @FunctionalInterface
+  interface Source {
+
+    /**
+     * @return the next operation, null when the worker is done
+     */
+    Operation next() throws InterruptedException;
+  }
+
+  static final class Control {
+
+    volatile boolean measuring;
+    volatile boolean stopped;
+  }
+
+  private final EntityLocker<Long> locker;
+  private final Source source;
+  private final Control control;
+  private final TraceWriter.ThreadTrace trace;
+  private final Stats stats = new Stats();
+
+  Worker(EntityLocker<Long> locker, Source source, Control control, TraceWriter.ThreadTrace trace) {
+    this.locker = locker;
+    this.source = source;
+    this.control = control;
+    this.trace = trace;
+  }
+
+  @Override
+  public void run() {
+    try {
+      Operation operation;
+      while ((operation = source.next()) != null) {
+        boolean measured = control.measuring;
+        long startNanos = System.nanoTime();
+        if (measured && trace != null) {
+          trace.record(startNanos, operation);
+        }
+        try {
+          execute(operation, startNanos, measured);
+        } catch (LockRejectedException e) {
+          // shed by admission control, nothing is locked
+          if (measured) {
+            stats.rejected(operation.isTimed());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (trace != null) {
+        trace.flush();
+      }
+    }
+  }
+
+  Stats stats() {
+    return stats;
+  }
+
+  private void execute(Operation operation, long startNanos, boolean measured) throws InterruptedException {
+    if (operation.isGlobal()) {
+      Class<?> clazz = Namespaces.of(operation.globalClass);
+      locker.globalLock(clazz);
+      long waitNanos = System.nanoTime() - startNanos;
+      try {
+        pause(operation.holdNanos);
+      } finally {
+        locker.globalUnlock(clazz);
+      }
+      if (measured) {
+        stats.global(waitNanos);
+      }
+      return;
+    }
+
+    if (operation.ids.length == 1) {
+      Long id = operation.ids[0];
+      Class<?> clazz = Namespaces.of(operation.classes[0]);
+      boolean locked = true;
+      if (operation.isTimed()) {
+        locked = locker.lock(id, clazz, operation.timeoutNanos, TimeUnit.NANOSECONDS);
+      } else {
+        locker.lock(id, clazz);
+      }
+      long waitNanos = System.nanoTime() - startNanos;
+      if (locked) {
+        try {
+          pause(operation.holdNanos);
+        } finally {
+          locker.unlock(id, clazz);
+        }
+      }
+      if (measured) {
+        stats.entities(operation.isTimed(), locked, waitNanos);
+      }
+      return;
+    }
+
+    LockRequest.Builder<Long> builder = LockRequest.builder();
+    for (int i = 0; i < operation.ids.length; i++) {
+      builder.entity(Namespaces.of(operation.classes[i]), operation.ids[i]);
+    }
+    LockRequest<Long> request = builder.build();
+    boolean locked = operation.isTimed()
+      ? locker.lock(request, operation.timeoutNanos, TimeUnit.NANOSECONDS)
+      : locker.lock(request, UNTIMED_REQUEST_DAYS, TimeUnit.DAYS);
+    long waitNanos = System.nanoTime() - startNanos;
+    if (locked) {
+      try {
+        pause(operation.holdNanos);
+      } finally {
+        locker.unlock(request);
+      }
+    }
+    if (measured) {
+      stats.entities(operation.isTimed(), locked, waitNanos);
+    }
+  }
+
+  /**
+   * Hold a lock or think between operations
+   */
+  static void pause(long nanos) throws InterruptedException {
+    if (nanos <= 0) {
+      return;
+    }
+    long deadline = System.nanoTime() + nanos;
+    if (nanos < SPIN_LIMIT_NANOS) {
+      while (System.nanoTime() < deadline) {
+        Thread.onSpinWait();
+      }
+      return;
+    }
+    pauseUntil(deadline);
+  }
+
+  static void pauseUntil(long deadlineNanos) throws InterruptedException {
+    long remaining;
+    while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /**
+   * Counters and wait times of one worker, merged into the run report
+   */
+  static final class Stats {
+
+    long operations;
+    long timedOperations;
+    long timeouts;
+    long rejections;
+    long globalOperations;
+    final Histogram entityWait = new Histogram();
+    final Histogram globalWait = new Histogram();
+
+    void entities(boolean timed, boolean locked, long waitNanos) {
+      operations++;
+      if (timed) {
+        timedOperations++;
+      }
+      if (!locked) {
+        timeouts++;
+        return;
+      }
+      entityWait.record(waitNanos);
+    }
+
+    void rejected(boolean timed) {
+      operations++;
+      if (timed) {
+        timedOperations++;
+      }
+      rejections++;
+    }
+
+    void global(long waitNanos) {
+      operations++;
+      globalOperations++;
+      globalWait.record(waitNanos);
+    }
+
+    void add(Stats other) {
+      operations += other.operations;
+      timedOperations += other.timedOperations;
+      timeouts += other.timeouts;
+      rejections += other.rejections;
+      globalOperations += other.globalOperations;
+      entityWait.add(other.entityWait);
+      globalWait.add(other.globalWait);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.reomor.locker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fail-fast limits in front of the entity lock queues.
+ * <p>
+ * Limits are checked before a caller queues, without the locker internal lock, so a burst of concurrent callers
+ * can overshoot them a bit, they are meant for shedding pile-ups, not for exact accounting.
+ * The predicted wait is the number of threads ahead (the holder included) times the recent hold time of the class,
+ * an exponentially weighted moving average of released entity locks.
+ */
+class AdmissionControl {
+
+  // weight of a new hold time is 1/2^HOLD_TIME_SHIFT
+  private static final int HOLD_TIME_SHIFT = 3;
+
+  private final int maxWaitersPerEntity;
+  private final int maxWaitersPerClass;
+  private final boolean rejectLikelyTimeouts;
+  private final Map<Class<?>, ClassAdmission> classes = new ConcurrentHashMap<>();
+
+  AdmissionControl(EntityLockerConfig config) {
+    this.maxWaitersPerEntity = config.getMaxWaitersPerEntity();
+    this.maxWaitersPerClass = config.getMaxWaitersPerClass();
+    this.rejectLikelyTimeouts = config.isRejectLikelyTimeouts();
+  }
+
+  static boolean isEnabled(EntityLockerConfig config) {
+    return config.getMaxWaitersPerEntity() > 0 || config.getMaxWaitersPerClass() > 0 || config.isRejectLikelyTimeouts();
+  }
+
+  ClassAdmission of(Class<?> clazz) {
+    ClassAdmission admission = classes.get(clazz);
+    return admission != null ? admission : classes.computeIfAbsent(clazz, ignore -> new ClassAdmission());
+  }
+
+  /**
+   * @param entityLock   lock of the entity, null if nobody holds or waits for it
+   * @param timeoutNanos timeout of the call, negative for lock without a timeout
+   * @throws LockRejectedException the call must not queue
+   */
+  void admit(TrackedLock entityLock, Object entityId, Class<?> clazz, long timeoutNanos) {
+    if (entityLock == null || !entityLock.isLocked() || entityLock.isHeldByCurrentThread()) {
+      return;
+    }
+    int waiters = entityLock.queuedWaiters();
+    ClassAdmission admission = of(clazz);
+    if (maxWaitersPerEntity > 0 && waiters >= maxWaitersPerEntity) {
+      throw new LockRejectedException(clazz, entityId, LockRejectedException.Reason.ENTITY_WAITERS,
+        waiters, admission.predictWaitNanos(waiters));
+    }
+    if (maxWaitersPerClass > 0 && admission.waiters.get() >= maxWaitersPerClass) {
+      throw new LockRejectedException(clazz, entityId, LockRejectedException.Reason.CLASS_WAITERS,
+        waiters, admission.predictWaitNanos(waiters));
+    }
+    if (rejectLikelyTimeouts && timeoutNanos >= 0) {
+      long predictedWaitNanos = admission.predictWaitNanos(waiters);
+      if (predictedWaitNanos > timeoutNanos) {
+        throw new LockRejectedException(clazz, entityId, LockRejectedException.Reason.PREDICTED_TIMEOUT,
+          waiters, predictedWaitNanos);
+      }
+    }
+  }
+
+  /**
+   * @return predicted wait for the entity lock, 0 if it is free or held by the current thread
+   */
+  long predictWaitNanos(TrackedLock entityLock, Class<?> clazz) {
+    if (entityLock == null || !entityLock.isLocked() || entityLock.isHeldByCurrentThread()) {
+      return 0;
+    }
+    return of(clazz).predictWaitNanos(entityLock.queuedWaiters());
+  }
+
+  static final class ClassAdmission {
+
+    // threads of the class that queue for an entity lock right now
+    final AtomicInteger waiters = new AtomicInteger();
+    // racy updates may lose a sample, that is fine for an average
+    private volatile long holdTimeNanos;
+
+    void released(long holdNanos) {
+      long average = holdTimeNanos;
+      holdTimeNanos = average == 0 ? holdNanos : average + ((holdNanos - average) >> HOLD_TIME_SHIFT);
+    }
+
+    long predictWaitNanos(int waiters) {
+      // the holder and everybody in front
+      return (waiters + 1) * holdTimeNanos;
+    }
+  }
+}
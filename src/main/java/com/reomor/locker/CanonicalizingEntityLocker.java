@@ -0,0 +1,159 @@
+package com.reomor.locker;
+
+import lombok.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link EntityLocker} that passes canonical {@link EntityKey} instances to the wrapped locker.
+ * Worth it when ids are freshly parsed Strings or UUIDs: they are hashed once here, and then
+ * lock and unlock find the lock of the entity by reference.
+ *
+ * @param <ID> identifier type
+ */
+public class CanonicalizingEntityLocker<ID> implements EntityLocker<ID> {
+
+  private final EntityLocker<ID> delegate;
+  private final IdInterner<ID> interner;
+
+  public CanonicalizingEntityLocker(@NonNull EntityLocker<ID> delegate) {
+    this(delegate, new IdInterner<>());
+  }
+
+  public CanonicalizingEntityLocker(@NonNull EntityLocker<ID> delegate, @NonNull IdInterner<ID> interner) {
+    this.delegate = delegate;
+    this.interner = interner;
+  }
+
+  @Override
+  public boolean globalLock(Class<?> clazz) throws InterruptedException {
+    return delegate.globalLock(clazz);
+  }
+
+  @Override
+  public void globalUnlock(Class<?> clazz) {
+    delegate.globalUnlock(clazz);
+  }
+
+  @Override
+  public boolean lock(ID entityId, Class<?> clazz) throws InterruptedException {
+    return delegate.lock(interner.intern(entityId, clazz));
+  }
+
+  @Override
+  public boolean lock(ID entityId, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.lock(interner.intern(entityId, clazz), timeout, timeUnit);
+  }
+
+  @Override
+  public boolean lock(ID entityId, Class<?> clazz, int priority) throws InterruptedException {
+    return delegate.lock(interner.intern(entityId, clazz), priority);
+  }
+
+  @Override
+  public boolean lock(ID entityId, Class<?> clazz, int priority, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.lock(interner.intern(entityId, clazz), priority, timeout, timeUnit);
+  }
+
+  @Override
+  public void unlock(ID entityId, Class<?> clazz) {
+    delegate.unlock(interner.intern(entityId, clazz));
+  }
+
+  @Override
+  public boolean lock(EntityKey<ID> key) throws InterruptedException {
+    return delegate.lock(interner.intern(key));
+  }
+
+  @Override
+  public boolean lock(EntityKey<ID> key, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.lock(interner.intern(key), timeout, timeUnit);
+  }
+
+  @Override
+  public boolean lock(EntityKey<ID> key, int priority) throws InterruptedException {
+    return delegate.lock(interner.intern(key), priority);
+  }
+
+  @Override
+  public boolean lock(EntityKey<ID> key, int priority, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.lock(interner.intern(key), priority, timeout, timeUnit);
+  }
+
+  @Override
+  public void unlock(EntityKey<ID> key) {
+    delegate.unlock(interner.intern(key));
+  }
+
+  // ranges are ordered by value, interning gains nothing there
+  @Override
+  public boolean lockRange(ID from, ID to, Class<?> clazz) throws InterruptedException {
+    return delegate.lockRange(from, to, clazz);
+  }
+
+  @Override
+  public boolean lockRange(ID from, ID to, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.lockRange(from, to, clazz, timeout, timeUnit);
+  }
+
+  @Override
+  public void unlockRange(ID from, ID to, Class<?> clazz) {
+    delegate.unlockRange(from, to, clazz);
+  }
+
+  @Override
+  public long tryOptimisticRead(ID entityId, Class<?> clazz) {
+    return delegate.tryOptimisticRead(entityId, clazz);
+  }
+
+  @Override
+  public boolean validate(ID entityId, Class<?> clazz, long stamp) {
+    return delegate.validate(entityId, clazz, stamp);
+  }
+
+  @Override
+  public void transfer(ID entityId, Class<?> clazz, Thread target) {
+    delegate.transfer(interner.intern(entityId, clazz), target);
+  }
+
+  @Override
+  public void transfer(EntityKey<ID> key, Thread target) {
+    delegate.transfer(interner.intern(key), target);
+  }
+
+  @Override
+  public long version(ID entityId, Class<?> clazz) {
+    return delegate.version(entityId, clazz);
+  }
+
+  @Override
+  public boolean awaitCondition(ID entityId, Class<?> clazz, String name, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return delegate.awaitCondition(entityId, clazz, name, timeout, timeUnit);
+  }
+
+  @Override
+  public void awaitCondition(ID entityId, Class<?> clazz, String name) throws InterruptedException {
+    delegate.awaitCondition(entityId, clazz, name);
+  }
+
+  @Override
+  public void signal(ID entityId, Class<?> clazz, String name) {
+    delegate.signal(entityId, clazz, name);
+  }
+
+  @Override
+  public void signalAll(ID entityId, Class<?> clazz, String name) {
+    delegate.signalAll(entityId, clazz, name);
+  }
+
+  @Override
+  public <T> T combine(ID entityId, Class<?> clazz, Supplier<T> operation) throws InterruptedException {
+    return delegate.combine(interner.intern(entityId, clazz), operation);
+  }
+
+  @Override
+  public <T> T combine(EntityKey<ID> key, Supplier<T> operation) throws InterruptedException {
+    return delegate.combine(interner.intern(key), operation);
+  }
+}
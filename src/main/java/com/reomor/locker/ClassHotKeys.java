@@ -0,0 +1,71 @@
+package com.reomor.locker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-saving heavy hitters of one entity class: at most capacity counters, when a new id comes
+ * and the table is full it takes the counter with the smallest count and inherits it as the error.
+ * Any id queued more than total/capacity times is guaranteed to be in the table.
+ * <p>
+ * Updated only by threads that already had to queue for an entity lock, so the monitor and
+ * the linear search of the minimum are cheap compared to the wait itself.
+ */
+class ClassHotKeys {
+
+  private final Class<?> clazz;
+  private final int capacity;
+  private final Map<Object, Counter> counters;
+
+  ClassHotKeys(Class<?> clazz, int capacity) {
+    this.clazz = clazz;
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 2);
+  }
+
+  synchronized void contended(Object entityId, long waitNanos) {
+    Counter counter = counters.get(entityId);
+    if (counter == null) {
+      if (counters.size() < capacity) {
+        counter = new Counter(entityId, 0);
+      } else {
+        Counter min = counters.values().stream().min(Comparator.comparingLong(c -> c.count)).orElseThrow();
+        counters.remove(min.entityId);
+        counter = new Counter(entityId, min.count);
+      }
+      counters.put(entityId, counter);
+    }
+    counter.count++;
+    counter.waitNanos += waitNanos;
+  }
+
+  synchronized List<HotKey> top(int limit) {
+    List<HotKey> result = new ArrayList<>(counters.size());
+    for (Counter counter : counters.values()) {
+      result.add(new HotKey(clazz, counter.entityId, counter.count, counter.error, counter.waitNanos));
+    }
+    result.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+    return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+  }
+
+  synchronized void reset() {
+    counters.clear();
+  }
+
+  private static class Counter {
+
+    private final Object entityId;
+    private final long error;
+    private long count;
+    private long waitNanos;
+
+    Counter(Object entityId, long count) {
+      this.entityId = entityId;
+      this.error = count;
+      this.count = count;
+    }
+  }
+}
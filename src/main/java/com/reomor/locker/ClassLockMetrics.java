@@ -0,0 +1,79 @@
+package com.reomor.locker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of one entity class.
+ * Counters are striped ({@link LongAdder}) so concurrent lockers of the class do not fight for one cache line.
+ */
+class ClassLockMetrics {
+
+  private final Class<?> clazz;
+
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder contendedAcquisitions = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder escalations = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+  private final LongAdder globalLockAcquisitions = new LongAdder();
+  private final LongAdder globalLockWaits = new LongAdder();
+
+  private final LatencyHistogram entityWaitTime = new LatencyHistogram();
+  private final LatencyHistogram globalLockWaitTime = new LatencyHistogram();
+  private final LatencyHistogram holdTime = new LatencyHistogram();
+
+  ClassLockMetrics(Class<?> clazz) {
+    this.clazz = clazz;
+  }
+
+  void entityAcquired(long waitNanos, boolean contended) {
+    acquisitions.increment();
+    if (contended) {
+      contendedAcquisitions.increment();
+    }
+    entityWaitTime.record(waitNanos);
+  }
+
+  void entityReleased(long holdNanos) {
+    holdTime.record(holdNanos);
+  }
+
+  void classLockAcquired(long waitNanos, boolean contended) {
+    if (contended) {
+      globalLockWaits.increment();
+    }
+    globalLockWaitTime.record(waitNanos);
+  }
+
+  void globalLockAcquired() {
+    globalLockAcquisitions.increment();
+  }
+
+  void timedOut() {
+    timeouts.increment();
+  }
+
+  void escalated() {
+    escalations.increment();
+  }
+
+  void rejected() {
+    rejections.increment();
+  }
+
+  LockMetricsSnapshot snapshot() {
+    return LockMetricsSnapshot.builder()
+      .entityClass(clazz)
+      .acquisitions(acquisitions.sum())
+      .contendedAcquisitions(contendedAcquisitions.sum())
+      .timeouts(timeouts.sum())
+      .escalations(escalations.sum())
+      .rejections(rejections.sum())
+      .globalLockAcquisitions(globalLockAcquisitions.sum())
+      .globalLockWaits(globalLockWaits.sum())
+      .entityWaitTime(entityWaitTime.snapshot())
+      .globalLockWaitTime(globalLockWaitTime.snapshot())
+      .holdTime(holdTime.snapshot())
+      .build();
+  }
+}
@@ -0,0 +1,237 @@
+package com.reomor.locker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entities biased to the thread that keeps locking them, see {@link EntityLockerConfig#getBiasThreshold()}.
+ * <p>
+ * The owner of a bias locks and unlocks the entity with a single CAS of the bias state, the lock of the entity,
+ * the class global lock and the maps of the locker are not touched. Any other thread revokes the bias before
+ * it goes for the lock of the entity: an idle bias is revoked by a CAS, a held one is marked and the owner
+ * finishes the revocation with its last unlock. Class global lockers revoke the biases of other threads
+ * of the class while they hold the class global lock, see {@link #heldByOthers(Class)}.
+ * <p>
+ * Biases are granted on the last release of the lock of the entity with nobody else around, guarded by the inner
+ * lock of the locker like the lock table.
+ */
+class EntityBiases {
+
+  private final int threshold;
+  private final int capacity;
+  private final Map<EntityKey<?>, Bias> biases = new ConcurrentHashMap<>();
+  // guarded by the inner lock of the locker
+  private final Map<EntityKey<?>, Streak> streaks = new HashMap<>();
+
+  EntityBiases(int threshold, int capacity) {
+    this.threshold = threshold;
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return null if the entity is not biased to the current thread
+   */
+  Bias ofCurrentThread(EntityKey<?> key) {
+    Bias bias = biases.get(key);
+    return bias != null && bias.owner == Thread.currentThread() ? bias : null;
+  }
+
+  boolean isHeld(EntityKey<?> key) {
+    Bias bias = biases.get(key);
+    return bias != null && bias.holds() > 0;
+  }
+
+  /**
+   * Revoke the bias of another thread before locking the entity, waits while the owner holds it
+   *
+   * @return false on timeout, the bias goes with the last unlock of the owner then
+   */
+  boolean revoke(EntityKey<?> key, boolean timed, long deadlineNanos) throws InterruptedException {
+    while (true) {
+      Bias bias = biases.get(key);
+      if (bias == null || bias.owner == Thread.currentThread()) {
+        return true;
+      }
+      if (!bias.requestRevocation()) {
+        if (!bias.awaitRevoked(timed, deadlineNanos)) {
+          return false;
+        }
+      }
+      biases.remove(key, bias);
+    }
+  }
+
+  /**
+   * Revoke biases of other threads of the class, called with the class global lock and the inner lock
+   *
+   * @return true while some of them are held, their owners wake up class global lockers when they are done
+   */
+  boolean heldByOthers(Class<?> clazz) {
+    boolean held = false;
+    Thread current = Thread.currentThread();
+    for (Map.Entry<EntityKey<?>, Bias> entry : biases.entrySet()) {
+      Bias bias = entry.getValue();
+      if (entry.getKey().getEntityClass() != clazz || bias.owner == current) {
+        continue;
+      }
+      if (bias.requestRevocation()) {
+        biases.remove(entry.getKey(), bias);
+      } else {
+        held = true;
+      }
+    }
+    return held;
+  }
+
+  /**
+   * The last release of the lock of the entity by the current thread, nobody else holds it or waits for it.
+   * Called with the inner lock of the locker.
+   */
+  void released(EntityKey<?> key) {
+    if (biases.containsKey(key)) {
+      return;
+    }
+    Thread current = Thread.currentThread();
+    Streak streak = streaks.get(key);
+    if (streak == null || streak.thread != current) {
+      if (streaks.size() >= capacity) {
+        streaks.clear();
+      }
+      streak = new Streak(current);
+      streaks.put(key, streak);
+    }
+    if (++streak.locks < threshold) {
+      return;
+    }
+    streaks.remove(key);
+    if (biases.size() >= capacity) {
+      dropBiasesOfDeadThreads();
+    }
+    if (biases.size() < capacity) {
+      biases.put(key, new Bias(current));
+    }
+  }
+
+  /**
+   * The owner has finished the revocation by its last unlock or gives the bias up itself
+   */
+  void revoked(EntityKey<?> key, Bias bias) {
+    biases.remove(key, bias);
+    bias.revoked();
+  }
+
+  private void dropBiasesOfDeadThreads() {
+    biases.values().removeIf(bias -> !bias.owner.isAlive() && bias.requestRevocation());
+  }
+
+  static final class Bias {
+
+    private static final int REVOKED = -1;
+    // set by a revoker while the owner holds the entity
+    private static final int PENDING = 1 << 30;
+    private static final int HOLDS = PENDING - 1;
+
+    private final Thread owner;
+    // holds of the owner and PENDING, or REVOKED
+    private final AtomicInteger state = new AtomicInteger();
+
+    private Bias(Thread owner) {
+      this.owner = owner;
+    }
+
+    /**
+     * Called by the owner
+     *
+     * @return holds after the lock, 0 if the bias is revoked
+     */
+    int lock() {
+      while (true) {
+        int current = state.get();
+        if (current == REVOKED) {
+          return 0;
+        }
+        if (state.compareAndSet(current, current + 1)) {
+          return (current & HOLDS) + 1;
+        }
+      }
+    }
+
+    /**
+     * Called by the owner while it holds the entity
+     *
+     * @return true if the unlock has finished the revocation
+     */
+    boolean unlock() {
+      while (true) {
+        int current = state.get();
+        int next = current == (PENDING | 1) ? REVOKED : current - 1;
+        if (state.compareAndSet(current, next)) {
+          return next == REVOKED;
+        }
+      }
+    }
+
+    int holds() {
+      int current = state.get();
+      return current == REVOKED ? 0 : current & HOLDS;
+    }
+
+    /**
+     * Called by the owner while it holds the entity, the holds go to the lock of the entity
+     */
+    void giveUp() {
+      state.set(REVOKED);
+    }
+
+    /**
+     * @return true if the bias is revoked, otherwise the owner holds the entity and revokes the bias later
+     */
+    private boolean requestRevocation() {
+      while (true) {
+        int current = state.get();
+        if (current == REVOKED) {
+          return true;
+        }
+        if (current == 0) {
+          if (state.compareAndSet(0, REVOKED)) {
+            return true;
+          }
+        } else if ((current & PENDING) != 0 || state.compareAndSet(current, current | PENDING)) {
+          return false;
+        }
+      }
+    }
+
+    private synchronized boolean awaitRevoked(boolean timed, long deadlineNanos) throws InterruptedException {
+      while (state.get() != REVOKED) {
+        if (!timed) {
+          wait();
+          continue;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return true;
+    }
+
+    private synchronized void revoked() {
+      notifyAll();
+    }
+  }
+
+  private static final class Streak {
+
+    private final Thread thread;
+    private int locks;
+
+    private Streak(Thread thread) {
+      this.thread = thread;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.reomor.locker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Named condition of an entity, kept by its {@link TrackedLock} and dropped with it.
+ * <p>
+ * Works the same for every {@link EntityLockKind}: a waiter joins the queue while it holds the entity lock,
+ * so a signal can not slip in between, then releases all its holds and parks until it is signalled.
+ * The queue is guarded by the entity lock.
+ */
+class EntityCondition {
+
+  private final Deque<Waiter> waiters = new ArrayDeque<>(2);
+
+  /**
+   * @param timeoutNanos negative to wait without a timeout
+   * @return false on timeout, the entity lock is held again either way
+   * @throws InterruptedException the entity lock is held again, a waiter that has been signalled returns instead
+   *                              with the interrupt status set, like {@link java.util.concurrent.locks.Condition}
+   */
+  static boolean await(TrackedLock entityLock, String name, long timeoutNanos) throws InterruptedException {
+    EntityCondition condition = entityLock.condition(name, true);
+    Waiter waiter = new Waiter(Thread.currentThread());
+    condition.waiters.addLast(waiter);
+    // the lock stays in the lock table while the thread is away
+    entityLock.enter();
+    int holds = entityLock.getHoldCount();
+    for (int i = 0; i < holds; i++) {
+      entityLock.unlock();
+    }
+
+    boolean interrupted = false;
+    long deadlineNanos = System.nanoTime() + timeoutNanos;
+    while (!waiter.signalled) {
+      if (Thread.interrupted()) {
+        interrupted = true;
+        break;
+      }
+      if (timeoutNanos < 0) {
+        LockSupport.park(condition);
+        continue;
+      }
+      long remaining = deadlineNanos - System.nanoTime();
+      if (remaining <= 0) {
+        break;
+      }
+      LockSupport.parkNanos(condition, remaining);
+    }
+
+    for (int i = 0; i < holds; i++) {
+      entityLock.lock();
+    }
+    entityLock.leave();
+    // a signal that came after the timeout still counts
+    boolean signalled = waiter.signalled;
+    if (!signalled) {
+      condition.waiters.remove(waiter);
+      entityLock.removeConditionIfUnused(name, condition);
+    }
+    if (interrupted) {
+      if (!signalled) {
+        throw new InterruptedException();
+      }
+      // the signaller has taken the waiter off the queue, throwing would lose the signal
+      Thread.currentThread().interrupt();
+    }
+    return signalled;
+  }
+
+  /**
+   * Called by the holder of the entity lock
+   */
+  static void signal(TrackedLock entityLock, String name, boolean all) {
+    EntityCondition condition = entityLock.condition(name, false);
+    if (condition == null) {
+      return;
+    }
+    do {
+      Waiter waiter = condition.waiters.pollFirst();
+      if (waiter == null) {
+        break;
+      }
+      waiter.signalled = true;
+      LockSupport.unpark(waiter.thread);
+    } while (all);
+    entityLock.removeConditionIfUnused(name, condition);
+  }
+
+  boolean isUnused() {
+    return waiters.isEmpty();
+  }
+
+  private static final class Waiter {
+
+    private final Thread thread;
+    private volatile boolean signalled;
+
+    private Waiter(Thread thread) {
+      this.thread = thread;
+    }
+  }
+}
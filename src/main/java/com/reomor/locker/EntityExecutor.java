@@ -0,0 +1,378 @@
+package com.reomor.locker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the protected code of an entity on a single writer thread instead of locking the entity.
+ * <p>
+ * Entities are addressed the same way as in {@link EntityLocker} and spread over partitions by the hash of their {@link EntityKey}.
+ * Every partition has a bounded queue and one worker, so tasks of an entity run one after another in submission order
+ * and nobody takes a lock. A worker takes up to {@link EntityExecutorConfig#getMaxBatch()} tasks at once and runs
+ * the queued tasks of the same entity back to back.
+ * <p>
+ * A full partition makes submitters wait for its worker, other partitions are not affected.
+ * Tasks must not wait for other tasks of the executor: the worker they wait for may be their own one.
+ *
+ * @param <ID> identifier type
+ */
+public class EntityExecutor<ID> implements AutoCloseable {
+
+  // marks the end of the work of a partition
+  private static final Job STOP = new Job(null, () -> { }, new CompletableFuture<>());
+
+  private final Partition[] partitions;
+  // barriers must be queued in the same order in every partition, otherwise workers wait for each other
+  private final ReentrantLock globalSubmitLock = new ReentrantLock();
+  private volatile boolean closed;
+
+  public EntityExecutor() {
+    this(EntityExecutorConfig.defaults());
+  }
+
+  public EntityExecutor(EntityExecutorConfig config) {
+    if (config.getPartitions() <= 0 || config.getPartitionCapacity() <= 0 || config.getMaxBatch() <= 0) {
+      throw new IllegalArgumentException("Partitions, partition capacity and batch size must be positive");
+    }
+    this.partitions = new Partition[config.getPartitions()];
+    for (int i = 0; i < partitions.length; i++) {
+      partitions[i] = new Partition(config, config.getThreadNamePrefix() + "-" + i);
+    }
+    for (Partition partition : partitions) {
+      partition.worker.start();
+    }
+  }
+
+  /**
+   * Queue a task of the entity, waits while the partition of the entity is full
+   *
+   * @param entityId entity identifier
+   * @param clazz    entity type
+   * @param task     protected code, runs after the tasks of the entity submitted before it
+   * @return result of the task
+   * @throws InterruptedException       thread have been interrupted while the partition was full
+   * @throws RejectedExecutionException the executor is closed
+   */
+  @ThreadSafeIMHO
+  public <T> CompletableFuture<T> submit(ID entityId, Class<?> clazz, Callable<T> task) throws InterruptedException {
+    return submit(EntityKey.of(entityId, clazz), task);
+  }
+
+  @ThreadSafeIMHO
+  public <T> CompletableFuture<T> submit(@NotNull EntityKey<ID> key, Callable<T> task) throws InterruptedException {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Job job = new Job(key, call(task, future), future);
+    Partition partition = partition(key);
+    checkOpen();
+    partition.queue.put(job);
+    withdrawIfClosed(partition, job);
+    return future;
+  }
+
+  /**
+   * Attempt to queue a task of the entity
+   *
+   * @param entityId entity identifier
+   * @param clazz    entity type
+   * @param task     protected code, runs after the tasks of the entity submitted before it
+   * @param timeout  how long to wait while the partition of the entity is full
+   * @param timeUnit timeout unit
+   * @return result of the task, null when the partition stayed full
+   * @throws InterruptedException       thread have been interrupted while the partition was full
+   * @throws RejectedExecutionException the executor is closed
+   */
+  @ThreadSafeIMHO
+  @Nullable
+  public <T> CompletableFuture<T> submit(ID entityId, Class<?> clazz, Callable<T> task, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return submit(EntityKey.of(entityId, clazz), task, timeout, timeUnit);
+  }
+
+  @ThreadSafeIMHO
+  @Nullable
+  public <T> CompletableFuture<T> submit(@NotNull EntityKey<ID> key, Callable<T> task, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Job job = new Job(key, call(task, future), future);
+    Partition partition = partition(key);
+    checkOpen();
+    if (!partition.queue.offer(job, timeout, timeUnit)) {
+      return null;
+    }
+    withdrawIfClosed(partition, job);
+    return future;
+  }
+
+  /**
+   * Counterpart of {@link EntityLocker#globalLock(Class)}: the task runs after every task submitted before it
+   * and no task runs until it is done.
+   * All partitions are drained and stopped, not only the ones with entities of the class,
+   * so workers keep no per class state.
+   *
+   * @param clazz entity type
+   * @param task  protected code
+   * @return result of the task
+   * @throws InterruptedException       thread have been interrupted while a partition was full, the task is cancelled
+   * @throws RejectedExecutionException the executor is closed
+   */
+  @ThreadSafeIMHO
+  public <T> CompletableFuture<T> submitGlobal(@NotNull Class<?> clazz, Callable<T> task) throws InterruptedException {
+    Objects.requireNonNull(clazz);
+    Barrier<T> barrier = new Barrier<>(partitions.length, task);
+    globalSubmitLock.lockInterruptibly();
+    try {
+      checkOpen();
+      for (Partition partition : partitions) {
+        try {
+          partition.queue.put(new Job(null, barrier::arrive, barrier.future));
+        } catch (InterruptedException e) {
+          // partitions that already got the barrier must not wait for the rest
+          barrier.abort();
+          throw e;
+        }
+      }
+    } finally {
+      globalSubmitLock.unlock();
+    }
+    return barrier.future;
+  }
+
+  /**
+   * Stops accepting tasks, runs the queued ones and waits for the workers.
+   * Must not be called from a task.
+   */
+  @ThreadSafeIMHO
+  @Override
+  public void close() {
+    globalSubmitLock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Partition partition : partitions) {
+        putUninterruptibly(partition.queue, STOP);
+      }
+    } finally {
+      globalSubmitLock.unlock();
+    }
+    for (Partition partition : partitions) {
+      joinUninterruptibly(partition.worker);
+      // a submitter could get in between the stop mark and the end of the worker
+      partition.rejectQueued();
+    }
+  }
+
+  private Partition partition(EntityKey<ID> key) {
+    int hash = key.hashCode();
+    return partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)];
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new RejectedExecutionException("Entity executor is closed");
+    }
+  }
+
+  // closed is set before the workers stop, so a job queued too late is either drained by close() or still here
+  private void withdrawIfClosed(Partition partition, Job job) {
+    if (closed && partition.queue.remove(job)) {
+      job.reject();
+    }
+  }
+
+  private static <T> Runnable call(Callable<T> task, CompletableFuture<T> future) {
+    return () -> {
+      try {
+        future.complete(task.call());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    };
+  }
+
+  private static void putUninterruptibly(BlockingQueue<Job> queue, Job job) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(job);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void joinUninterruptibly(Thread thread) {
+    boolean interrupted = false;
+    while (thread.isAlive()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Partition {
+
+    private final BlockingQueue<Job> queue;
+    private final int maxBatch;
+    private final Thread worker;
+
+    private Partition(EntityExecutorConfig config, String name) {
+      this.queue = new ArrayBlockingQueue<>(config.getPartitionCapacity());
+      this.maxBatch = config.getMaxBatch();
+      this.worker = new Thread(this::work, name);
+      worker.setDaemon(true);
+    }
+
+    private void work() {
+      List<Job> batch = new ArrayList<>(maxBatch);
+      boolean stopped = false;
+      while (!stopped) {
+        try {
+          batch.add(queue.take());
+        } catch (InterruptedException e) {
+          // nobody interrupts workers on purpose, a task could have left its flag
+          continue;
+        }
+        queue.drainTo(batch, maxBatch - 1);
+        stopped = run(batch);
+        batch.clear();
+      }
+    }
+
+    /**
+     * Runs the batch, a task pulls the later tasks of its entity up to the next barrier.
+     *
+     * @return the stop mark was reached
+     */
+    private boolean run(List<Job> batch) {
+      int size = batch.size();
+      for (int i = 0; i < size; i++) {
+        Job job = batch.get(i);
+        if (job == null) {
+          continue;
+        }
+        if (job == STOP) {
+          for (int j = i + 1; j < size; j++) {
+            Job rest = batch.get(j);
+            if (rest != null) {
+              rest.reject();
+            }
+          }
+          return true;
+        }
+        job.run();
+        if (job.key == null) {
+          continue;
+        }
+        for (int j = i + 1; j < size; j++) {
+          Job next = batch.get(j);
+          if (next == null) {
+            continue;
+          }
+          if (next.key == null) {
+            break;
+          }
+          if (next.key.equals(job.key)) {
+            batch.set(j, null);
+            next.run();
+          }
+        }
+      }
+      return false;
+    }
+
+    private void rejectQueued() {
+      Job job;
+      while ((job = queue.poll()) != null) {
+        job.reject();
+      }
+    }
+  }
+
+  private static final class Job {
+
+    // null for barriers
+    @Nullable
+    private final EntityKey<?> key;
+    private final Runnable action;
+    private final CompletableFuture<?> future;
+
+    private Job(@Nullable EntityKey<?> key, Runnable action, CompletableFuture<?> future) {
+      this.key = key;
+      this.action = action;
+      this.future = future;
+    }
+
+    private void run() {
+      action.run();
+      // a task should not leave its interrupt to the next one
+      Thread.interrupted();
+    }
+
+    private void reject() {
+      future.completeExceptionally(new RejectedExecutionException("Entity executor is closed"));
+    }
+  }
+
+  /**
+   * Every partition arrives at the barrier, the last one runs the global task while the others wait.
+   */
+  private static final class Barrier<T> {
+
+    private final AtomicInteger arriving;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Callable<T> task;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    private Barrier(int partitions, Callable<T> task) {
+      this.arriving = new AtomicInteger(partitions);
+      this.task = task;
+    }
+
+    private void arrive() {
+      if (arriving.decrementAndGet() == 0) {
+        call(task, future).run();
+        done.countDown();
+        return;
+      }
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void abort() {
+      future.cancel(false);
+      done.countDown();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.reomor.locker;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings of {@link EntityExecutor}.
+ */
+@Getter
+@Builder
+public class EntityExecutorConfig {
+
+  /**
+   * number of partitions, every partition is served by its own worker thread
+   */
+  @Builder.Default
+  private final int partitions = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * tasks queued in one partition after which submitters wait for the worker
+   */
+  @Builder.Default
+  private final int partitionCapacity = 1024;
+
+  /**
+   * tasks a worker takes from its queue at once, tasks of one entity within a batch run back to back
+   */
+  @Builder.Default
+  private final int maxBatch = 64;
+
+  /**
+   * prefix of the worker thread names
+   */
+  @Builder.Default
+  private final String threadNamePrefix = "entity-executor";
+
+  public static EntityExecutorConfig defaults() {
+    return EntityExecutorConfig.builder().build();
+  }
+}
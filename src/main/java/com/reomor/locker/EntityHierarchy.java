@@ -0,0 +1,276 @@
+package com.reomor.locker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Intention locks of parent entities.
+ * <p>
+ * A child lock first takes an intention on every ancestor of the child, intentions of different threads
+ * get along with each other. A parent lock is exclusive to intentions of other threads: once the parent entity lock
+ * is acquired, it is registered here only if nobody else has an intention on it, otherwise the parent entity lock is given
+ * back and the thread waits as a pending parent locker. Pending parent lockers hold back new intentions of threads that
+ * have none on the parent yet, so a steady flow of child locks does not starve them.
+ *
+ * @param <ID> identifier type
+ */
+class EntityHierarchy<ID> {
+
+  private final Map<Class<?>, EntityParent> parents;
+  private final Set<Class<?>> parentClasses = new HashSet<>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Map<EntityKey<ID>, Node> nodes = new HashMap<>();
+  // intentions per thread and parent class, for the global lock of the class
+  private final Map<Thread, Map<Class<?>, Integer>> threadIntentions = new HashMap<>();
+
+  EntityHierarchy(Map<Class<?>, EntityParent> parents) {
+    this.parents = Map.copyOf(parents);
+    for (Class<?> clazz : parents.keySet()) {
+      Set<Class<?>> seen = new HashSet<>();
+      for (Class<?> current = clazz; current != null; current = parentClass(current)) {
+        if (!seen.add(current)) {
+          throw new IllegalArgumentException("Entity parents form a cycle through " + current.getName());
+        }
+      }
+    }
+    parents.values().forEach(parent -> parentClasses.add(parent.getParentClass()));
+  }
+
+  boolean isParent(Class<?> clazz) {
+    return parentClasses.contains(clazz);
+  }
+
+  boolean involves(Class<?> clazz) {
+    return parents.containsKey(clazz) || parentClasses.contains(clazz);
+  }
+
+  /**
+   * @return ancestors of the entity, the root first, empty for entities without a parent
+   */
+  @SuppressWarnings("unchecked")
+  List<EntityKey<ID>> ancestors(EntityKey<ID> key) {
+    EntityParent parent = parents.get(key.getEntityClass());
+    if (parent == null) {
+      return List.of();
+    }
+    List<EntityKey<ID>> ancestors = new ArrayList<>(2);
+    Object id = key.getEntityId();
+    while (parent != null) {
+      id = parent.getParentId().apply(id);
+      ancestors.add(EntityKey.of((ID) id, parent.getParentClass()));
+      parent = parents.get(parent.getParentClass());
+    }
+    Collections.reverse(ancestors);
+    return ancestors;
+  }
+
+  /**
+   * Wait until neither another thread holds the parent nor a parent locker is pending, then take an intention
+   *
+   * @return false on timeout
+   */
+  boolean enterIntention(EntityKey<ID> parent, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Thread current = Thread.currentThread();
+      Node node = nodes.computeIfAbsent(parent, ignore -> new Node());
+      while (node.blocksIntentionOf(current)) {
+        if (!await(timed, deadlineNanos)) {
+          removeIfUnused(parent, node);
+          return false;
+        }
+        node = nodes.computeIfAbsent(parent, ignore -> new Node());
+      }
+      node.intentions.merge(current, 1, Integer::sum);
+      threadIntentions.computeIfAbsent(current, ignore -> new HashMap<>()).merge(parent.getEntityClass(), 1, Integer::sum);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return false if the current thread had no intention on the parent
+   */
+  boolean exitIntention(EntityKey<ID> parent) {
+    lock.lock();
+    try {
+      Thread current = Thread.currentThread();
+      Node node = nodes.get(parent);
+      if (node == null || !node.intentions.containsKey(current)) {
+        return false;
+      }
+      if (node.intentions.computeIfPresent(current, (ignore, count) -> count == 1 ? null : count - 1) == null) {
+        // the last intention of the thread, a parent locker may go
+        removeIfUnused(parent, node);
+        changed.signalAll();
+      }
+      Map<Class<?>, Integer> classIntentions = threadIntentions.get(current);
+      classIntentions.computeIfPresent(parent.getEntityClass(), (ignore, count) -> count == 1 ? null : count - 1);
+      if (classIntentions.isEmpty()) {
+        threadIntentions.remove(current);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Register the acquired parent entity lock
+   *
+   * @return false when other threads have intentions on the parent
+   */
+  boolean tryEnterExclusive(EntityKey<ID> key) {
+    lock.lock();
+    try {
+      Thread current = Thread.currentThread();
+      Node node = nodes.computeIfAbsent(key, ignore -> new Node());
+      if (node.hasIntentionsOfOthers(current)) {
+        removeIfUnused(key, node);
+        return false;
+      }
+      node.owner = current;
+      node.holds++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait, without the parent entity lock, until other threads have no intentions on the parent
+   *
+   * @return false on timeout
+   */
+  boolean awaitExclusive(EntityKey<ID> key, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Thread current = Thread.currentThread();
+      Node node = nodes.computeIfAbsent(key, ignore -> new Node());
+      node.pending++;
+      try {
+        while (node.hasIntentionsOfOthers(current)) {
+          if (!await(timed, deadlineNanos)) {
+            return false;
+          }
+        }
+        return true;
+      } finally {
+        node.pending--;
+        removeIfUnused(key, node);
+        // intentions held back by this thread can go
+        changed.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void exitExclusive(EntityKey<ID> key) {
+    lock.lock();
+    try {
+      Node node = nodes.get(key);
+      if (node == null || node.owner != Thread.currentThread()) {
+        return;
+      }
+      if (--node.holds == 0) {
+        node.owner = null;
+        removeIfUnused(key, node);
+        changed.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return intentions of the current thread on entities of the class, a reentrant child lock counts once per lock
+   */
+  int intentionsOfCurrentThread(Class<?> clazz) {
+    lock.lock();
+    try {
+      return threadIntentions.getOrDefault(Thread.currentThread(), Map.of()).getOrDefault(clazz, 0);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the current thread holds one of the ancestors
+   */
+  boolean coveredByCurrentThread(List<EntityKey<ID>> ancestors) {
+    lock.lock();
+    try {
+      for (EntityKey<ID> ancestor : ancestors) {
+        Node node = nodes.get(ancestor);
+        if (node != null && node.owner == Thread.currentThread()) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Class<?> parentClass(Class<?> clazz) {
+    EntityParent parent = parents.get(clazz);
+    return parent != null ? parent.getParentClass() : null;
+  }
+
+  private void removeIfUnused(EntityKey<ID> key, Node node) {
+    if (node.owner == null && node.pending == 0 && node.intentions.isEmpty()) {
+      nodes.remove(key, node);
+    }
+  }
+
+  private boolean await(boolean timed, long deadlineNanos) throws InterruptedException {
+    if (!timed) {
+      changed.await();
+      return true;
+    }
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining <= 0) {
+      return false;
+    }
+    changed.awaitNanos(remaining);
+    return true;
+  }
+
+  private static final class Node {
+
+    // thread that holds the parent entity, reentrant
+    private Thread owner;
+    private int holds;
+    // parent lockers waiting for intentions to go
+    private int pending;
+    private final Map<Thread, Integer> intentions = new HashMap<>(2);
+
+    private boolean blocksIntentionOf(Thread thread) {
+      if (owner != null) {
+        return owner != thread;
+      }
+      // a thread with intentions already goes on, it could be the one a pending parent locker waits for
+      return pending > 0 && !intentions.containsKey(thread);
+    }
+
+    private boolean hasIntentionsOfOthers(Thread thread) {
+      for (Thread holder : intentions.keySet()) {
+        if (holder != thread) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.reomor.locker;
+
+import lombok.NonNull;
+
+/**
+ * Immutable (entity class, id) pair, the key of the lock table of {@link EntityLockerImpl}.
+ * The hash is computed once, so a key built in advance and reused for lock and unlock
+ * costs a single probe of the table and no rehashing of the id.
+ *
+ * @param <ID> identifier type
+ */
+public final class EntityKey<ID> {
+
+  private final Class<?> entityClass;
+  private final ID entityId;
+  private final int hash;
+
+  private EntityKey(Class<?> entityClass, ID entityId) {
+    this(entityClass, entityId, hash(entityClass, entityId));
+  }
+
+  private EntityKey(Class<?> entityClass, ID entityId, int hash) {
+    this.entityClass = entityClass;
+    this.entityId = entityId;
+    this.hash = hash;
+  }
+
+  public static <ID> EntityKey<ID> of(@NonNull ID entityId, @NonNull Class<?> entityClass) {
+    return new EntityKey<>(entityClass, entityId);
+  }
+
+  static int hash(Class<?> entityClass, Object entityId) {
+    return 31 * entityClass.hashCode() + entityId.hashCode();
+  }
+
+  // for IdInterner, the hash is already known
+  static <ID> EntityKey<ID> of(ID entityId, Class<?> entityClass, int hash) {
+    return new EntityKey<>(entityClass, entityId, hash);
+  }
+
+  boolean matches(Class<?> entityClass, Object entityId, int hash) {
+    return this.hash == hash
+      && this.entityClass == entityClass
+      && (this.entityId == entityId || this.entityId.equals(entityId));
+  }
+
+  public Class<?> getEntityClass() {
+    return entityClass;
+  }
+
+  public ID getEntityId() {
+    return entityId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof EntityKey)) {
+      return false;
+    }
+    EntityKey<?> other = (EntityKey<?>) o;
+    // hash first, a mismatch there is the common case in a colliding bin
+    return other.matches(entityClass, entityId, hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return entityClass.getName() + "#" + entityId;
+  }
+}
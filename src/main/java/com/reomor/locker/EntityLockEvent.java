@@ -0,0 +1,56 @@
+package com.reomor.locker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event of waiting for an entity lock.
+ * The event duration is the wait, only waits longer than the threshold are recorded.
+ */
+@Name(EntityLockEvent.NAME)
+@Label("Entity Lock")
+@Description("Waiting for an entity lock of EntityLocker")
+@Category({"EntityLocker"})
+@StackTrace
+@Threshold("10 ms")
+class EntityLockEvent extends Event {
+
+  static final String NAME = "com.reomor.locker.EntityLock";
+
+  @Label("Entity Class")
+  Class<?> entityClass;
+
+  @Label("Entity Id")
+  String entityId;
+
+  @Label("Holder")
+  @Description("Thread holding the entity when the wait started")
+  Thread holder;
+
+  // transient fields are not recorded, holder is filled from it only when the event is committed
+  private transient Thread holderAtBegin;
+
+  static EntityLockEvent start(TrackedLock entityLock) {
+    EntityLockEvent event = new EntityLockEvent();
+    if (event.isEnabled()) {
+      event.holderAtBegin = entityLock.owner();
+      event.begin();
+    }
+    return event;
+  }
+
+  void end(Class<?> clazz, Object id) {
+    end();
+    if (shouldCommit()) {
+      entityClass = clazz;
+      entityId = String.valueOf(id);
+      holder = holderAtBegin;
+      commit();
+    }
+  }
+}
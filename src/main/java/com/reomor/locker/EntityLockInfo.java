@@ -0,0 +1,26 @@
+package com.reomor.locker;
+
+import lombok.Value;
+
+/**
+ * Entity lock as seen by {@link EntityLockerMXBean}.
+ */
+@Value
+public class EntityLockInfo {
+
+  String entityClass;
+  String entityId;
+  // null if the lock is free
+  String owner;
+  int queueLength;
+
+  static EntityLockInfo of(EntityKey<?> key, TrackedLock lock) {
+    Thread owner = lock.owner();
+    return new EntityLockInfo(
+      key.getEntityClass().getName(),
+      String.valueOf(key.getEntityId()),
+      owner != null ? owner.getName() : null,
+      lock.queuedWaiters()
+    );
+  }
+}
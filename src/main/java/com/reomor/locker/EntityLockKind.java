@@ -0,0 +1,39 @@
+package com.reomor.locker;
+
+/**
+ * Implementation of entity locks, chosen per class by {@link EntityLockerConfig#getClassLockKinds()}.
+ */
+public enum EntityLockKind {
+
+  /**
+   * {@link java.util.concurrent.locks.ReentrantLock}, priorities are ignored and newcomers may barge
+   */
+  REENTRANT {
+    @Override
+    TrackedLock create(EntityLockerConfig config) {
+      return new TrackedLock();
+    }
+  },
+
+  /**
+   * waiters are served by priority with aging, equal priorities by deadline of timed waiters, then FIFO
+   */
+  PRIORITY {
+    @Override
+    TrackedLock create(EntityLockerConfig config) {
+      return new PriorityTrackedLock(config.getPriorityAging().toNanos());
+    }
+  },
+
+  /**
+   * FIFO MCS queue with direct handoff to the next waiter, priorities are ignored, conditions are not supported
+   */
+  QUEUED {
+    @Override
+    TrackedLock create(EntityLockerConfig config) {
+      return new QueuedTrackedLock();
+    }
+  };
+
+  abstract TrackedLock create(EntityLockerConfig config);
+}
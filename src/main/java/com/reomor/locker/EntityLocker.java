@@ -1,6 +1,7 @@
 package com.reomor.locker;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * The task is to create a reusable utility class that provides synchronization mechanism similar to row-level DB locking.
@@ -48,6 +49,35 @@ public interface EntityLocker<ID> {
    */
   boolean lock(ID entityId, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException;
 
+  /**
+   * Lock entity with certain id ahead of waiters with lower priority
+   *
+   * @param entityId entity identifier
+   * @param clazz    entity type
+   * @param priority the greater the sooner, see {@link LockPriority}
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  default boolean lock(ID entityId, Class<?> clazz, int priority) throws InterruptedException {
+    return lock(entityId, clazz);
+  }
+
+  /**
+   * Attempt to lock entity ahead of waiters with lower priority,
+   * among waiters with the same priority the earliest deadline goes first
+   *
+   * @param entityId entity identifier
+   * @param clazz    entity type
+   * @param priority the greater the sooner, see {@link LockPriority}
+   * @param timeout  timeout amount
+   * @param timeUnit timeout unit
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  default boolean lock(ID entityId, Class<?> clazz, int priority, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(entityId, clazz, timeout, timeUnit);
+  }
+
   /**
    * Unlock entity with certain id
    *
@@ -55,4 +85,234 @@ public interface EntityLocker<ID> {
    * @throws IllegalMonitorStateException if non-owner tries to unlock
    */
   void unlock(ID entityId, Class<?> clazz);
+
+  /**
+   * Lock entity by a key that can be built once and reused
+   *
+   * @param key entity type and identifier
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  default boolean lock(EntityKey<ID> key) throws InterruptedException {
+    return lock(key.getEntityId(), key.getEntityClass());
+  }
+
+  /**
+   * Attempt to lock entity by a key that can be built once and reused
+   *
+   * @param key      entity type and identifier
+   * @param timeout  timeout amount
+   * @param timeUnit timeout unit
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  default boolean lock(EntityKey<ID> key, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(key.getEntityId(), key.getEntityClass(), timeout, timeUnit);
+  }
+
+  default boolean lock(EntityKey<ID> key, int priority) throws InterruptedException {
+    return lock(key.getEntityId(), key.getEntityClass(), priority);
+  }
+
+  default boolean lock(EntityKey<ID> key, int priority, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(key.getEntityId(), key.getEntityClass(), priority, timeout, timeUnit);
+  }
+
+  /**
+   * Unlock entity by key
+   *
+   * @param key entity type and identifier
+   * @throws IllegalMonitorStateException if non-owner tries to unlock
+   */
+  default void unlock(EntityKey<ID> key) {
+    unlock(key.getEntityId(), key.getEntityClass());
+  }
+
+  /**
+   * Lock all ids between from and to, the bounds included. Overlapping ranges and locked entities inside
+   * the range of other threads exclude it. Falls back to the class global lock by default.
+   *
+   * @param from  lower bound
+   * @param to    upper bound
+   * @param clazz entity type
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  default boolean lockRange(ID from, ID to, Class<?> clazz) throws InterruptedException {
+    return globalLock(clazz);
+  }
+
+  /**
+   * Attempt to lock all ids between from and to, the bounds included
+   *
+   * @param from     lower bound
+   * @param to       upper bound
+   * @param clazz    entity type
+   * @param timeout  timeout amount
+   * @param timeUnit timeout unit
+   * @return result of locking
+   * @throws InterruptedException thread with lock have been interrupted
+   */
+  boolean lockRange(ID from, ID to, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException;
+
+  /**
+   * Unlock the range locked with the same bounds
+   *
+   * @throws IllegalMonitorStateException if non-owner tries to unlock
+   */
+  default void unlockRange(ID from, ID to, Class<?> clazz) {
+    globalUnlock(clazz);
+  }
+
+  /**
+   * Lock all entities of the request within the timeout or none of them, see {@link LockRequest} for the order
+   *
+   * @param request  entities and classes to lock
+   * @param timeout  timeout amount for the whole request
+   * @param timeUnit timeout unit
+   * @return result of locking
+   * @throws InterruptedException  thread with lock have been interrupted, nothing is locked then
+   * @throws IllegalStateException the request is already locked
+   */
+  default boolean lock(LockRequest<ID> request, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return request.lockOneByOne(this, System.nanoTime() + timeUnit.toNanos(timeout));
+  }
+
+  /**
+   * Unlock everything the request has locked, in reverse order
+   *
+   * @throws IllegalMonitorStateException the request is not locked by the current thread
+   */
+  default void unlock(LockRequest<ID> request) {
+    request.checkOwner();
+    request.unlockGroups(this, request.groups().size());
+  }
+
+  /**
+   * Hand the entity held by the current thread over to another thread with all its holds, without waiting:
+   * the target unlocks it, the current thread must not. Counts of the escalation and the global locks go along.
+   * <pre>
+   *   locker.lock(id, Order.class);
+   *   Thread worker = ...;
+   *   locker.transfer(id, Order.class, worker);
+   *   // the worker calls locker.unlock(id, Order.class) when it is done
+   * </pre>
+   *
+   * @param target the new owner
+   * @throws IllegalMonitorStateException the current thread does not hold the entity
+   */
+  default void transfer(ID entityId, Class<?> clazz, Thread target) {
+    transfer(EntityKey.of(entityId, clazz), target);
+  }
+
+  void transfer(EntityKey<ID> key, Thread target);
+
+  /**
+   * Hand all entities of the request over to another thread, the target unlocks the request
+   *
+   * @throws IllegalMonitorStateException the request is not locked by the current thread
+   * @throws IllegalStateException         the request holds class global locks, they stay with their thread
+   */
+  default void transfer(LockRequest<ID> request, Thread target) {
+    request.checkOwner();
+    request.transfer(this, target);
+  }
+
+  /**
+   * Start an optimistic read of the entity: read it without the lock, then {@link #validate(Object, Class, long)} the stamp.
+   * <pre>
+   *   long stamp = locker.tryOptimisticRead(id, Order.class);
+   *   Order copy = cache.get(id);
+   *   if (!locker.validate(id, Order.class, stamp)) {
+   *     // lock and read again
+   *   }
+   * </pre>
+   *
+   * @return 0 when the entity or its whole class is locked right now, such a stamp never validates
+   */
+  default long tryOptimisticRead(ID entityId, Class<?> clazz) {
+    return 0;
+  }
+
+  /**
+   * @return true if the entity has not been locked, nor its class by {@link #globalLock(Class)} or a range,
+   * since the stamp was issued
+   */
+  default boolean validate(ID entityId, Class<?> clazz, long stamp) {
+    return false;
+  }
+
+  /**
+   * Version of the entity without locking it, for caches: a copy read under the lock stays valid
+   * while the version is the same.
+   * <pre>
+   *   long version = locker.version(id, Order.class);
+   *   if (cached == null || cached.version != version) {
+   *     // lock, load and cache with the version
+   *   }
+   * </pre>
+   *
+   * @return a number that only grows, after every release of the entity or its class by the last hold.
+   * A locker that keeps no versions returns a new number on every call, such a version never matches a cached one
+   */
+  default long version(ID entityId, Class<?> clazz) {
+    return EntityVersions.untracked();
+  }
+
+  /**
+   * Release the entity held by the current thread, all its holds, until another thread signals the condition,
+   * then lock the entity again. Conditions are created on the first wait and dropped with the lock of the entity.
+   *
+   * @param entityId entity identifier
+   * @param clazz    entity type
+   * @param name     condition of the entity
+   * @param timeout  timeout amount
+   * @param timeUnit timeout unit
+   * @return false on timeout, the entity is locked again either way
+   * @throws InterruptedException         thread have been interrupted, the entity is locked again
+   * @throws IllegalMonitorStateException the current thread does not hold the entity
+   */
+  boolean awaitCondition(ID entityId, Class<?> clazz, String name, long timeout, TimeUnit timeUnit) throws InterruptedException;
+
+  /**
+   * Wait for the condition without a timeout, see {@link #awaitCondition(Object, Class, String, long, TimeUnit)}
+   */
+  void awaitCondition(ID entityId, Class<?> clazz, String name) throws InterruptedException;
+
+  /**
+   * Wake up the longest waiting thread of the condition, it goes on once the entity is unlocked
+   *
+   * @throws IllegalMonitorStateException the current thread does not hold the entity
+   */
+  void signal(ID entityId, Class<?> clazz, String name);
+
+  /**
+   * Wake up all waiting threads of the condition
+   *
+   * @throws IllegalMonitorStateException the current thread does not hold the entity
+   */
+  void signalAll(ID entityId, Class<?> clazz, String name);
+
+  /**
+   * Run a short operation on the locked entity. Implementations may run it on another thread that holds the lock
+   * together with operations of other threads waiting for the entity, so it must not depend on the calling thread.
+   *
+   * @param entityId  entity identifier
+   * @param clazz     entity type
+   * @param operation protected code
+   * @return result of the operation, its runtime exceptions are rethrown
+   * @throws InterruptedException thread have been interrupted before the operation was started
+   */
+  default <T> T combine(ID entityId, Class<?> clazz, Supplier<T> operation) throws InterruptedException {
+    return combine(EntityKey.of(entityId, clazz), operation);
+  }
+
+  default <T> T combine(EntityKey<ID> key, Supplier<T> operation) throws InterruptedException {
+    lock(key);
+    try {
+      return operation.get();
+    } finally {
+      unlock(key);
+    }
+  }
 }
@@ -0,0 +1,207 @@
+package com.reomor.locker;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings of {@link EntityLockerImpl}.
+ * Everything that is optional is switched off by default, so the plain locker pays nothing for it.
+ */
+@Getter
+@Builder
+public class EntityLockerConfig {
+
+  public static final int DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD = 10;
+
+  /**
+   * number of entities of one class locked by a thread after which the thread escalates to the class global lock
+   */
+  @Builder.Default
+  private final int globalEscalationThreshold = DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD;
+
+  /**
+   * collect {@link LockMetrics}
+   */
+  @Builder.Default
+  private final boolean metricsEnabled = false;
+
+  /**
+   * entity lock implementation of classes not mentioned in {@link #classLockKinds}
+   */
+  @Builder.Default
+  private final EntityLockKind entityLockKind = EntityLockKind.REENTRANT;
+
+  /**
+   * per class overrides of {@link #entityLockKind}
+   */
+  @Singular
+  private final Map<Class<?>, EntityLockKind> classLockKinds;
+
+  /**
+   * time in the queue of a {@link EntityLockKind#PRIORITY} lock after which a waiter gains one priority level
+   */
+  @Builder.Default
+  private final Duration priorityAging = Duration.ofMillis(10);
+
+  /**
+   * counters per class kept by {@link HotKeyTracker}, 0 switches tracking off
+   */
+  @Builder.Default
+  private final int hotKeyCapacity = 0;
+
+  /**
+   * entity locks held longer than that while other threads wait for them are reported by the watchdog,
+   * null switches the watchdog off
+   */
+  private final Duration watchdogThreshold;
+
+  /**
+   * per class overrides of {@link #watchdogThreshold}
+   */
+  @Singular
+  private final Map<Class<?>, Duration> watchdogClassThresholds;
+
+  /**
+   * how often the watchdog looks at held locks
+   */
+  @Builder.Default
+  private final Duration watchdogPeriod = Duration.ofSeconds(1);
+
+  /**
+   * receiver of watchdog reports, they are logged by default
+   */
+  @Builder.Default
+  private final LongHeldLockListener watchdogListener = LongHeldLockListener.LOGGING;
+
+  /**
+   * classes with {@link Comparable} ids that can be locked by ranges, entity locks of other classes skip range checks
+   */
+  @Singular
+  private final Set<Class<?>> rangeLockClasses;
+
+  /**
+   * parents of child entity classes: a parent lock covers its children, a child lock takes an intention lock on its parent
+   */
+  @Singular
+  private final Map<Class<?>, EntityParent> parents;
+
+  /**
+   * threads allowed to queue for one entity, a lock call past the limit throws {@link LockRejectedException},
+   * 0 is unlimited
+   */
+  @Builder.Default
+  private final int maxWaitersPerEntity = 0;
+
+  /**
+   * threads allowed to queue for entities of one class, 0 is unlimited
+   */
+  @Builder.Default
+  private final int maxWaitersPerClass = 0;
+
+  /**
+   * reject a timed lock right away when the predicted wait, see {@link EntityLockerImpl#predictWaitNanos}, exceeds its timeout
+   */
+  @Builder.Default
+  private final boolean rejectLikelyTimeouts = false;
+
+  /**
+   * released entity locks kept in the lock table for reuse, evicted in batches by idle time or when the table grows
+   * past the capacity, see {@link IdleLockSweeper}. 0 removes a lock on its last unlock
+   */
+  @Builder.Default
+  private final int idleLockCacheCapacity = 0;
+
+  /**
+   * cached entity locks idle longer than that are evicted
+   */
+  @Builder.Default
+  private final Duration idleLockTimeout = Duration.ofSeconds(30);
+
+  /**
+   * file of the binary lock trace, see {@link LockTracer}, decoded offline by {@link LockTraceDecoder}.
+   * null switches tracing off
+   */
+  private final Path traceFile;
+
+  /**
+   * records a thread can have in its trace ring before the drainer takes them, rounded down to a power of two.
+   * Records that do not fit are dropped and counted
+   */
+  @Builder.Default
+  private final int traceBufferRecords = 4096;
+
+  /**
+   * the trace file keeps the latest that many records
+   */
+  @Builder.Default
+  private final int traceFileRecords = 1 << 18;
+
+  /**
+   * how often the drainer moves records from the rings to the trace file
+   */
+  @Builder.Default
+  private final Duration traceDrainPeriod = Duration.ofMillis(10);
+
+  /**
+   * version counters behind {@link EntityLocker#tryOptimisticRead(Object, Class)}, rounded down to a power of two.
+   * Every first hold of an entity lock bumps one of them. 0 switches optimistic reads off, they always fail then
+   */
+  @Builder.Default
+  private final int optimisticReadStripes = 0;
+
+  /**
+   * entities whose versions, see {@link EntityLocker#version(Object, Class)}, are kept apart.
+   * Versions of the rest share a floor, they look changed when an entity leaves the table.
+   * 0 switches versions off
+   */
+  @Builder.Default
+  private final int entityVersionCapacity = 0;
+
+  /**
+   * releases in a row by one thread, with nobody else around, that bias an entity to the thread:
+   * its next locks and unlocks skip the locker, until another thread or a class global lock revokes the bias.
+   * Biased holds are not seen by metrics, the trace, the watchdog and escalation.
+   * Not for classes with range locks, lockers with parents or partitions reject it. 0 switches biasing off
+   */
+  @Builder.Default
+  private final int biasThreshold = 0;
+
+  /**
+   * biased entities and candidates at most
+   */
+  @Builder.Default
+  private final int biasedEntityCapacity = 1 << 12;
+
+  /**
+   * entities of one partition of a class, see {@link #getEscalationPartitions()}, locked by a thread
+   * that make it take the whole partition instead of their entity locks, if nobody else has entities there.
+   * Must be below {@link #getGlobalEscalationThreshold()}, which counts the entities of all partitions of the thread.
+   * Not for classes with range locks nor lockers with parents. 0 switches partitions off
+   */
+  @Builder.Default
+  private final int partitionEscalationThreshold = 0;
+
+  /**
+   * partitions of every class, ids are hashed into them, must be positive with partitions on
+   */
+  @Builder.Default
+  private final int escalationPartitions = 16;
+
+  /**
+   * entities may be handed over to other threads by {@link EntityLocker#transfer(EntityKey, Thread)}:
+   * every acquisition of an entity lock checks for transferred entities then.
+   * Not for classes with range locks, lockers with parents or partitions reject it
+   */
+  @Builder.Default
+  private final boolean lockTransfersEnabled = false;
+
+  public static EntityLockerConfig defaults() {
+    return EntityLockerConfig.builder().build();
+  }
+}
@@ -4,189 +4,1688 @@ import lombok.NonNull;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
-public class EntityLockerImpl<ID> implements EntityLocker<ID> {
-
-  private static final int DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD = 10;
+public class EntityLockerImpl<ID> implements EntityLocker<ID>, AutoCloseable {
 
   // provide lock for atomic operation on all objects
-  // because all kind of collections are not synchronized
+  // collections are concurrent only to let diagnostics read them without the lock,
+  // all modifications are still done under it
   private final ReentrantLock innerLock;
-  private final Map<Class<?>, ReentrantLock> clazzGlobalLocks;
+  private final Map<Class<?>, TrackedLock> clazzGlobalLocks;
   private final Map<Class<?>, Condition> clazzGlobalLocksConditions;
   private final Map<Class<?>, AtomicInteger> clazzNumberOfLockedObjects;
-  private final Map<Class<?>, Map<ID, ReentrantLock>> entitiesLockMaps;
+  // flat table, one probe per operation with a key that caches its hash
+  private final Map<EntityKey<ID>, TrackedLock> entityLocks;
   private final Map<Long, Map<Class<?>, Set<ID>>> threadLockedEntities;
+  // entities somebody is combining operations for, removed when the last of them leaves
+  private final Map<EntityKey<ID>, FlatCombiner> combiners;
+  // fixed at construction, only classes listed in the config pay for range checks
+  private final Map<Class<?>, RangeLockTable<ID>> rangeLocks;
+  // null when no entity parents are configured
+  @Nullable
+  private final EntityHierarchy<ID> hierarchy;
+  // null when partition escalation is off, tables are created on the first lock of a class
+  @Nullable
+  private final Map<Class<?>, PartitionLockTable<ID>> partitionLocks;
   private final int globalEscalationThreshold;
+  private final EntityLockerConfig config;
+  // null when metrics are disabled, so the hot path pays a single null check
+  @Nullable
+  private final LockMetrics metrics;
+  @Nullable
+  private final HotKeyTracker hotKeys;
+  @Nullable
+  private final LongHeldLockWatchdog watchdog;
+  @Nullable
+  private final AdmissionControl admission;
+  // null when released locks are removed right away
+  @Nullable
+  private final IdleLockSweeper<ID> idleLocks;
+  @Nullable
+  private final LockTracer tracer;
+  // null when optimistic reads are off, writers do not pay for the versions then
+  @Nullable
+  private final OptimisticStamps stamps;
+  // null when versions are off
+  @Nullable
+  private final EntityVersions versions;
+  @Nullable
+  private final EntityBiases biases;
+  @Nullable
+  private final EntityTransfers transfers;
 
   public EntityLockerImpl() {
-    this(DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD);
+    this(EntityLockerConfig.defaults());
+  }
+
+  public EntityLockerImpl(int globalEscalationThreshold) {
+    this(EntityLockerConfig.builder().globalEscalationThreshold(globalEscalationThreshold).build());
+  }
+
+  public EntityLockerImpl(@NonNull EntityLockerConfig config) {
+
+    if (config.getPartitionEscalationThreshold() > 0 && (config.getEscalationPartitions() <= 0
+      || config.getPartitionEscalationThreshold() >= config.getGlobalEscalationThreshold())) {
+      throw new IllegalArgumentException("Partitions must be positive and the partition escalation threshold "
+        + "below the global escalation threshold");
+    }
+    boolean parentsOrPartitions = !config.getParents().isEmpty() || config.getPartitionEscalationThreshold() > 0;
+    if (config.getBiasThreshold() > 0 && parentsOrPartitions) {
+      throw new IllegalArgumentException("Biased entities do not work with entity parents or partitions");
+    }
+    if (config.isLockTransfersEnabled() && parentsOrPartitions) {
+      throw new IllegalArgumentException("Lock transfers do not work with entity parents or partitions");
+    }
+
+    this.innerLock = new ReentrantLock();
+
+    this.clazzGlobalLocks = new ConcurrentHashMap<>();
+    this.clazzGlobalLocksConditions = new ConcurrentHashMap<>();
+
+    this.entityLocks = new ConcurrentHashMap<>();
+    this.threadLockedEntities = new ConcurrentHashMap<>();
+    this.clazzNumberOfLockedObjects = new ConcurrentHashMap<>();
+    this.combiners = new ConcurrentHashMap<>();
+    this.rangeLocks = new HashMap<>();
+    config.getRangeLockClasses().forEach(clazz -> rangeLocks.put(clazz, new RangeLockTable<>()));
+    this.hierarchy = config.getParents().isEmpty() ? null : new EntityHierarchy<>(config.getParents());
+    this.partitionLocks = config.getPartitionEscalationThreshold() > 0 ? new ConcurrentHashMap<>() : null;
+
+    this.globalEscalationThreshold = config.getGlobalEscalationThreshold();
+    this.config = config;
+    this.metrics = config.isMetricsEnabled() ? new LockMetrics() : null;
+    this.hotKeys = config.getHotKeyCapacity() > 0 ? new HotKeyTracker(config.getHotKeyCapacity()) : null;
+    this.watchdog = config.getWatchdogThreshold() != null ? new LongHeldLockWatchdog(this, config) : null;
+    this.admission = AdmissionControl.isEnabled(config) ? new AdmissionControl(config) : null;
+    this.idleLocks = config.getIdleLockCacheCapacity() > 0
+      ? new IdleLockSweeper<>(entityLocks, config.getIdleLockCacheCapacity(), config.getIdleLockTimeout().toNanos())
+      : null;
+    this.tracer = config.getTraceFile() != null ? new LockTracer(config) : null;
+    this.stamps = config.getOptimisticReadStripes() > 0 ? new OptimisticStamps(config.getOptimisticReadStripes()) : null;
+    this.versions = config.getEntityVersionCapacity() > 0 ? new EntityVersions(config.getEntityVersionCapacity()) : null;
+    this.biases = config.getBiasThreshold() > 0
+      ? new EntityBiases(config.getBiasThreshold(), config.getBiasedEntityCapacity())
+      : null;
+    this.transfers = config.isLockTransfersEnabled() ? new EntityTransfers() : null;
+  }
+
+  /**
+   * Stop background threads of the locker and flush the lock trace, locks are not affected
+   */
+  @Override
+  public void close() {
+    if (watchdog != null) {
+      watchdog.close();
+    }
+    if (tracer != null) {
+      tracer.close();
+    }
+  }
+
+  /**
+   * @return collected metrics or null if they are disabled by {@link EntityLockerConfig#isMetricsEnabled()}
+   */
+  @Nullable
+  public LockMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return most contended entities or null if tracking is disabled by {@link EntityLockerConfig#getHotKeyCapacity()}
+   */
+  @Nullable
+  public HotKeyTracker getHotKeys() {
+    return hotKeys;
+  }
+
+  /**
+   * Threads ahead of the caller, the holder included, times the recent hold time of the class
+   *
+   * @return predicted wait for the entity in nanoseconds, 0 if it is free or held by the current thread
+   * @throws IllegalStateException admission control is not configured, see {@link EntityLockerConfig#getMaxWaitersPerEntity()}
+   */
+  public long predictWaitNanos(@NonNull ID entityId, Class<?> clazz) {
+    if (admission == null) {
+      throw new IllegalStateException("Hold times are tracked by admission control only");
+    }
+    return admission.predictWaitNanos(entityLocks.get(EntityKey.of(entityId, clazz)), clazz);
+  }
+
+  @Override
+  public boolean globalLock(Class<?> clazz) throws InterruptedException {
+
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    GlobalLockEvent event = GlobalLockEvent.start(classGlobalLock);
+
+    // block class or wait
+    lockClassGlobalLock(classGlobalLock, clazz, true);
+    Condition classGlobalLockCondition = getClassGlobalLockCondition(clazz);
+
+    // 0 because there are no attempts to lock certain entity
+    while (globalLockIsNotPossibleForThread(clazz, 0)) {
+      // then it's not possible to get global lock
+      classGlobalLockCondition.await();
+    }
+
+    event.end(clazz, true);
+
+    if (metrics != null) {
+      metrics.of(clazz).globalLockAcquired();
+    }
+    if (tracer != null) {
+      tracer.globalAcquired(clazz);
+    }
+    globalSectionStarted(clazz);
+
+    return true;
+  }
+
+  @Override
+  public void globalUnlock(Class<?> clazz) {
+    ReentrantLock classGlobalLock = getCurrentClassGlobalLock(clazz);
+    if (classGlobalLock.isLocked()) {
+      if (classGlobalLock.isHeldByCurrentThread() && classGlobalLock.getHoldCount() == 1) {
+        if (tracer != null) {
+          tracer.globalReleased(clazz);
+        }
+        if (stamps != null) {
+          stamps.classSectionEnded(clazz);
+        }
+        if (versions != null) {
+          versions.classReleased(clazz);
+        }
+      }
+      // clean maps only when both conditions true
+      // lock is held by one (current process) and no waiters
+      if (classGlobalLock.getHoldCount() == 1 && !classGlobalLock.hasQueuedThreads() && !hasConditionWaiters(clazz, classGlobalLock)) {
+        clearClassGlobalLock(clazz);
+      }
+      classGlobalLock.unlock();
+    }
+  }
+
+  // a global locker waiting for entities of the class has released the lock, but still uses it
+  private boolean hasConditionWaiters(Class<?> clazz, ReentrantLock classGlobalLock) {
+    Condition condition = clazzGlobalLocksConditions.get(clazz);
+    return condition != null && classGlobalLock.isHeldByCurrentThread() && classGlobalLock.hasWaiters(condition);
+  }
+
+  @Override
+  public boolean lock(@NonNull ID entityId, Class<?> clazz) throws InterruptedException {
+    return lock(EntityKey.of(entityId, clazz), LockPriority.NORMAL);
+  }
+
+  @Override
+  public boolean lock(@NonNull ID entityId, Class<?> clazz, int priority) throws InterruptedException {
+    return lock(EntityKey.of(entityId, clazz), priority);
+  }
+
+  @Override
+  public boolean lock(@NonNull EntityKey<ID> key) throws InterruptedException {
+    return lock(key, LockPriority.NORMAL);
+  }
+
+  @Override
+  public boolean lock(@NonNull EntityKey<ID> key, int priority) throws InterruptedException {
+    if (biases != null && tryLockBiased(key)) {
+      return true;
+    }
+    if (transfers != null && tryLockTransferred(key)) {
+      return true;
+    }
+    if (hierarchy == null) {
+      return lockPoint(key, priority);
+    }
+    List<EntityKey<ID>> ancestors = hierarchy.ancestors(key);
+    enterIntentions(ancestors, false, 0);
+    boolean locked = false;
+    try {
+      if (!hierarchy.isParent(key.getEntityClass())) {
+        locked = lockPoint(key, priority);
+        return locked;
+      }
+      while (true) {
+        lockPoint(key, priority);
+        if (hierarchy.tryEnterExclusive(key)) {
+          locked = true;
+          return true;
+        }
+        // other threads hold children of the entity, wait for them without holding the entity
+        unlockPoint(key);
+        hierarchy.awaitExclusive(key, false, 0);
+      }
+    } finally {
+      if (!locked) {
+        exitIntentions(ancestors, ancestors.size());
+      }
+    }
+  }
+
+  private boolean lockPoint(EntityKey<ID> key, int priority) throws InterruptedException {
+    RangeLockTable<ID> ranges = rangeLocks.get(key.getEntityClass());
+    if (ranges == null) {
+      PartitionLockTable<ID> partitions = partitionsOf(key.getEntityClass());
+      return partitions == null ? lockEntity(key, priority) : lockPartitioned(key, priority, partitions, false, 0, true);
+    }
+    while (true) {
+      lockEntity(key, priority);
+      if (ranges.tryEnterPoint(key.getEntityId())) {
+        return true;
+      }
+      // a range of another thread contains the entity, wait for it without holding the entity
+      unlockEntity(key);
+      ranges.awaitPoint(key.getEntityId(), false, 0);
+    }
+  }
+
+  private boolean lockEntity(EntityKey<ID> key, int priority) throws InterruptedException {
+
+    ID entityId = key.getEntityId();
+    Class<?> clazz = key.getEntityClass();
+    admit(key, -1);
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+
+    GlobalLockEvent globalLockEvent = GlobalLockEvent.start(classGlobalLock);
+    classGlobalLock = lockClassGlobalLock(classGlobalLock, clazz, false);
+    globalLockEvent.end(clazz, false);
+
+    TrackedLock entityLock = getOrCreateLock(key);
+
+    // try to get a global lock
+    if (escalationConditionsFulfilled(clazz)) {
+      // success - free all locked, hold global lock and return
+      // I've some doubts about it because maybe it's worth to save information about all locked objects
+      // and add lock for new entity. That approach will make possible to deescalate global lock.
+      // Anyway the task-08 is only about escalation with de-process.
+      entityLock.leave();
+      escalate(entityId, clazz);
+      return true;
+    }
+
+    // fail - continue with separate lock
+    // the entity is counted before the wait, so the class global lock can be released right now:
+    // a global locker sees the waiter and waits for it, other entities of the class are not blocked
+    postLockActions(clazz);
+    classGlobalLock.unlock();
+
+    try {
+      lockEntityLock(entityLock, entityId, clazz, priority);
+    } catch (InterruptedException e) {
+      abandonEntityLock(key, entityLock);
+      throw e;
+    }
+    entityLock.leave();
+
+    return true;
+  }
+
+  @Override
+  public boolean lock(@NonNull ID entityId, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(EntityKey.of(entityId, clazz), LockPriority.NORMAL, timeout, timeUnit);
+  }
+
+  @Override
+  public boolean lock(@NonNull ID entityId, Class<?> clazz, int priority,
+                      long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(EntityKey.of(entityId, clazz), priority, timeout, timeUnit);
+  }
+
+  @Override
+  public boolean lock(@NonNull EntityKey<ID> key, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lock(key, LockPriority.NORMAL, timeout, timeUnit);
+  }
+
+  @Override
+  public boolean lock(@NonNull EntityKey<ID> key, int priority,
+                      long timeout, TimeUnit timeUnit) throws InterruptedException {
+    if (biases != null && tryLockBiased(key)) {
+      return true;
+    }
+    if (transfers != null && tryLockTransferred(key)) {
+      return true;
+    }
+    if (hierarchy == null) {
+      return tryLockPoint(key, priority, timeout, timeUnit);
+    }
+    long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+    List<EntityKey<ID>> ancestors = hierarchy.ancestors(key);
+    if (!enterIntentions(ancestors, true, deadlineNanos)) {
+      return false;
+    }
+    boolean locked = false;
+    try {
+      if (!hierarchy.isParent(key.getEntityClass())) {
+        locked = tryLockPoint(key, priority, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return locked;
+      }
+      while (true) {
+        if (!tryLockPoint(key, priority, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          return false;
+        }
+        if (hierarchy.tryEnterExclusive(key)) {
+          locked = true;
+          return true;
+        }
+        unlockPoint(key);
+        if (!hierarchy.awaitExclusive(key, true, deadlineNanos)) {
+          return false;
+        }
+      }
+    } finally {
+      if (!locked) {
+        exitIntentions(ancestors, ancestors.size());
+      }
+    }
+  }
+
+  private boolean tryLockPoint(EntityKey<ID> key, int priority,
+                               long timeout, TimeUnit timeUnit) throws InterruptedException {
+    RangeLockTable<ID> ranges = rangeLocks.get(key.getEntityClass());
+    if (ranges == null) {
+      PartitionLockTable<ID> partitions = partitionsOf(key.getEntityClass());
+      return partitions == null
+        ? tryLockEntity(key, priority, timeout, timeUnit)
+        : lockPartitioned(key, priority, partitions, true, System.nanoTime() + timeUnit.toNanos(timeout), true);
+    }
+    long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+    while (true) {
+      if (!tryLockEntity(key, priority, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+      if (ranges.tryEnterPoint(key.getEntityId())) {
+        return true;
+      }
+      unlockEntity(key);
+      if (!ranges.awaitPoint(key.getEntityId(), true, deadlineNanos)) {
+        return false;
+      }
+    }
+  }
+
+  private boolean tryLockEntity(EntityKey<ID> key, int priority,
+                                long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return tryLockEntity(key, priority, timeout, timeUnit, true);
+  }
+
+  /**
+   * @param escalate false when the caller has decided on the class global lock already, like a group of a request
+   */
+  private boolean tryLockEntity(EntityKey<ID> key, int priority,
+                                long timeout, TimeUnit timeUnit, boolean escalate) throws InterruptedException {
+
+    ID entityId = key.getEntityId();
+    Class<?> clazz = key.getEntityClass();
+    admit(key, timeUnit.toNanos(timeout));
+    long startTimeInBaseUnit = timeUnit.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    LockTimeoutEvent timeoutEvent = LockTimeoutEvent.start();
+
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+
+    GlobalLockEvent globalLockEvent = GlobalLockEvent.start(classGlobalLock);
+    TrackedLock acquiredGlobalLock = tryLockClassGlobalLock(classGlobalLock, clazz, timeout, timeUnit);
+    if (acquiredGlobalLock == null) {
+      timedOut(timeoutEvent, classGlobalLock, entityId, clazz, timeUnit.toNanos(timeout));
+      if (tracer != null) {
+        tracer.timedOut(clazz, entityId, classGlobalLock.owner(), timeUnit.toNanos(timeout));
+      }
+      return false;
+    }
+    classGlobalLock = acquiredGlobalLock;
+    globalLockEvent.end(clazz, false);
+
+    TrackedLock entityLock = getOrCreateLock(key);
+
+    // check escalation conditions
+    if (escalate && escalationConditionsFulfilled(clazz)) {
+      // success - free all locked, hold global lock and return
+      entityLock.leave();
+      escalate(entityId, clazz);
+      return true;
+    }
+
+    // the same as in lock without timeout, wait for the entity without the class global lock
+    postLockActions(clazz);
+    classGlobalLock.unlock();
+
+    long endTimeInBaseUnit = timeUnit.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    long lastTimeout = startTimeInBaseUnit + timeout - endTimeInBaseUnit;
+
+    boolean locked;
+    try {
+      locked = tryLockEntityLock(entityLock, entityId, clazz, priority, lastTimeout, timeUnit);
+    } catch (InterruptedException e) {
+      abandonEntityLock(key, entityLock);
+      throw e;
+    }
+    if (!locked) {
+      // the entity is not ours, forget it and let global lockers of the class go
+      abandonEntityLock(key, entityLock);
+      timedOut(timeoutEvent, entityLock, entityId, clazz, timeUnit.toNanos(timeout));
+      return false;
+    }
+    entityLock.leave();
+
+    return true;
+  }
+
+  @Override
+  public void unlock(@NonNull ID entityId, Class<?> clazz) {
+    unlock(EntityKey.of(entityId, clazz));
+  }
+
+  @Override
+  public void unlock(@NonNull EntityKey<ID> key) {
+    if (biases != null && tryUnlockBiased(key)) {
+      return;
+    }
+    if (transfers != null && tryUnlockTransferred(key)) {
+      return;
+    }
+    if (hierarchy == null) {
+      unlockPoint(key);
+      return;
+    }
+    if (hierarchy.isParent(key.getEntityClass())) {
+      hierarchy.exitExclusive(key);
+    }
+    unlockPoint(key);
+    List<EntityKey<ID>> ancestors = hierarchy.ancestors(key);
+    exitIntentions(ancestors, ancestors.size());
+  }
+
+  /**
+   * The lock of the entity is released, the target holds the entity without it, see {@link EntityTransfers}.
+   * Holds of the entity stay counted and the entity goes to the locked entities of the target,
+   * for the escalation and the global locks. Locks of the entity by other threads, the current one included, wait
+   * for the last unlock of the target. The watchdog does not see transferred entities.
+   *
+   * @throws IllegalStateException transfers are off, or threads wait for conditions of the entity
+   */
+  @Override
+  public void transfer(@NonNull EntityKey<ID> key, @NonNull Thread target) {
+    if (transfers == null) {
+      throw new IllegalStateException("Lock transfers are off");
+    }
+    Class<?> clazz = key.getEntityClass();
+    if (rangeLocks.containsKey(clazz)) {
+      throw new IllegalArgumentException("Lock transfers are not supported for range lock class " + clazz.getName());
+    }
+    if (biases != null) {
+      inflateBias(key);
+    }
+    lockInnerLock();
+    try {
+      EntityTransfers.Transfer transfer = transfers.ofCurrentThread(key);
+      TrackedLock entityLock = entityLocks.get(key);
+      if (transfer == null && (entityLock == null || !entityLock.isHeldByCurrentThread())) {
+        throw new IllegalMonitorStateException("Entity " + clazz.getName() + "#" + key.getEntityId()
+          + " is not locked by " + Thread.currentThread().getName());
+      }
+      if (transfer == null && entityLock.hasConditions()) {
+        throw new IllegalStateException("Threads wait for conditions of entity " + clazz.getName() + "#" + key.getEntityId());
+      }
+      unbindThreadWithEntity(key.getEntityId(), clazz);
+      bindThreadWithEntity(target, key.getEntityId(), clazz);
+      if (transfer != null) {
+        transfers.handOver(key, target, 0);
+        return;
+      }
+      int holds = entityLock.getHoldCount();
+      // in place before the lock is released
+      transfers.handOver(key, target, holds);
+      for (int i = 0; i < holds; i++) {
+        releaseEntityLock(key, entityLock);
+      }
+    } finally {
+      innerLock.unlock();
+    }
+  }
+
+  /**
+   * Intention locks on the ancestors, the root first
+   *
+   * @return false on timeout
+   */
+  private boolean enterIntentions(List<EntityKey<ID>> ancestors, boolean timed, long deadlineNanos) throws InterruptedException {
+    for (int i = 0; i < ancestors.size(); i++) {
+      boolean entered = false;
+      try {
+        entered = enterIntention(ancestors.get(i), timed, deadlineNanos);
+      } finally {
+        if (!entered) {
+          exitIntentions(ancestors, i);
+        }
+      }
+      if (!entered) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean enterIntention(EntityKey<ID> parent, boolean timed, long deadlineNanos) throws InterruptedException {
+    Class<?> clazz = parent.getEntityClass();
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    classGlobalLock = timed
+      ? tryLockClassGlobalLock(classGlobalLock, clazz, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)
+      : lockClassGlobalLock(classGlobalLock, clazz, false);
+    if (classGlobalLock == null) {
+      return false;
+    }
+    // counted like an entity of the parent class, so global lockers of the parent class wait for the children
+    postLockActions(clazz);
+    classGlobalLock.unlock();
+
+    boolean entered = false;
+    try {
+      entered = hierarchy.enterIntention(parent, timed, deadlineNanos);
+    } finally {
+      if (!entered) {
+        forgetLockedObject(clazz);
+      }
+    }
+    return entered;
+  }
+
+  private void exitIntentions(List<EntityKey<ID>> ancestors, int entered) {
+    for (int i = entered - 1; i >= 0; i--) {
+      EntityKey<ID> parent = ancestors.get(i);
+      if (hierarchy.exitIntention(parent)) {
+        forgetLockedObject(parent.getEntityClass());
+      }
+    }
+  }
+
+  private void unlockPoint(@NonNull EntityKey<ID> key) {
+    RangeLockTable<ID> ranges = rangeLocks.get(key.getEntityClass());
+    if (ranges != null) {
+      ranges.exitPoint(key.getEntityId());
+    }
+    PartitionLockTable<ID> partitions = ranges == null ? partitionsOf(key.getEntityClass()) : null;
+    if (partitions != null) {
+      int left = partitions.exitCovered(key.getEntityId());
+      if (left == 0) {
+        partitionReleased(key.getEntityClass());
+      }
+      if (left >= 0) {
+        return;
+      }
+      partitions.exitPoint(key.getEntityId());
+    }
+    unlockEntity(key);
+  }
+
+  @Nullable
+  private PartitionLockTable<ID> partitionsOf(Class<?> clazz) {
+    if (partitionLocks == null || rangeLocks.containsKey(clazz) || hierarchy != null && hierarchy.involves(clazz)) {
+      return null;
+    }
+    return partitionLocks.computeIfAbsent(clazz, ignore -> new PartitionLockTable<>(config.getEscalationPartitions()));
+  }
+
+  /**
+   * @param escalate false when the caller has decided on the class global lock already, like a group of a request
+   */
+  private boolean lockPartitioned(EntityKey<ID> key, int priority, PartitionLockTable<ID> partitions,
+                                  boolean timed, long deadlineNanos, boolean escalate) throws InterruptedException {
+    ID entityId = key.getEntityId();
+    Class<?> clazz = key.getEntityClass();
+    while (true) {
+      if (partitions.tryEnterCovered(entityId)) {
+        return true;
+      }
+      boolean locked = partitions.heldByCurrentThread() > 0 && lockEntityOfOwner(key, priority, false, escalate);
+      if (!locked) {
+        // the owner of partitions never waits with them, other threads may wait for them holding this entity
+        deescalatePartitions(clazz, partitions);
+        locked = timed
+          ? tryLockEntity(key, priority, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS, escalate)
+          : lockEntity(key, priority);
+      }
+      if (!locked) {
+        return false;
+      }
+      TrackedLock classGlobalLock = clazzGlobalLocks.get(clazz);
+      if (classGlobalLock != null && classGlobalLock.isHeldByCurrentThread()) {
+        // the class has escalated, partitions do not matter
+        return true;
+      }
+      int points = partitions.tryEnterPoint(entityId);
+      if (points >= 0) {
+        if (points >= config.getPartitionEscalationThreshold()) {
+          escalatePartition(key, partitions);
+        }
+        return true;
+      }
+      // another thread has taken the partition, wait for it without holding the entity
+      unlockEntity(key);
+      deescalatePartitions(clazz, partitions);
+      if (!partitions.awaitPartition(entityId, timed, deadlineNanos)) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * The entity lock for a thread with partitions of the class: no admission, nothing but the class global lock is waited for
+   *
+   * @param wait false to give up at once if the entity is locked by another thread
+   * @return false if the entity is locked by another thread
+   */
+  private boolean lockEntityOfOwner(EntityKey<ID> key, int priority, boolean wait, boolean escalate) throws InterruptedException {
+    ID entityId = key.getEntityId();
+    Class<?> clazz = key.getEntityClass();
+    TrackedLock classGlobalLock = lockClassGlobalLock(getOrCreateClassGlobalLock(clazz), clazz, false);
+    TrackedLock entityLock = getOrCreateLock(key);
+    if (escalate && escalationConditionsFulfilled(clazz)) {
+      entityLock.leave();
+      escalate(entityId, clazz);
+      return true;
+    }
+    postLockActions(clazz);
+    classGlobalLock.unlock();
+
+    boolean locked = false;
+    try {
+      if (wait) {
+        lockEntityLock(entityLock, entityId, clazz, priority);
+        locked = true;
+      } else {
+        locked = tryLockEntityLock(entityLock, entityId, clazz, priority, 0, TimeUnit.NANOSECONDS);
+      }
+    } finally {
+      if (!locked) {
+        abandonEntityLock(key, entityLock);
+      }
+    }
+    if (locked) {
+      entityLock.leave();
+    }
+    return locked;
+  }
+
+  // entity locks of the thread in the partition become holds of the partition
+  private void escalatePartition(EntityKey<ID> key, PartitionLockTable<ID> partitions) {
+    Class<?> clazz = key.getEntityClass();
+    int partition = partitions.partitionOf(key.getEntityId());
+    Map<ID, Integer> held = new HashMap<>();
+    for (ID entityId : new ArrayList<>(getTreadLockedEntities(clazz))) {
+      TrackedLock entityLock = entityLocks.get(EntityKey.of(entityId, clazz));
+      if (partitions.partitionOf(entityId) == partition && entityLock != null && entityLock.isHeldByCurrentThread()) {
+        held.put(entityId, entityLock.getHoldCount());
+      }
+    }
+    if (!partitions.tryEscalate(key.getEntityId(), held)) {
+      return;
+    }
+    // counted like an entity before the entities go, so global lockers wait for the partition
+    postLockActions(clazz);
+    if (stamps != null) {
+      stamps.classSectionStarted(clazz);
+    }
+    for (Map.Entry<ID, Integer> entry : held.entrySet()) {
+      for (int i = 0; i < entry.getValue(); i++) {
+        unlockEntity(EntityKey.of(entry.getKey(), clazz));
+      }
+    }
+  }
+
+  // the partitions of the thread turn back into entity locks, nobody gets the entities in between
+  private void deescalatePartitions(Class<?> clazz, PartitionLockTable<ID> partitions) throws InterruptedException {
+    Map<ID, Integer> covered = partitions.coveredEntitiesOfCurrentThread();
+    if (covered.isEmpty()) {
+      return;
+    }
+    List<EntityKey<ID>> relocked = new ArrayList<>();
+    boolean done = false;
+    try {
+      for (Map.Entry<ID, Integer> entry : covered.entrySet()) {
+        EntityKey<ID> key = EntityKey.of(entry.getKey(), clazz);
+        for (int i = 0; i < entry.getValue(); i++) {
+          // others hold covered entities only for a moment before they wait for the partition
+          lockEntityOfOwner(key, LockPriority.NORMAL, true, false);
+          relocked.add(key);
+        }
+      }
+      done = true;
+    } finally {
+      if (!done) {
+        relocked.forEach(this::unlockEntity);
+      }
+    }
+    for (int released = partitions.release(); released > 0; released--) {
+      partitionReleased(clazz);
+    }
+  }
+
+  private void partitionReleased(Class<?> clazz) {
+    if (stamps != null) {
+      stamps.classSectionEnded(clazz);
+    }
+    if (versions != null) {
+      versions.classReleased(clazz);
+    }
+    forgetLockedObject(clazz);
+  }
+
+  /**
+   * Lock all ids between from and to, the bounds included, ids must be {@link Comparable}.
+   * The class has to be listed in {@link EntityLockerConfig#getRangeLockClasses()}.
+   * Waits for ranges and locked entities of other threads inside it, counts as one locked entity for the global lock.
+   */
+  @Override
+  public boolean lockRange(@NonNull ID from, @NonNull ID to, Class<?> clazz) throws InterruptedException {
+    return lockRange(from, to, clazz, false, 0, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public boolean lockRange(@NonNull ID from, @NonNull ID to, Class<?> clazz,
+                           long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return lockRange(from, to, clazz, true, timeout, timeUnit);
+  }
+
+  private boolean lockRange(ID from, ID to, Class<?> clazz, boolean timed,
+                            long timeout, TimeUnit timeUnit) throws InterruptedException {
+
+    RangeLockTable<ID> ranges = getRangeLockTable(clazz, from, to);
+    long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    classGlobalLock = timed
+      ? tryLockClassGlobalLock(classGlobalLock, clazz, timeout, timeUnit)
+      : lockClassGlobalLock(classGlobalLock, clazz, false);
+    if (classGlobalLock == null) {
+      return false;
+    }
+    // counted like an entity, so global lockers wait for the range
+    postLockActions(clazz);
+    classGlobalLock.unlock();
+
+    boolean locked;
+    try {
+      locked = ranges.lockRange(from, to, timed, deadlineNanos);
+    } catch (InterruptedException e) {
+      forgetLockedObject(clazz);
+      throw e;
+    }
+    if (!locked) {
+      forgetLockedObject(clazz);
+      if (metrics != null) {
+        metrics.of(clazz).timedOut();
+      }
+    } else if (stamps != null) {
+      stamps.classSectionStarted(clazz);
+    }
+    return locked;
+  }
+
+  @Override
+  public void unlockRange(@NonNull ID from, @NonNull ID to, Class<?> clazz) {
+    getRangeLockTable(clazz, from, to).unlockRange(from, to);
+    if (stamps != null) {
+      stamps.classSectionEnded(clazz);
+    }
+    if (versions != null) {
+      versions.classReleased(clazz);
+    }
+    forgetLockedObject(clazz);
+  }
+
+  private RangeLockTable<ID> getRangeLockTable(Class<?> clazz, ID from, ID to) {
+    RangeLockTable<ID> ranges = rangeLocks.get(clazz);
+    if (ranges == null) {
+      throw new IllegalArgumentException("Range locks are not enabled for " + clazz.getName());
+    }
+    if (RangeLockTable.compare(from, to) > 0) {
+      throw new IllegalArgumentException("Range [" + from + ", " + to + "] is empty");
+    }
+    return ranges;
+  }
+
+  private void forgetLockedObject(Class<?> clazz) {
+    getNumberOfBlockedObjects(clazz).decrementAndGet();
+    wakeUpClassGlobalLock(clazz);
+  }
+
+  private void unlockEntity(EntityKey<ID> key) {
+
+    ID entityId = key.getEntityId();
+    Class<?> clazz = key.getEntityClass();
+    try {
+      lockInnerLock();
+
+      TrackedLock currentLock = entityLocks.get(key);
+
+      if (currentLock != null && currentLock.isLocked()) {
+
+        // attempt to release the lock:
+        // current thread is the owner and everything is ok
+        // current thread is not the owner and IllegalArgumentException is raised
+
+        if (biases != null && currentLock.isHeldByCurrentThread() && currentLock.getHoldCount() == 1
+          && !currentLock.hasQueuedWaiters() && !currentLock.hasPending() && !rangeLocks.containsKey(clazz)) {
+          biases.released(key);
+        }
+
+        releaseEntityLock(key, currentLock);
+      }
+
+      unbindThreadWithEntity(entityId, clazz);
+
+      getNumberOfBlockedObjects(clazz).decrementAndGet();
+    } finally {
+      innerLock.unlock();
+    }
+
+    wakeUpClassGlobalLock(clazz);
+  }
+
+  // called with the inner lock
+  private void releaseEntityLock(EntityKey<ID> key, TrackedLock currentLock) {
+    // nobody waits for it and nobody is about to
+    if (idleLocks == null && currentLock.getHoldCount() == 1 && !currentLock.hasQueuedWaiters() && !currentLock.hasPending()) {
+      entityLocks.remove(key);
+    }
+
+    unlockEntityLock(currentLock, key.getEntityId(), key.getEntityClass());
+
+    if (idleLocks != null && !currentLock.isLocked()) {
+      idleLocks.released(currentLock);
+    }
+  }
+
+  /**
+   * Every class of the request passes its class global lock once: the entities are counted and bound in one pass,
+   * the class escalates to the global lock when the whole group would reach the threshold and nobody else holds the class.
+   * Classes with range or hierarchy checks lock their entities one by one.
+   */
+  @Override
+  public boolean lock(@NonNull LockRequest<ID> request, long timeout, TimeUnit timeUnit) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+    request.begin();
+    List<LockRequest.Group<ID>> groups = request.groups();
+    int lockedGroups = 0;
+    try {
+      for (; lockedGroups < groups.size(); lockedGroups++) {
+        if (!lockGroup(request, lockedGroups, deadlineNanos)) {
+          return false;
+        }
+      }
+    } finally {
+      if (lockedGroups < groups.size()) {
+        request.unlockGroups(this, lockedGroups);
+      }
+    }
+    return true;
+  }
+
+  private boolean lockGroup(LockRequest<ID> request, int index, long deadlineNanos) throws InterruptedException {
+    LockRequest.Group<ID> group = request.groups().get(index);
+    Class<?> clazz = group.entityClass;
+    if (group.isGlobal() || groupEscalates(group)) {
+      if (!tryGlobalLock(clazz, deadlineNanos, group.isGlobal())) {
+        return false;
+      }
+      request.lockedGlobally(index);
+      return true;
+    }
+    if (rangeLocks.containsKey(clazz) || hierarchy != null && hierarchy.involves(clazz)) {
+      return LockRequest.lockEntities(this, group, deadlineNanos);
+    }
+    PartitionLockTable<ID> partitions = partitionsOf(clazz);
+    if (partitions != null) {
+      return lockPartitionedGroup(group, partitions, deadlineNanos);
+    }
+    if (transfers != null && group.keys.stream().anyMatch(key -> transfers.ofCurrentThread(key) != null)) {
+      // entities transferred to the thread are held without their locks
+      return LockRequest.lockEntities(this, group, deadlineNanos);
+    }
+
+    List<EntityKey<ID>> keys = group.keys;
+    for (EntityKey<ID> key : keys) {
+      admit(key, Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    GlobalLockEvent globalLockEvent = GlobalLockEvent.start(classGlobalLock);
+    classGlobalLock = tryLockClassGlobalLock(classGlobalLock, clazz, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    if (classGlobalLock == null) {
+      return false;
+    }
+    globalLockEvent.end(clazz, false);
+
+    TrackedLock[] locks = new TrackedLock[keys.size()];
+    try {
+      lockInnerLock();
+      try {
+        for (int i = 0; i < keys.size(); i++) {
+          locks[i] = getOrCreateLock(keys.get(i));
+        }
+        getNumberOfBlockedObjects(clazz).addAndGet(keys.size());
+      } finally {
+        innerLock.unlock();
+      }
+    } finally {
+      classGlobalLock.unlock();
+    }
+
+    for (int i = 0; i < keys.size(); i++) {
+      EntityKey<ID> key = keys.get(i);
+      boolean locked = false;
+      try {
+        locked = tryLockEntityLock(locks[i], key.getEntityId(), clazz, LockPriority.NORMAL,
+          deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } finally {
+        if (!locked) {
+          // the acquired entities are released, the rest is forgotten
+          for (int j = 0; j < i; j++) {
+            unlockEntity(keys.get(j));
+          }
+          for (int j = i; j < keys.size(); j++) {
+            abandonEntityLock(keys.get(j), locks[j]);
+          }
+        }
+      }
+      if (!locked) {
+        if (metrics != null) {
+          metrics.of(clazz).timedOut();
+        }
+        return false;
+      }
+      locks[i].leave();
+    }
+    return true;
+  }
+
+  /**
+   * Entities one by one like {@link LockRequest#lockEntities}, but the class does not escalate in the middle of the group:
+   * the request would not know about the class global lock
+   */
+  private boolean lockPartitionedGroup(LockRequest.Group<ID> group, PartitionLockTable<ID> partitions,
+                                       long deadlineNanos) throws InterruptedException {
+    List<EntityKey<ID>> keys = group.keys;
+    for (int i = 0; i < keys.size(); i++) {
+      boolean locked = false;
+      try {
+        locked = lockPartitioned(keys.get(i), LockPriority.NORMAL, partitions, true, deadlineNanos, false);
+      } finally {
+        if (!locked) {
+          LockRequest.unlockEntities(this, group, i);
+        }
+      }
+      if (!locked) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean groupEscalates(LockRequest.Group<ID> group) {
+    Class<?> clazz = group.entityClass;
+    lockInnerLock();
+    try {
+      Set<ID> lockedByThread = getTreadLockedEntities(clazz);
+      int locked = lockedByThread.size() + getNumberOfPartitionHoldsOfThread(clazz);
+      for (EntityKey<ID> key : group.keys) {
+        if (!lockedByThread.contains(key.getEntityId())) {
+          locked++;
+        }
+      }
+      return locked >= globalEscalationThreshold && !globalLockIsNotPossibleForThread(clazz, 0);
+    } finally {
+      innerLock.unlock();
+    }
+  }
+
+  /**
+   * @param explicit requested as a whole class, otherwise the group has escalated
+   */
+  private boolean tryGlobalLock(Class<?> clazz, long deadlineNanos, boolean explicit) throws InterruptedException {
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    GlobalLockEvent event = GlobalLockEvent.start(classGlobalLock);
+    classGlobalLock = tryLockClassGlobalLock(classGlobalLock, clazz, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    if (classGlobalLock == null) {
+      return false;
+    }
+    Condition classGlobalLockCondition = getClassGlobalLockCondition(clazz);
+    boolean locked = false;
+    try {
+      while (globalLockIsNotPossibleForThread(clazz, 0)) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        classGlobalLockCondition.awaitNanos(remaining);
+      }
+      locked = true;
+    } finally {
+      if (!locked) {
+        classGlobalLock.unlock();
+      }
+    }
+    event.end(clazz, explicit);
+    if (metrics != null) {
+      if (explicit) {
+        metrics.of(clazz).globalLockAcquired();
+      } else {
+        metrics.of(clazz).escalated();
+      }
+    }
+    if (tracer != null) {
+      if (explicit) {
+        tracer.globalAcquired(clazz);
+      } else {
+        tracer.escalated(clazz, null, 0);
+      }
+    }
+    globalSectionStarted(clazz);
+    return true;
+  }
+
+  /**
+   * Reads nothing but versions and the lock of the entity, writes nothing.
+   * Writes done under a lock of a parent entity (see {@link EntityLockerConfig#getParents()}) are not seen
+   * by stamps of its children, read the stamp of the parent for them.
+   *
+   * @return 0 also when optimistic reads are off, see {@link EntityLockerConfig#getOptimisticReadStripes()}
+   */
+  @Override
+  public long tryOptimisticRead(@NonNull ID entityId, Class<?> clazz) {
+    if (stamps == null) {
+      return 0;
+    }
+    // versions first: a lock taken after this check bumps them
+    long stamp = stamps.stamp(entityId, clazz);
+    if (stamp == 0) {
+      return 0;
+    }
+    EntityKey<ID> key = EntityKey.of(entityId, clazz);
+    if (biases != null && biases.isHeld(key) || transfers != null && transfers.isHeld(key)) {
+      return 0;
+    }
+    TrackedLock entityLock = entityLocks.get(key);
+    return entityLock != null && entityLock.isLocked() ? 0 : stamp;
+  }
+
+  @Override
+  public boolean validate(@NonNull ID entityId, Class<?> clazz, long stamp) {
+    return stamps != null && stamps.validate(entityId, clazz, stamp);
+  }
+
+  /**
+   * Versions outlive the locks of entities. Writes done under a lock of a parent entity
+   * (see {@link EntityLockerConfig#getParents()}) move the version of the parent only.
+   *
+   * @throws IllegalStateException versions are off, see {@link EntityLockerConfig#getEntityVersionCapacity()}
+   */
+  @Override
+  public long version(@NonNull ID entityId, Class<?> clazz) {
+    if (versions == null) {
+      throw new IllegalStateException("Entity versions are off");
+    }
+    return versions.version(EntityKey.of(entityId, clazz), clazz);
+  }
+
+  /**
+   * Only the entity lock is released while the thread waits: the entity stays counted for the class global lock,
+   * ranges and parents locked by the thread stay locked
+   *
+   * @throws IllegalMonitorStateException also when the entity is covered by the class global lock of the thread
+   */
+  @Override
+  public boolean awaitCondition(@NonNull ID entityId, Class<?> clazz, @NonNull String name,
+                                long timeout, TimeUnit timeUnit) throws InterruptedException {
+    return awaitCondition(entityId, clazz, name, Math.max(0, timeUnit.toNanos(timeout)));
+  }
+
+  @Override
+  public void awaitCondition(@NonNull ID entityId, Class<?> clazz, @NonNull String name) throws InterruptedException {
+    awaitCondition(entityId, clazz, name, -1);
+  }
+
+  private boolean awaitCondition(ID entityId, Class<?> clazz, String name, long timeoutNanos) throws InterruptedException {
+    TrackedLock entityLock = heldEntityLock(entityId, clazz);
+    if (tracer != null) {
+      tracer.released(clazz, entityId);
+    }
+    if (versions != null) {
+      versions.entityReleased(EntityKey.of(entityId, clazz));
+    }
+    try {
+      return EntityCondition.await(entityLock, name, timeoutNanos);
+    } finally {
+      entityLock.markAcquired(System.nanoTime());
+      // all holds have been given up, the hold time starts again even for a reentrant holder
+      if (watchdog != null) {
+        entityLock.markAcquiredAtMillis(watchdog.currentTimeMillis());
+      }
+      if (tracer != null) {
+        tracer.acquired(clazz, entityId, 0);
+      }
+      // others may have changed the entity meanwhile
+      if (stamps != null) {
+        stamps.entityLocked(entityId, clazz);
+      }
+    }
   }
 
-  public EntityLockerImpl(int globalEscalationThreshold) {
-
-    this.innerLock = new ReentrantLock();
-
-    this.clazzGlobalLocks = new HashMap<>();
-    this.clazzGlobalLocksConditions = new HashMap<>();
-
-    this.entitiesLockMaps = new HashMap<>();
-    this.threadLockedEntities = new HashMap<>();
-    this.clazzNumberOfLockedObjects = new HashMap<>();
-
-    this.globalEscalationThreshold = globalEscalationThreshold;
+  @Override
+  public void signal(@NonNull ID entityId, Class<?> clazz, @NonNull String name) {
+    EntityCondition.signal(heldEntityLock(entityId, clazz), name, false);
   }
 
   @Override
-  public boolean globalLock(Class<?> clazz) throws InterruptedException {
+  public void signalAll(@NonNull ID entityId, Class<?> clazz, @NonNull String name) {
+    EntityCondition.signal(heldEntityLock(entityId, clazz), name, true);
+  }
 
-    ReentrantLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+  private TrackedLock heldEntityLock(ID entityId, Class<?> clazz) {
+    if (biases != null) {
+      inflateBias(EntityKey.of(entityId, clazz));
+    }
+    TrackedLock entityLock = entityLocks.get(EntityKey.of(entityId, clazz));
+    if (entityLock == null || !entityLock.isHeldByCurrentThread()) {
+      throw new IllegalMonitorStateException("Entity " + clazz.getName() + "#" + entityId
+        + " is not locked by " + Thread.currentThread().getName());
+    }
+    return entityLock;
+  }
 
-    // block class or wait
-    classGlobalLock.lockInterruptibly();
-    Condition classGlobalLockCondition = getClassGlobalLockCondition(clazz);
+  /**
+   * Flat combining: waiters for the entity publish their operations and the thread that gets the lock runs them in a batch
+   */
+  @Override
+  public <T> T combine(@NonNull EntityKey<ID> key, @NonNull Supplier<T> operation) throws InterruptedException {
+    if (isHeldByCurrentThread(key)) {
+      // the leader would wait for this thread, which waits for the leader
+      return EntityLocker.super.combine(key, operation);
+    }
+    FlatCombiner combiner = combiners.compute(key, (ignore, current) -> (current != null ? current : new FlatCombiner()).join());
+    try {
+      return combiner.combine(operation, () -> lock(key), () -> unlock(key));
+    } finally {
+      combiners.computeIfPresent(key, (ignore, current) -> current.leave() ? null : current);
+    }
+  }
 
-    // 0 because there are no attempts to lock certain entity
-    while (globalLockIsNotPossibleForThread(clazz, 0)) {
-      // then it's not possible to get global lock
-      classGlobalLockCondition.await();
+  private boolean isHeldByCurrentThread(EntityKey<ID> key) {
+    if (biases != null) {
+      EntityBiases.Bias bias = biases.ofCurrentThread(key);
+      if (bias != null && bias.holds() > 0) {
+        return true;
+      }
+    }
+    if (transfers != null && transfers.ofCurrentThread(key) != null) {
+      return true;
+    }
+    TrackedLock entityLock = entityLocks.get(key);
+    if (entityLock != null && entityLock.isHeldByCurrentThread()) {
+      return true;
+    }
+    TrackedLock classGlobalLock = clazzGlobalLocks.get(key.getEntityClass());
+    if (classGlobalLock != null && classGlobalLock.isHeldByCurrentThread()) {
+      return true;
     }
+    RangeLockTable<ID> ranges = rangeLocks.get(key.getEntityClass());
+    if (ranges != null && ranges.coveredByCurrentThread(key.getEntityId())) {
+      return true;
+    }
+    PartitionLockTable<ID> partitions = partitionLocks != null ? partitionLocks.get(key.getEntityClass()) : null;
+    if (partitions != null && partitions.coveredByCurrentThread(key.getEntityId())) {
+      return true;
+    }
+    return hierarchy != null && hierarchy.coveredByCurrentThread(hierarchy.ancestors(key));
+  }
 
-    return true;
+  @ThreadSafeIMHO
+  private void postLockActions(Class<?> clazz) {
+    getNumberOfBlockedObjects(clazz).incrementAndGet();
   }
 
-  @Override
-  public void globalUnlock(Class<?> clazz) {
-    ReentrantLock classGlobalLock = getCurrentClassGlobalLock(clazz);
-    if (classGlobalLock.isLocked()) {
-      // clean maps only when both conditions true
-      // lock is held by one (current process) and no waiters
-      if (classGlobalLock.getHoldCount() == 1 && !classGlobalLock.hasQueuedThreads()) {
-        clearClassGlobalLock(clazz);
+  /**
+   * Undo the bookkeeping of an entity that was counted but has not been acquired
+   */
+  private void abandonEntityLock(EntityKey<ID> key, TrackedLock entityLock) {
+    Class<?> clazz = key.getEntityClass();
+    lockInnerLock();
+    try {
+      entityLock.leave();
+      if (idleLocks == null && !entityLock.isLocked() && !entityLock.hasQueuedWaiters() && !entityLock.hasPending()) {
+        entityLocks.remove(key, entityLock);
       }
-      classGlobalLock.unlock();
+      // an interrupted reentrant attempt, the entity is still ours
+      if (!entityLock.isHeldByCurrentThread()) {
+        unbindThreadWithEntity(key.getEntityId(), clazz);
+      }
+      getNumberOfBlockedObjects(clazz).decrementAndGet();
+    } finally {
+      innerLock.unlock();
     }
+    wakeUpClassGlobalLock(clazz);
   }
 
-  @Override
-  public boolean lock(@NonNull ID entityId, Class<?> clazz) throws InterruptedException {
-
-    ReentrantLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+  private void lockInnerLock() {
+    if (metrics == null) {
+      innerLock.lock();
+      return;
+    }
+    // measure only real waits, reentrant and free acquisitions are not interesting
+    if (!innerLock.tryLock()) {
+      long startNanos = System.nanoTime();
+      innerLock.lock();
+      metrics.innerLockWaited(System.nanoTime() - startNanos);
+    }
+  }
 
-    classGlobalLock.lock();
+  /**
+   * @return the acquired class global lock, it replaces the given one if that has been dropped from the table meanwhile
+   */
+  private TrackedLock lockClassGlobalLock(TrackedLock classGlobalLock, Class<?> clazz,
+                                          boolean interruptibly) throws InterruptedException {
+    TrackedLock lock = classGlobalLock;
+    while (true) {
+      if (metrics == null) {
+        lockClassGlobalLock(lock, interruptibly);
+      } else {
+        long startNanos = System.nanoTime();
+        boolean contended = !lock.tryLock();
+        if (contended) {
+          lockClassGlobalLock(lock, interruptibly);
+        }
+        metrics.of(clazz).classLockAcquired(System.nanoTime() - startNanos, contended);
+      }
+      TrackedLock current = currentClassGlobalLock(clazz, lock);
+      if (current == lock) {
+        return lock;
+      }
+      lock.unlock();
+      lock = current;
+    }
+  }
 
-    ReentrantLock entityLock = getOrCreateLock(entityId, clazz);
+  private static void lockClassGlobalLock(ReentrantLock classGlobalLock,
+                                          boolean interruptibly) throws InterruptedException {
+    if (interruptibly) {
+      classGlobalLock.lockInterruptibly();
+    } else {
+      classGlobalLock.lock();
+    }
+  }
 
-    // try to get a global lock
-    if (escalationConditionsFulfilled(clazz)) {
-      // success - free all locked, hold global lock and return
-      // I've some doubts about it because maybe it's worth to save information about all locked objects
-      // and add lock for new entity. That approach will make possible to deescalate global lock.
-      // Anyway the task-08 is only about escalation with de-process.
-      unlockLockedByThread(clazz);
-      return true;
+  /**
+   * @return the acquired class global lock like {@link #lockClassGlobalLock(TrackedLock, Class, boolean)}, null on timeout
+   */
+  @Nullable
+  private TrackedLock tryLockClassGlobalLock(TrackedLock classGlobalLock, Class<?> clazz,
+                                             long timeout, TimeUnit timeUnit) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + timeUnit.toNanos(timeout);
+    TrackedLock lock = classGlobalLock;
+    while (true) {
+      long remaining = deadlineNanos - System.nanoTime();
+      if (metrics == null) {
+        if (!lock.tryLock(remaining, TimeUnit.NANOSECONDS)) {
+          return null;
+        }
+      } else {
+        long startNanos = System.nanoTime();
+        boolean contended = !lock.tryLock();
+        if (contended && !lock.tryLock(remaining, TimeUnit.NANOSECONDS)) {
+          return null;
+        }
+        metrics.of(clazz).classLockAcquired(System.nanoTime() - startNanos, contended);
+      }
+      TrackedLock current = currentClassGlobalLock(clazz, lock);
+      if (current == lock) {
+        return lock;
+      }
+      lock.unlock();
+      lock = current;
     }
+  }
 
-    // fail - continue with separate lock
-    entityLock.lockInterruptibly();
-    postLockActions(clazz);
+  /**
+   * A thread may take a class global lock from the table right before {@link #globalUnlock(Class)} drops it.
+   * Such a lock is put back if the table has none, otherwise the lock of the table wins.
+   *
+   * @return the lock of the table
+   */
+  @ThreadSafeIMHO
+  private TrackedLock currentClassGlobalLock(Class<?> clazz, TrackedLock acquired) {
+    lockInnerLock();
+    try {
+      TrackedLock current = clazzGlobalLocks.putIfAbsent(clazz, acquired);
+      if (current == null) {
+        clazzGlobalLocksConditions.put(clazz, acquired.newCondition());
+        return acquired;
+      }
+      return current;
+    } finally {
+      innerLock.unlock();
+    }
+  }
 
-    classGlobalLock.unlock();
+  private void lockEntityLock(TrackedLock entityLock, ID entityId, Class<?> clazz,
+                              int priority) throws InterruptedException {
+    if (biases != null) {
+      biases.revoke(EntityKey.of(entityId, clazz), false, 0);
+    }
+    EntityLockEvent event = EntityLockEvent.start(entityLock);
+    if (metrics == null && hotKeys == null && admission == null && tracer == null) {
+      entityLock.lockInterruptibly(priority);
+    } else {
+      long startNanos = System.nanoTime();
+      boolean contended = !entityLock.tryLock();
+      if (contended) {
+        if (tracer != null) {
+          tracer.waiting(clazz, entityId, entityLock.owner());
+        }
+        AtomicInteger classWaiters = admission != null ? admission.of(clazz).waiters : null;
+        if (classWaiters != null) {
+          classWaiters.incrementAndGet();
+        }
+        try {
+          entityLock.lockInterruptibly(priority);
+        } finally {
+          if (classWaiters != null) {
+            classWaiters.decrementAndGet();
+          }
+        }
+      }
+      entityLockAcquired(entityLock, entityId, clazz, startNanos, contended);
+    }
+    if (transfers != null) {
+      awaitTransferred(entityLock, entityId, clazz, priority, false, 0);
+    }
+    watchdogAcquired(entityLock);
+    stampAcquired(entityLock, entityId, clazz);
+    event.end(clazz, entityId);
+  }
 
+  private boolean tryLockEntityLock(TrackedLock entityLock, ID entityId, Class<?> clazz, int priority,
+                                    long timeout, TimeUnit timeUnit) throws InterruptedException {
+    // biases and transfers wait besides the lock
+    long deadlineNanos = biases != null || transfers != null ? System.nanoTime() + timeUnit.toNanos(timeout) : 0;
+    if (biases != null) {
+      if (!biases.revoke(EntityKey.of(entityId, clazz), true, deadlineNanos)) {
+        return false;
+      }
+      timeout = deadlineNanos - System.nanoTime();
+      timeUnit = TimeUnit.NANOSECONDS;
+    }
+    EntityLockEvent event = EntityLockEvent.start(entityLock);
+    if (metrics == null && hotKeys == null && admission == null && tracer == null) {
+      if (!entityLock.tryLock(priority, timeout, timeUnit)) {
+        return false;
+      }
+    } else {
+      long startNanos = System.nanoTime();
+      boolean contended = !entityLock.tryLock();
+      if (contended && tracer != null) {
+        tracer.waiting(clazz, entityId, entityLock.owner());
+      }
+      if (contended && !tryLockContended(entityLock, clazz, priority, timeout, timeUnit)) {
+        // a timeout is the hottest kind of contention
+        if (hotKeys != null) {
+          hotKeys.contended(clazz, entityId, System.nanoTime() - startNanos);
+        }
+        if (tracer != null) {
+          tracer.timedOut(clazz, entityId, entityLock.owner(), timeUnit.toNanos(timeout));
+        }
+        return false;
+      }
+      entityLockAcquired(entityLock, entityId, clazz, startNanos, contended);
+    }
+    if (transfers != null && !awaitTransferred(entityLock, entityId, clazz, priority, true, deadlineNanos)) {
+      return false;
+    }
+    watchdogAcquired(entityLock);
+    stampAcquired(entityLock, entityId, clazz);
+    event.end(clazz, entityId);
     return true;
   }
 
-  @Override
-  public boolean lock(ID entityId, Class<?> clazz, long timeout, TimeUnit timeUnit) throws InterruptedException {
-
-    long startTimeInBaseUnit = timeUnit.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+  private boolean tryLockContended(TrackedLock entityLock, Class<?> clazz, int priority,
+                                   long timeout, TimeUnit timeUnit) throws InterruptedException {
+    if (admission == null) {
+      return entityLock.tryLock(priority, timeout, timeUnit);
+    }
+    AtomicInteger classWaiters = admission.of(clazz).waiters;
+    classWaiters.incrementAndGet();
+    try {
+      return entityLock.tryLock(priority, timeout, timeUnit);
+    } finally {
+      classWaiters.decrementAndGet();
+    }
+  }
 
-    ReentrantLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+  /**
+   * @param timeoutNanos negative for lock without a timeout
+   * @throws LockRejectedException admission control sheds the call
+   */
+  private void admit(EntityKey<ID> key, long timeoutNanos) {
+    if (admission == null) {
+      return;
+    }
+    Class<?> clazz = key.getEntityClass();
+    TrackedLock classGlobalLock = clazzGlobalLocks.get(clazz);
+    if (classGlobalLock != null && classGlobalLock.isHeldByCurrentThread()) {
+      return;
+    }
+    try {
+      admission.admit(entityLocks.get(key), key.getEntityId(), clazz, timeoutNanos);
+    } catch (LockRejectedException e) {
+      if (metrics != null) {
+        metrics.of(clazz).rejected();
+      }
+      throw e;
+    }
+  }
 
-    if (!classGlobalLock.tryLock(timeout, timeUnit)) {
-      return false;
+  private void watchdogAcquired(TrackedLock entityLock) {
+    if (watchdog != null && entityLock.getHoldCount() == 1) {
+      entityLock.markAcquiredAtMillis(watchdog.currentTimeMillis());
     }
+  }
 
-    ReentrantLock entityLock = getOrCreateLock(entityId, clazz);
+  // the first hold of the class global lock only, the thread may hold it already
+  private void globalSectionStarted(Class<?> clazz) {
+    if (stamps == null) {
+      return;
+    }
+    TrackedLock classGlobalLock = clazzGlobalLocks.get(clazz);
+    if (classGlobalLock != null && classGlobalLock.getHoldCount() == 1) {
+      stamps.classSectionStarted(clazz);
+    }
+  }
 
-    long endTimeInBaseUnit = timeUnit.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-    long lastTimeout = startTimeInBaseUnit + timeout - endTimeInBaseUnit;
+  private void stampAcquired(TrackedLock entityLock, ID entityId, Class<?> clazz) {
+    if (stamps != null && entityLock.getHoldCount() == 1) {
+      stamps.entityLocked(entityId, clazz);
+    }
+  }
 
-    if (!entityLock.tryLock(lastTimeout, timeUnit)) {
+  private boolean tryLockBiased(EntityKey<ID> key) {
+    EntityBiases.Bias bias = biases.ofCurrentThread(key);
+    int holds = bias != null ? bias.lock() : 0;
+    if (holds == 0) {
       return false;
     }
-
-    // here we have a global lock and entity lock
-    // check escalation conditions
-    if (escalationConditionsFulfilled(clazz)) {
-      // success - free all locked, hold global lock and return
-      unlockLockedByThread(clazz);
-      return true;
+    if (stamps != null && holds == 1) {
+      stamps.entityLocked(key.getEntityId(), key.getEntityClass());
     }
-
-    postLockActions(clazz);
-    classGlobalLock.unlock();
     return true;
   }
 
-  @Override
-  public void unlock(@NonNull ID entityId, Class<?> clazz) {
+  private boolean tryLockTransferred(EntityKey<ID> key) {
+    EntityTransfers.Transfer transfer = transfers.ofCurrentThread(key);
+    if (transfer == null) {
+      return false;
+    }
+    transfer.lock();
+    postLockActions(key.getEntityClass());
+    return true;
+  }
 
+  private boolean tryUnlockTransferred(EntityKey<ID> key) {
+    EntityTransfers.Transfer transfer = transfers.ofCurrentThread(key);
+    if (transfer == null) {
+      return false;
+    }
+    Class<?> clazz = key.getEntityClass();
+    int holds = transfer.unlock();
+    if (holds == 0 && versions != null) {
+      versions.entityReleased(key);
+    }
+    lockInnerLock();
     try {
-      innerLock.lock();
+      if (holds == 0) {
+        unbindThreadWithEntity(key.getEntityId(), clazz);
+      }
+      getNumberOfBlockedObjects(clazz).decrementAndGet();
+    } finally {
+      innerLock.unlock();
+    }
+    if (holds == 0) {
+      transfers.released(key);
+    }
+    wakeUpClassGlobalLock(clazz);
+    return true;
+  }
 
-      ReentrantLock currentLock = getCurrentLock(entityId, clazz);
+  /**
+   * The entity lock has just been acquired, but the entity may belong to the thread it has been transferred to:
+   * give the lock back until the new owner is done
+   *
+   * @return false on timeout, the lock is not held then
+   */
+  private boolean awaitTransferred(TrackedLock entityLock, ID entityId, Class<?> clazz, int priority,
+                                   boolean timed, long deadlineNanos) throws InterruptedException {
+    EntityKey<ID> key = EntityKey.of(entityId, clazz);
+    while (transfers.isHeldByOther(key)) {
+      entityLock.unlock();
+      if (!transfers.awaitReleased(key, timed, deadlineNanos)) {
+        return false;
+      }
+      if (!timed) {
+        entityLock.lockInterruptibly(priority);
+      } else if (!entityLock.tryLock(priority, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-      if (currentLock != null && currentLock.isLocked()) {
+  private boolean tryUnlockBiased(EntityKey<ID> key) {
+    EntityBiases.Bias bias = biases.ofCurrentThread(key);
+    int holds = bias != null ? bias.holds() : 0;
+    if (holds == 0) {
+      return false;
+    }
+    if (versions != null && holds == 1) {
+      versions.entityReleased(key);
+    }
+    if (bias.unlock()) {
+      // others have asked for the entity meanwhile
+      biases.revoked(key, bias);
+      wakeUpClassGlobalLock(key.getEntityClass());
+    }
+    return true;
+  }
 
-        // attempt to release the lock:
-        // current thread is the owner and everything is ok
-        // current thread is not the owner and IllegalArgumentException is raised
+  // the holds of the bias go to the lock of the entity, nobody else can take it meanwhile
+  private void inflateBias(EntityKey<ID> key) {
+    EntityBiases.Bias bias = biases.ofCurrentThread(key);
+    int holds = bias != null ? bias.holds() : 0;
+    if (holds == 0) {
+      return;
+    }
+    TrackedLock entityLock = getOrCreateLock(key);
+    getNumberOfBlockedObjects(key.getEntityClass()).addAndGet(holds);
+    for (int i = 0; i < holds; i++) {
+      entityLock.lock();
+    }
+    entityLock.leave();
+    bias.giveUp();
+    biases.revoked(key, bias);
+  }
 
-        if (currentLock.getHoldCount() == 1 && !currentLock.hasQueuedThreads()) {
-          Map<ID, ReentrantLock> lockMap = entitiesLockMaps.get(clazz);
-          if (lockMap != null) {
-            lockMap.remove(entityId);
-          }
-        }
+  private void entityLockAcquired(TrackedLock entityLock, ID entityId, Class<?> clazz,
+                                  long startNanos, boolean contended) {
+    long nowNanos = System.nanoTime();
+    if ((metrics != null || admission != null) && entityLock.getHoldCount() == 1) {
+      entityLock.markAcquired(nowNanos);
+    }
+    if (metrics != null) {
+      metrics.of(clazz).entityAcquired(nowNanos - startNanos, contended);
+    }
+    if (contended && hotKeys != null) {
+      hotKeys.contended(clazz, entityId, nowNanos - startNanos);
+    }
+    if (tracer != null) {
+      tracer.acquired(clazz, entityId, contended ? nowNanos - startNanos : 0);
+    }
+  }
 
-        currentLock.unlock();
+  private void unlockEntityLock(TrackedLock entityLock, ID entityId, Class<?> clazz) {
+    if (tracer != null && entityLock.isHeldByCurrentThread() && entityLock.getHoldCount() == 1) {
+      tracer.released(clazz, entityId);
+    }
+    // before the release: a reader that sees the entity free sees the new version too
+    if (versions != null && entityLock.isHeldByCurrentThread() && entityLock.getHoldCount() == 1) {
+      versions.entityReleased(EntityKey.of(entityId, clazz));
+    }
+    if ((metrics != null || admission != null) && entityLock.isHeldByCurrentThread() && entityLock.getHoldCount() == 1) {
+      long holdNanos = System.nanoTime() - entityLock.getAcquiredAtNanos();
+      if (metrics != null) {
+        metrics.of(clazz).entityReleased(holdNanos);
       }
-
-      long threadId = Thread.currentThread().getId();
-      Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.getOrDefault(threadId, new HashMap<>());
-      Set<ID> threadClassEntities = classIDMap.get(clazz);
-
-      if (threadClassEntities != null) {
-        threadClassEntities.remove(entityId);
+      if (admission != null) {
+        admission.of(clazz).released(holdNanos);
       }
-
-      getNumberOfBlockedObjects(clazz).decrementAndGet();
-    } finally {
-      innerLock.unlock();
     }
+    entityLock.unlock();
+  }
 
-    wakeUpClassGlobalLock(clazz);
+  private void timedOut(LockTimeoutEvent event, TrackedLock busyLock, ID entityId, Class<?> clazz, long timeoutNanos) {
+    event.end(clazz, entityId, timeoutNanos, busyLock);
+    if (metrics != null) {
+      metrics.of(clazz).timedOut();
+    }
   }
 
-  @ThreadSafeIMHO
-  private void postLockActions(Class<?> clazz) {
-    getNumberOfBlockedObjects(clazz).incrementAndGet();
+  private void escalate(ID entityId, Class<?> clazz) {
+    LockEscalationEvent event = new LockEscalationEvent();
+    int lockedByThread = event.isEnabled() || tracer != null ? getNumberOfLockedByThreadEntities(clazz) : 0;
+    event.begin();
+
+    unlockLockedByThread(clazz);
+
+    event.end(clazz, entityId, lockedByThread);
+    if (metrics != null) {
+      metrics.of(clazz).escalated();
+    }
+    if (tracer != null) {
+      tracer.escalated(clazz, entityId, lockedByThread);
+    }
+    globalSectionStarted(clazz);
   }
 
   @ThreadSafeIMHO
   private boolean escalationConditionsFulfilled(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
-      int lockedByThreadEntities = getNumberOfLockedByThreadEntities(clazz);
+      int lockedByThreadEntities = getNumberOfLockedByThreadEntities(clazz) + getNumberOfPartitionHoldsOfThread(clazz);
       // check escalation conditions
       return lockedByThreadEntities >= globalEscalationThreshold && !globalLockIsNotPossibleForThread(clazz, 1);
     } finally {
@@ -196,13 +1695,16 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @ThreadSafeIMHO
   private boolean globalLockIsNotPossibleForThread(Class<?> clazz, int additionalThread) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       // there must be not blocked entities at all
       int blockedObjectsAmount = getNumberOfBlockedObjects(clazz).get() + additionalThread;
       return blockedObjectsAmount != 0
         // or all of them are blocked by the same thread
-        && blockedObjectsAmount != getNumberOfLockedByThreadEntities(clazz);
+        && blockedObjectsAmount != getNumberOfLockedByThreadEntities(clazz) + getNumberOfLockedByThreadRanges(clazz)
+        + getNumberOfIntentionsOfThread(clazz) + getNumberOfLockedByThreadPartitions(clazz)
+        // biased entities are not counted, biases of other threads go away first
+        || biases != null && biases.heldByOthers(clazz);
     } finally {
       innerLock.unlock();
     }
@@ -211,7 +1713,7 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
   @NotNull
   @ThreadSafeIMHO
   private AtomicInteger getNumberOfBlockedObjects(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       clazzNumberOfLockedObjects.computeIfAbsent(clazz, ignore -> new AtomicInteger(0));
       return clazzNumberOfLockedObjects.get(clazz);
@@ -222,10 +1724,10 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @NotNull
   @ThreadSafeIMHO
-  private ReentrantLock getOrCreateClassGlobalLock(Class<?> clazz) {
-    innerLock.lock();
+  private TrackedLock getOrCreateClassGlobalLock(Class<?> clazz) {
+    lockInnerLock();
     try {
-      ReentrantLock lock = clazzGlobalLocks.computeIfAbsent(clazz, ignore -> new ReentrantLock());
+      TrackedLock lock = clazzGlobalLocks.computeIfAbsent(clazz, ignore -> new TrackedLock());
       clazzGlobalLocksConditions.computeIfAbsent(clazz, ignore -> lock.newCondition());
       return lock;
     } finally {
@@ -235,10 +1737,10 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @NotNull
   @ThreadSafeIMHO
-  protected ReentrantLock getCurrentClassGlobalLock(Class<?> clazz) {
-    innerLock.lock();
+  protected TrackedLock getCurrentClassGlobalLock(Class<?> clazz) {
+    lockInnerLock();
     try {
-      return clazzGlobalLocks.computeIfAbsent(clazz, ignore -> new ReentrantLock());
+      return clazzGlobalLocks.computeIfAbsent(clazz, ignore -> new TrackedLock());
     } finally {
       innerLock.unlock();
     }
@@ -246,7 +1748,7 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @ThreadSafeIMHO
   protected void clearClassGlobalLock(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       clazzNumberOfLockedObjects.remove(clazz);
       clazzGlobalLocksConditions.remove(clazz);
@@ -259,7 +1761,7 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
   @NotNull
   @ThreadSafeIMHO
   private Condition getClassGlobalLockCondition(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       getOrCreateClassGlobalLock(clazz);
       return clazzGlobalLocksConditions.get(clazz);
@@ -268,27 +1770,16 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
     }
   }
 
-  @Nullable
-  @ThreadSafeIMHO
-  private ReentrantLock getCurrentLock(ID entityId, Class<?> clazz) {
-    innerLock.lock();
-    try {
-      var entityLockMap = entitiesLockMaps.getOrDefault(clazz, Map.of());
-      return entityLockMap.get(entityId);
-    } finally {
-      innerLock.unlock();
-    }
-  }
-
   @NotNull
   @ThreadSafeIMHO
-  private ReentrantLock getOrCreateLock(ID entityId, Class<?> clazz) {
-    innerLock.lock();
+  private TrackedLock getOrCreateLock(EntityKey<ID> key) {
+    lockInnerLock();
     try {
-      Map<ID, ReentrantLock> entityLockMap = entitiesLockMaps.computeIfAbsent(clazz, ignore -> new HashMap<>());
-      ReentrantLock lock = entityLockMap.computeIfAbsent(entityId, ignore -> new ReentrantLock());
+      TrackedLock lock = entityLocks.computeIfAbsent(key, ignore -> lockKind(key.getEntityClass()).create(config));
+      // keeps the lock in the table until this thread has acquired it or given up
+      lock.enter();
 
-      bindThreadWithEntity(entityId, clazz);
+      bindThreadWithEntity(key.getEntityId(), key.getEntityClass());
 
       return lock;
     } finally {
@@ -296,10 +1787,20 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
     }
   }
 
+  private EntityLockKind lockKind(Class<?> clazz) {
+    return config.getClassLockKinds().getOrDefault(clazz, config.getEntityLockKind());
+  }
+
   private void wakeUpClassGlobalLock(Class<?> clazz) {
     // wake up
-    ReentrantLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
+    TrackedLock classGlobalLock = getOrCreateClassGlobalLock(clazz);
     classGlobalLock.lock();
+    TrackedLock current;
+    while ((current = currentClassGlobalLock(clazz, classGlobalLock)) != classGlobalLock) {
+      classGlobalLock.unlock();
+      classGlobalLock = current;
+      classGlobalLock.lock();
+    }
     try {
       getClassGlobalLockCondition(clazz).signalAll();
     } finally {
@@ -309,11 +1810,16 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @ThreadSafeIMHO
   private void bindThreadWithEntity(ID entityId, Class<?> clazz) {
-    innerLock.lock();
+    bindThreadWithEntity(Thread.currentThread(), entityId, clazz);
+  }
+
+  @ThreadSafeIMHO
+  private void bindThreadWithEntity(Thread thread, ID entityId, Class<?> clazz) {
+    lockInnerLock();
     try {
-      long threadId = Thread.currentThread().getId();
-      Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.computeIfAbsent(threadId, ignore -> new HashMap<>());
-      Set<ID> threadClassEntities = classIDMap.computeIfAbsent(clazz, ignore -> new HashSet<>());
+      long threadId = thread.getId();
+      Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.computeIfAbsent(threadId, ignore -> new ConcurrentHashMap<>());
+      Set<ID> threadClassEntities = classIDMap.computeIfAbsent(clazz, ignore -> ConcurrentHashMap.newKeySet());
       threadClassEntities.add(entityId);
       clazzNumberOfLockedObjects.computeIfAbsent(clazz, ignore -> new AtomicInteger(0));
     } finally {
@@ -321,9 +1827,25 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
     }
   }
 
+  @ThreadSafeIMHO
+  private void unbindThreadWithEntity(ID entityId, Class<?> clazz) {
+    lockInnerLock();
+    try {
+      long threadId = Thread.currentThread().getId();
+      Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.getOrDefault(threadId, Map.of());
+      Set<ID> threadClassEntities = classIDMap.get(clazz);
+
+      if (threadClassEntities != null) {
+        threadClassEntities.remove(entityId);
+      }
+    } finally {
+      innerLock.unlock();
+    }
+  }
+
   @ThreadSafeIMHO
   private int getNumberOfLockedByThreadEntities(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       long threadId = Thread.currentThread().getId();
       Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.getOrDefault(threadId, Map.of());
@@ -333,10 +1855,30 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
     }
   }
 
+  private int getNumberOfLockedByThreadRanges(Class<?> clazz) {
+    RangeLockTable<ID> ranges = rangeLocks.get(clazz);
+    return ranges != null ? ranges.heldByCurrentThread() : 0;
+  }
+
+  private int getNumberOfLockedByThreadPartitions(Class<?> clazz) {
+    PartitionLockTable<ID> partitions = partitionLocks != null ? partitionLocks.get(clazz) : null;
+    return partitions != null ? partitions.heldByCurrentThread() : 0;
+  }
+
+  // entities of the thread covered by its partitions, they count for the class global lock like entity locks
+  private int getNumberOfPartitionHoldsOfThread(Class<?> clazz) {
+    PartitionLockTable<ID> partitions = partitionLocks != null ? partitionLocks.get(clazz) : null;
+    return partitions != null ? partitions.coveredHoldsOfCurrentThread() : 0;
+  }
+
+  private int getNumberOfIntentionsOfThread(Class<?> clazz) {
+    return hierarchy != null ? hierarchy.intentionsOfCurrentThread(clazz) : 0;
+  }
+
   @NotNull
   @ThreadSafeIMHO
   private Set<ID> getTreadLockedEntities(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
       long threadId = Thread.currentThread().getId();
       Map<Class<?>, Set<ID>> classIDMap = threadLockedEntities.getOrDefault(threadId, Map.of());
@@ -348,16 +1890,17 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
 
   @ThreadSafeIMHO
   private void unlockLockedByThread(Class<?> clazz) {
-    innerLock.lock();
+    lockInnerLock();
     try {
-      Set<ID> lockedEntitiesIds = getTreadLockedEntities(clazz);
-      Map<ID, ReentrantLock> lockMap = entitiesLockMaps.getOrDefault(clazz, Map.of());
-      lockMap.forEach((entityId, reentrantLock) -> {
-        if (lockedEntitiesIds.contains(entityId) && reentrantLock.isLocked()) {
-          reentrantLock.unlock();
+      // probe the locks of the thread instead of scanning the whole table
+      for (ID entityId : getTreadLockedEntities(clazz)) {
+        TrackedLock entityLock = entityLocks.get(EntityKey.of(entityId, clazz));
+        // transferred entities are bound to the thread without their locks, others may hold the locks for a moment
+        if (entityLock != null && entityLock.isHeldByCurrentThread()) {
+          unlockEntityLock(entityLock, entityId, clazz);
           getNumberOfBlockedObjects(clazz).decrementAndGet();
         }
-      });
+      }
     } finally {
       innerLock.unlock();
     }
@@ -367,4 +1910,18 @@ public class EntityLockerImpl<ID> implements EntityLocker<ID> {
   protected int getNumberOfLockedObject(Class<?> clazz) {
     return getNumberOfBlockedObjects(clazz).get();
   }
+
+  // read-only views for EntityLockerMonitor, iterating them does not take innerLock
+
+  Map<EntityKey<ID>, TrackedLock> entityLocksView() {
+    return Collections.unmodifiableMap(entityLocks);
+  }
+
+  Map<Class<?>, TrackedLock> classGlobalLocksView() {
+    return Collections.unmodifiableMap(clazzGlobalLocks);
+  }
+
+  Map<Class<?>, AtomicInteger> lockedObjectsView() {
+    return Collections.unmodifiableMap(clazzNumberOfLockedObjects);
+  }
 }
@@ -0,0 +1,40 @@
+package com.reomor.locker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live view of the lock table of {@link EntityLockerImpl}, see {@link EntityLockerMonitor}.
+ * <p>
+ * All values are weakly consistent snapshots: they are built without blocking lockers,
+ * so a lock taken or released during the call may or may not be in the result.
+ */
+public interface EntityLockerMXBean {
+
+  /**
+   * @return class name to number of entities locked in the class, threads waiting for an entity are counted too
+   */
+  Map<String, Integer> getLockedObjectsPerClass();
+
+  /**
+   * @return class name to name of the thread holding the class global lock
+   */
+  Map<String, String> getGlobalLockHolders();
+
+  /**
+   * @return number of threads waiting for entity locks
+   */
+  int getQueuedThreads();
+
+  /**
+   * @param limit max size of the result
+   * @return entities with the longest queues, longest first
+   */
+  List<EntityLockInfo> getTopQueuedEntities(int limit);
+
+  /**
+   * @param limit max size of the result
+   * @return held entity locks
+   */
+  List<EntityLockInfo> getHeldLocks(int limit);
+}
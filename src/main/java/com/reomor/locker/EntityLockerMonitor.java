@@ -0,0 +1,126 @@
+package com.reomor.locker;
+
+import lombok.NonNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * JMX view of {@link EntityLockerImpl}. Nothing is registered unless {@link #register(String)} is called.
+ * <p>
+ * Snapshots iterate the concurrent maps of the locker directly and never take its inner lock,
+ * so looking at a busy locker does not slow it down.
+ */
+public class EntityLockerMonitor implements EntityLockerMXBean {
+
+  public static final String DEFAULT_DOMAIN = "com.reomor.locker";
+
+  private final EntityLockerImpl<?> entityLocker;
+
+  public EntityLockerMonitor(@NonNull EntityLockerImpl<?> entityLocker) {
+    this.entityLocker = entityLocker;
+  }
+
+  /**
+   * Register the monitor in the platform MBean server as {@code com.reomor.locker:type=EntityLocker,name=<name>}
+   *
+   * @param name name of the locker
+   * @return name of the registered bean
+   */
+  public ObjectName register(@NonNull String name) throws JMException {
+    ObjectName objectName = objectName(name);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  public static void unregister(@NonNull String name) throws JMException {
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = objectName(name);
+    if (mBeanServer.isRegistered(objectName)) {
+      mBeanServer.unregisterMBean(objectName);
+    }
+  }
+
+  public static ObjectName objectName(String name) throws JMException {
+    return new ObjectName(DEFAULT_DOMAIN + ":type=EntityLocker,name=" + ObjectName.quote(name));
+  }
+
+  @Override
+  public Map<String, Integer> getLockedObjectsPerClass() {
+    Map<String, Integer> result = new HashMap<>();
+    entityLocker.lockedObjectsView().forEach((clazz, counter) -> {
+      int locked = counter.get();
+      if (locked > 0) {
+        result.put(clazz.getName(), locked);
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public Map<String, String> getGlobalLockHolders() {
+    Map<String, String> result = new HashMap<>();
+    entityLocker.classGlobalLocksView().forEach((clazz, lock) -> {
+      Thread owner = lock.owner();
+      if (owner != null) {
+        result.put(clazz.getName(), owner.getName());
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public int getQueuedThreads() {
+    int queued = 0;
+    for (TrackedLock lock : entityLocker.entityLocksView().values()) {
+      queued += lock.queuedWaiters();
+    }
+    return queued;
+  }
+
+  @Override
+  public List<EntityLockInfo> getTopQueuedEntities(int limit) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    // min-heap of the longest queues seen so far
+    PriorityQueue<EntityLockInfo> top = new PriorityQueue<>(Comparator.comparingInt(EntityLockInfo::getQueueLength));
+    entityLocker.entityLocksView().forEach((key, lock) -> {
+      if (!lock.hasQueuedWaiters()) {
+        return;
+      }
+      EntityLockInfo info = EntityLockInfo.of(key, lock);
+      top.offer(info);
+      if (top.size() > limit) {
+        top.poll();
+      }
+    });
+
+    List<EntityLockInfo> result = new ArrayList<>(top);
+    result.sort(Comparator.comparingInt(EntityLockInfo::getQueueLength).reversed());
+    return result;
+  }
+
+  @Override
+  public List<EntityLockInfo> getHeldLocks(int limit) {
+    List<EntityLockInfo> result = new ArrayList<>();
+    for (Map.Entry<? extends EntityKey<?>, TrackedLock> entry : entityLocker.entityLocksView().entrySet()) {
+      if (result.size() >= limit) {
+        return result;
+      }
+      TrackedLock lock = entry.getValue();
+      if (lock.isLocked()) {
+        result.add(EntityLockInfo.of(entry.getKey(), lock));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,28 @@
+package com.reomor.locker;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.function.Function;
+
+/**
+ * Parent of a child entity class, see {@link EntityLockerConfig#getParents()}.
+ * <pre>
+ *   EntityLockerConfig.builder().parent(OrderLine.class, EntityParent.of(Order.class, lineId -&gt; orderIdOf(lineId)))
+ * </pre>
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class EntityParent {
+
+  Class<?> parentClass;
+  // id of the child to id of its parent
+  Function<Object, Object> parentId;
+
+  @SuppressWarnings("unchecked")
+  public static <ID> EntityParent of(@NonNull Class<?> parentClass, @NonNull Function<? super ID, ? extends ID> parentId) {
+    return new EntityParent(parentClass, (Function<Object, Object>) parentId);
+  }
+}
@@ -0,0 +1,115 @@
+package com.reomor.locker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Entities handed over to another thread, see {@link EntityLockerConfig#isLockTransfersEnabled()}.
+ * <p>
+ * A {@link java.util.concurrent.locks.ReentrantLock} can not change its owner, so the lock of a transferred entity
+ * is released and the new owner holds the entity here, counted per lock. A thread that gets the lock of
+ * a transferred entity gives it back and waits for the last unlock of the new owner, like with ranges.
+ * The entry is in place before the lock is released, so nobody slips in between.
+ * <p>
+ * Holds are changed by the owner only, the map is read without a lock by every acquisition of an entity lock.
+ */
+class EntityTransfers {
+
+  private final Map<EntityKey<?>, Transfer> transfers = new ConcurrentHashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+
+  /**
+   * Called by the owner, the holder of the entity lock or the current owner of the transfer
+   */
+  void handOver(EntityKey<?> key, Thread target, int holds) {
+    transfers.compute(key, (ignore, transfer) -> {
+      Transfer next = transfer != null ? transfer : new Transfer(holds);
+      next.owner = target;
+      return next;
+    });
+  }
+
+  /**
+   * @return null if the entity is not transferred to the current thread
+   */
+  Transfer ofCurrentThread(EntityKey<?> key) {
+    if (transfers.isEmpty()) {
+      return null;
+    }
+    Transfer transfer = transfers.get(key);
+    return transfer != null && transfer.owner == Thread.currentThread() ? transfer : null;
+  }
+
+  boolean isHeldByOther(EntityKey<?> key) {
+    if (transfers.isEmpty()) {
+      return false;
+    }
+    Transfer transfer = transfers.get(key);
+    return transfer != null && transfer.owner != Thread.currentThread();
+  }
+
+  boolean isHeld(EntityKey<?> key) {
+    return !transfers.isEmpty() && transfers.containsKey(key);
+  }
+
+  /**
+   * Wait for the last unlock of the owner of the transferred entity
+   *
+   * @return false on timeout
+   */
+  boolean awaitReleased(EntityKey<?> key, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (isHeldByOther(key)) {
+        if (!timed) {
+          released.await();
+          continue;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        released.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // the last unlock of the owner
+  void released(EntityKey<?> key) {
+    lock.lock();
+    try {
+      transfers.remove(key);
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  static final class Transfer {
+
+    private volatile Thread owner;
+    // changed by the owner only
+    private int holds;
+
+    private Transfer(int holds) {
+      this.holds = holds;
+    }
+
+    int lock() {
+      return ++holds;
+    }
+
+    /**
+     * @return holds left
+     */
+    int unlock() {
+      return --holds;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.reomor.locker;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Versions of entities that outlive their locks, behind {@link EntityLocker#version(Object, Class)}.
+ * <p>
+ * The table keeps at most about {@code capacity} entities. An evicted entity leaves its version in the epoch,
+ * the floor of every version: entities out of the table read the epoch, a bump starts above it. So the version
+ * of an entity never goes back and moves with every exclusive section on it. Evictions may move versions
+ * of other entities too, callers see a change that is not there and read again.
+ * <p>
+ * Global locks and ranges cover every entity of the class, they bump the generation of the class,
+ * which is added to the versions of its entities.
+ * Reads take no lock and write nothing. Bumps of an entity come from its holder only.
+ */
+class EntityVersions {
+
+  // versions of lockers without a table, every read is a change
+  private static final AtomicLong UNTRACKED = new AtomicLong();
+
+  private final int capacity;
+  // evicted at once, so the table is not swept on every bump once it is full
+  private final int evictionBatch;
+  private final Map<EntityKey<?>, Long> versions = new ConcurrentHashMap<>();
+  private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final AtomicLong epoch = new AtomicLong();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  EntityVersions(int capacity) {
+    this.capacity = capacity;
+    this.evictionBatch = Math.max(1, capacity / 8);
+  }
+
+  /**
+   * @return a new version on every call, for lockers that keep no versions
+   */
+  static long untracked() {
+    return UNTRACKED.incrementAndGet();
+  }
+
+  long version(EntityKey<?> key, Class<?> clazz) {
+    AtomicLong generation = generations.get(clazz);
+    // a miss sees the epoch raised by the eviction
+    Long version = versions.get(key);
+    long floor = epoch.get();
+    long entityVersion = version == null ? floor : Math.max(version, floor);
+    return entityVersion + (generation == null ? 0 : generation.get());
+  }
+
+  /**
+   * Called by the holder before the last release of the entity lock
+   */
+  void entityReleased(EntityKey<?> key) {
+    versions.compute(key, (ignore, version) -> Math.max(version == null ? 0 : version, epoch.get()) + 1);
+    if (versions.size() > capacity) {
+      evict();
+    }
+  }
+
+  /**
+   * Called at the end of the class global lock or a range
+   */
+  void classReleased(Class<?> clazz) {
+    generations.computeIfAbsent(clazz, ignore -> new AtomicLong()).incrementAndGet();
+  }
+
+  int size() {
+    return versions.size();
+  }
+
+  private void evict() {
+    // one evicting thread is enough
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      int evicted = 0;
+      Iterator<Map.Entry<EntityKey<?>, Long>> entries = versions.entrySet().iterator();
+      while (evicted < evictionBatch && entries.hasNext()) {
+        Map.Entry<EntityKey<?>, Long> entry = entries.next();
+        long version = entry.getValue();
+        // the floor goes up first, readers that miss the entity see it
+        epoch.accumulateAndGet(version, Math::max);
+        // a bump meanwhile keeps the entity
+        if (versions.remove(entry.getKey(), version)) {
+          evicted++;
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.reomor.locker;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Flat combining for one entity.
+ * <p>
+ * Threads publish their operations, one of them (the leader) takes the entity lock and runs everything
+ * that is published, the others sleep until their result is ready. A hot entity changes hands once per batch
+ * instead of once per operation, and the batch runs on a single thread with warm caches.
+ * <p>
+ * Only the leader waits for the entity lock, so plain lockers of the entity are served as usual.
+ */
+class FlatCombiner {
+
+  // operations run by one leader before it passes the lead on, bounds the latency of the leader itself
+  static final int MAX_BATCH = 64;
+
+  private final Queue<Record<?>> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean leader = new AtomicBoolean();
+  // threads inside combine(), guarded by the map that holds the combiner
+  private int users;
+
+  FlatCombiner join() {
+    users++;
+    return this;
+  }
+
+  /**
+   * @return nobody uses the combiner anymore
+   */
+  boolean leave() {
+    return --users == 0;
+  }
+
+  <T> T combine(Supplier<T> operation, LockAction lock, Runnable unlock) throws InterruptedException {
+    Record<T> record = new Record<>(operation);
+    pending.add(record);
+    while (!record.done) {
+      if (leader.compareAndSet(false, true)) {
+        lead(record, lock, unlock);
+      } else {
+        LockSupport.park(this);
+        if (Thread.interrupted()) {
+          // nobody has taken it yet, otherwise the leader is running it right now
+          if (pending.remove(record)) {
+            // the lead may have been passed to this thread, pass it on
+            if (!leader.get()) {
+              wakeUpNext();
+            }
+            throw new InterruptedException();
+          }
+          awaitUninterruptibly(record);
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    return record.result();
+  }
+
+  private void lead(Record<?> own, LockAction lock, Runnable unlock) throws InterruptedException {
+    try {
+      lock.lock();
+    } catch (InterruptedException e) {
+      // the leader is the only one who polls, the record is still queued
+      pending.remove(own);
+      resign();
+      throw e;
+    }
+    try {
+      int served = 0;
+      Record<?> record;
+      while ((served < MAX_BATCH || !own.done) && (record = pending.poll()) != null) {
+        record.run();
+        served++;
+      }
+    } finally {
+      unlock.run();
+      resign();
+    }
+  }
+
+  // whoever published after the last poll would sleep forever without a new leader
+  private void resign() {
+    leader.set(false);
+    wakeUpNext();
+  }
+
+  private void wakeUpNext() {
+    Record<?> next = pending.peek();
+    if (next != null) {
+      LockSupport.unpark(next.thread);
+    }
+  }
+
+  private static void awaitUninterruptibly(Record<?> record) {
+    while (!record.done) {
+      LockSupport.park(record);
+    }
+  }
+
+  @FunctionalInterface
+  interface LockAction {
+    void lock() throws InterruptedException;
+  }
+
+  private static final class Record<T> {
+
+    private final Supplier<T> operation;
+    private final Thread thread = Thread.currentThread();
+    private T value;
+    private Throwable failure;
+    // publishes value and failure
+    private volatile boolean done;
+
+    private Record(Supplier<T> operation) {
+      this.operation = operation;
+    }
+
+    private void run() {
+      try {
+        value = operation.get();
+      } catch (Throwable e) {
+        failure = e;
+      }
+      done = true;
+      if (thread != Thread.currentThread()) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    private T result() {
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        // a checked exception smuggled through the supplier
+        throw new IllegalStateException(failure);
+      }
+      return value;
+    }
+  }
+}
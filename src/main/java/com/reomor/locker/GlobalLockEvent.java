@@ -0,0 +1,57 @@
+package com.reomor.locker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event of waiting for a class global lock,
+ * either by {@link EntityLocker#globalLock(Class)} or by an entity lock passing the class.
+ */
+@Name(GlobalLockEvent.NAME)
+@Label("Global Lock")
+@Description("Waiting for a class global lock of EntityLocker")
+@Category({"EntityLocker"})
+@StackTrace
+@Threshold("10 ms")
+class GlobalLockEvent extends Event {
+
+  static final String NAME = "com.reomor.locker.GlobalLock";
+
+  @Label("Entity Class")
+  Class<?> entityClass;
+
+  @Label("Explicit")
+  @Description("True for globalLock call, false when the class lock is passed on the way to an entity lock")
+  boolean explicit;
+
+  @Label("Holder")
+  @Description("Thread holding the class global lock when the wait started")
+  Thread holder;
+
+  // transient fields are not recorded, holder is filled from it only when the event is committed
+  private transient Thread holderAtBegin;
+
+  static GlobalLockEvent start(TrackedLock classGlobalLock) {
+    GlobalLockEvent event = new GlobalLockEvent();
+    if (event.isEnabled()) {
+      event.holderAtBegin = classGlobalLock.owner();
+      event.begin();
+    }
+    return event;
+  }
+
+  void end(Class<?> clazz, boolean explicitGlobalLock) {
+    end();
+    if (shouldCommit()) {
+      entityClass = clazz;
+      explicit = explicitGlobalLock;
+      holder = holderAtBegin;
+      commit();
+    }
+  }
+}
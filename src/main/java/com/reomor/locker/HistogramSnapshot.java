@@ -0,0 +1,72 @@
+package com.reomor.locker;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time copy of a duration histogram with power-of-two buckets.
+ * Percentiles are reported as the upper bound of the bucket they fall into.
+ */
+public class HistogramSnapshot {
+
+  private final long[] buckets;
+  @Getter
+  private final long count;
+  @Getter
+  private final long sumNanos;
+  @Getter
+  private final long maxNanos;
+
+  HistogramSnapshot(long[] buckets, long sumNanos, long maxNanos) {
+    this.buckets = buckets;
+    this.count = Arrays.stream(buckets).sum();
+    this.sumNanos = sumNanos;
+    this.maxNanos = maxNanos;
+  }
+
+  public long getMeanNanos() {
+    return count == 0 ? 0 : sumNanos / count;
+  }
+
+  /**
+   * @param percentile value in range (0, 100]
+   * @return upper bound of the bucket holding the percentile, never more than the max recorded value
+   */
+  public long percentileNanos(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  public long percentile(double percentile, TimeUnit timeUnit) {
+    return timeUnit.convert(percentileNanos(percentile), TimeUnit.NANOSECONDS);
+  }
+
+  public long[] getBuckets() {
+    return buckets.clone();
+  }
+
+  private static long upperBound(int bucket) {
+    return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "HistogramSnapshot{count=" + count
+      + ", mean=" + getMeanNanos()
+      + "ns, p50=" + percentileNanos(50)
+      + "ns, p99=" + percentileNanos(99)
+      + "ns, max=" + maxNanos + "ns}";
+  }
+}
@@ -0,0 +1,18 @@
+package com.reomor.locker;
+
+import lombok.Value;
+
+/**
+ * Entity that threads queued for, as estimated by {@link HotKeyTracker}.
+ */
+@Value
+public class HotKey {
+
+  Class<?> entityClass;
+  Object entityId;
+  // contended acquisitions and timeouts, over-estimated by at most error
+  long count;
+  long error;
+  // time spent in the queue of the entity lock
+  long waitNanos;
+}
@@ -0,0 +1,51 @@
+package com.reomor.locker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming top-K of the most contended entities per class.
+ * Fed only when a thread actually queues for an entity lock, memory is bounded by
+ * {@link EntityLockerConfig#getHotKeyCapacity()} counters per class whatever the number of distinct ids is.
+ */
+public class HotKeyTracker {
+
+  private final int capacity;
+  private final Map<Class<?>, ClassHotKeys> classHotKeys = new ConcurrentHashMap<>();
+
+  HotKeyTracker(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  void contended(Class<?> clazz, Object entityId, long waitNanos) {
+    ClassHotKeys hotKeys = classHotKeys.get(clazz);
+    if (hotKeys == null) {
+      hotKeys = classHotKeys.computeIfAbsent(clazz, ignore -> new ClassHotKeys(clazz, capacity));
+    }
+    hotKeys.contended(entityId, waitNanos);
+  }
+
+  /**
+   * @param clazz entity type
+   * @param limit max size of the result, not more than the capacity makes sense
+   * @return the most contended entities of the class, the hottest first
+   */
+  @NotNull
+  public List<HotKey> top(Class<?> clazz, int limit) {
+    ClassHotKeys hotKeys = classHotKeys.get(clazz);
+    return hotKeys == null || limit <= 0 ? List.of() : hotKeys.top(limit);
+  }
+
+  /**
+   * Forget everything seen so far, e.g. to look at the next time window
+   */
+  public void reset() {
+    classHotKeys.values().forEach(ClassHotKeys::reset);
+  }
+}
@@ -0,0 +1,76 @@
+package com.reomor.locker;
+
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded intern table of {@link EntityKey}: equal (class, id) pairs are mapped to one canonical key,
+ * so the lock table of {@link EntityLockerImpl} finds it by reference and never calls equals on the id.
+ * <p>
+ * The table is a direct-mapped cache: a slot is chosen by the hash and a new key simply replaces
+ * whatever was there. Eviction never breaks locking, an evicted key is still equal to its
+ * replacement, it only loses the reference comparison. Lookups take no locks.
+ *
+ * @param <ID> identifier type
+ */
+public class IdInterner<ID> {
+
+  public static final int DEFAULT_CAPACITY = 1 << 14;
+
+  private final AtomicReferenceArray<EntityKey<ID>> table;
+  private final int mask;
+
+  public IdInterner() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity max number of canonical keys, rounded up to a power of two
+   */
+  public IdInterner(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.table = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return canonical key of the entity
+   */
+  public EntityKey<ID> intern(@NonNull ID entityId, @NonNull Class<?> clazz) {
+    int hash = EntityKey.hash(clazz, entityId);
+    int index = index(hash);
+    EntityKey<ID> key = table.get(index);
+    if (key != null && key.matches(clazz, entityId, hash)) {
+      return key;
+    }
+    key = EntityKey.of(entityId, clazz, hash);
+    table.set(index, key);
+    return key;
+  }
+
+  /**
+   * @return canonical key equal to the given one, the given key becomes canonical if there is none
+   */
+  public EntityKey<ID> intern(@NonNull EntityKey<ID> key) {
+    int index = index(key.hashCode());
+    EntityKey<ID> canonical = table.get(index);
+    if (canonical != null && canonical.equals(key)) {
+      return canonical;
+    }
+    table.set(index, key);
+    return key;
+  }
+
+  int capacity() {
+    return table.length();
+  }
+
+  private int index(int hash) {
+    // spread the high bits, ids often differ in them only
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
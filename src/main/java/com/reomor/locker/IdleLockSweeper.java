@@ -0,0 +1,75 @@
+package com.reomor.locker;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps released entity locks in the lock table, so a warm key is locked again without allocating
+ * a lock and a table node, and evicts idle ones in small batches.
+ * <p>
+ * Every {@link #SWEEP_PERIOD} releases, and on every release while the table is over capacity,
+ * the next {@link #BATCH} entries after a cursor that goes round the table are looked at.
+ * An entry is evicted when nobody holds, waits for or is about to take its lock and it is either idle
+ * longer than the idle timeout or the table is over capacity. Threads take locks from the table under
+ * the locker inner lock only, so with the inner lock held these checks are not racy.
+ * The cost is amortized over releases, a locker that goes quiet keeps at most {@code capacity} idle locks.
+ * <p>
+ * Not thread safe, guarded by the locker inner lock.
+ *
+ * @param <ID> identifier type
+ */
+class IdleLockSweeper<ID> {
+
+  static final int SWEEP_PERIOD = 64;
+  static final int BATCH = 64;
+
+  private final Map<EntityKey<ID>, TrackedLock> entityLocks;
+  private final int capacity;
+  private final long idleTimeoutNanos;
+  private Iterator<Map.Entry<EntityKey<ID>, TrackedLock>> cursor;
+  private int releases;
+
+  IdleLockSweeper(Map<EntityKey<ID>, TrackedLock> entityLocks, int capacity, long idleTimeoutNanos) {
+    this.entityLocks = entityLocks;
+    this.capacity = capacity;
+    this.idleTimeoutNanos = idleTimeoutNanos;
+  }
+
+  /**
+   * The lock has been released by its last holder
+   */
+  void released(TrackedLock lock) {
+    long nowNanos = System.nanoTime();
+    lock.markIdle(nowNanos);
+    if (++releases >= SWEEP_PERIOD || entityLocks.size() > capacity) {
+      releases = 0;
+      sweep(nowNanos);
+    }
+  }
+
+  /**
+   * @return evicted entries
+   */
+  int sweep(long nowNanos) {
+    int evicted = 0;
+    for (int i = 0; i < BATCH; i++) {
+      if (cursor == null || !cursor.hasNext()) {
+        cursor = entityLocks.entrySet().iterator();
+        if (!cursor.hasNext()) {
+          break;
+        }
+      }
+      TrackedLock lock = cursor.next().getValue();
+      if (isIdle(lock) && (entityLocks.size() > capacity || nowNanos - lock.getIdleSinceNanos() >= idleTimeoutNanos)) {
+        // the map iterator removes from the concurrent map
+        cursor.remove();
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  private static boolean isIdle(TrackedLock lock) {
+    return !lock.isLocked() && !lock.hasQueuedWaiters() && !lock.hasPending();
+  }
+}
@@ -0,0 +1,39 @@
+package com.reomor.locker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ * <p>
+ * Bucket {@code i} counts values in {@code [2^(i-1), 2^i)}, bucket 0 counts zeros,
+ * so recording is a couple of atomic increments and never allocates.
+ */
+class LatencyHistogram {
+
+  static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    buckets.incrementAndGet(bucketOf(value));
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  HistogramSnapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return new HistogramSnapshot(counts, sum.sum(), max.get());
+  }
+
+  static int bucketOf(long nanos) {
+    return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+  }
+}
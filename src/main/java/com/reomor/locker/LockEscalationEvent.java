@@ -0,0 +1,41 @@
+package com.reomor.locker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of entity locks of a thread escalated to the class global lock.
+ */
+@Name(LockEscalationEvent.NAME)
+@Label("Lock Escalation")
+@Description("Entity locks of a thread escalated to the class global lock")
+@Category({"EntityLocker"})
+@StackTrace
+class LockEscalationEvent extends Event {
+
+  static final String NAME = "com.reomor.locker.LockEscalation";
+
+  @Label("Entity Class")
+  Class<?> entityClass;
+
+  @Label("Entity Id")
+  @Description("Entity which lock triggered the escalation")
+  String entityId;
+
+  @Label("Locked Entities")
+  int lockedEntities;
+
+  void end(Class<?> clazz, Object id, int lockedByThread) {
+    end();
+    if (shouldCommit()) {
+      entityClass = clazz;
+      entityId = String.valueOf(id);
+      lockedEntities = lockedByThread;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.reomor.locker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pull API for what {@link EntityLockerImpl} has been doing: per class counters and wait/hold time histograms,
+ * plus waits on the locker internal lock that is shared by all classes.
+ * <p>
+ * Enabled by {@link EntityLockerConfig#isMetricsEnabled()}, otherwise the locker does not have an instance at all.
+ */
+public class LockMetrics {
+
+  private final Map<Class<?>, ClassLockMetrics> classMetrics = new ConcurrentHashMap<>();
+  private final LatencyHistogram innerLockWaitTime = new LatencyHistogram();
+
+  @NotNull
+  ClassLockMetrics of(Class<?> clazz) {
+    // plain get first, computeIfAbsent locks the bin even when the value is present
+    ClassLockMetrics metrics = classMetrics.get(clazz);
+    return metrics != null ? metrics : classMetrics.computeIfAbsent(clazz, ClassLockMetrics::new);
+  }
+
+  void innerLockWaited(long waitNanos) {
+    innerLockWaitTime.record(waitNanos);
+  }
+
+  /**
+   * @param clazz entity type
+   * @return metrics of the class, empty if the class has never been locked
+   */
+  @NotNull
+  public LockMetricsSnapshot snapshot(Class<?> clazz) {
+    ClassLockMetrics metrics = classMetrics.get(clazz);
+    return metrics != null ? metrics.snapshot() : new ClassLockMetrics(clazz).snapshot();
+  }
+
+  /**
+   * @return metrics of every class that has been locked
+   */
+  @NotNull
+  public Map<Class<?>, LockMetricsSnapshot> snapshot() {
+    return classMetrics.values().stream()
+      .map(ClassLockMetrics::snapshot)
+      .collect(Collectors.toMap(LockMetricsSnapshot::getEntityClass, Function.identity()));
+  }
+
+  /**
+   * @return contended waits on the locker internal lock
+   */
+  @NotNull
+  public HistogramSnapshot innerLockWaitTime() {
+    return innerLockWaitTime.snapshot();
+  }
+}
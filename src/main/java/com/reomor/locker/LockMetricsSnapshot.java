@@ -0,0 +1,34 @@
+package com.reomor.locker;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Metrics of one entity class at the moment of {@link LockMetrics#snapshot(Class)}.
+ */
+@Value
+@Builder
+public class LockMetricsSnapshot {
+
+  Class<?> entityClass;
+
+  // entity locks taken (including reentrant ones)
+  long acquisitions;
+  // entity locks the thread had to queue for
+  long contendedAcquisitions;
+  // timed lock attempts that gave up
+  long timeouts;
+  // lock calls escalated to the class global lock
+  long escalations;
+  // lock calls shed by admission control
+  long rejections;
+  // explicit globalLock calls
+  long globalLockAcquisitions;
+  // times a thread found the class global lock busy
+  long globalLockWaits;
+
+  HistogramSnapshot entityWaitTime;
+  HistogramSnapshot globalLockWaitTime;
+  // from the first acquisition to the last unlock of an entity
+  HistogramSnapshot holdTime;
+}
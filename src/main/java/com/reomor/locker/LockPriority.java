@@ -0,0 +1,16 @@
+package com.reomor.locker;
+
+/**
+ * Common priorities for {@link EntityLocker#lock(Object, Class, int)}, any int works, the greater the more urgent.
+ * A waiter gains one level per {@link EntityLockerConfig#getPriorityAging()} in the queue,
+ * so even {@link #LOW} gets the lock eventually.
+ */
+public final class LockPriority {
+
+  public static final int LOW = -10;
+  public static final int NORMAL = 0;
+  public static final int HIGH = 10;
+
+  private LockPriority() {
+  }
+}
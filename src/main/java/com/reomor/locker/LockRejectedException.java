@@ -0,0 +1,40 @@
+package com.reomor.locker;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown by {@code lock} instead of queueing when admission control of {@link EntityLockerImpl} sheds the call:
+ * too many threads already wait for the entity or its class, or the predicted wait is longer than the timeout.
+ * Nothing is locked then, the caller can fail fast or retry later.
+ */
+@Getter
+public class LockRejectedException extends RuntimeException {
+
+  public enum Reason {
+    // EntityLockerConfig.maxWaitersPerEntity reached
+    ENTITY_WAITERS,
+    // EntityLockerConfig.maxWaitersPerClass reached
+    CLASS_WAITERS,
+    // the queue would not clear within the timeout
+    PREDICTED_TIMEOUT
+  }
+
+  private final Class<?> entityClass;
+  private final transient Object entityId;
+  private final Reason reason;
+  // threads waiting for the entity when the call was rejected
+  private final int queuedWaiters;
+  private final long predictedWaitNanos;
+
+  LockRejectedException(Class<?> entityClass, Object entityId, Reason reason, int queuedWaiters, long predictedWaitNanos) {
+    super("Lock of " + entityClass.getName() + " " + entityId + " rejected: " + reason
+      + ", " + queuedWaiters + " waiters, predicted wait " + TimeUnit.NANOSECONDS.toMicros(predictedWaitNanos) + " us");
+    this.entityClass = entityClass;
+    this.entityId = entityId;
+    this.reason = reason;
+    this.queuedWaiters = queuedWaiters;
+    this.predictedWaitNanos = predictedWaitNanos;
+  }
+}
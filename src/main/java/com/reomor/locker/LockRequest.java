@@ -0,0 +1,256 @@
+package com.reomor.locker;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entities of several classes locked together by {@link EntityLocker#lock(LockRequest, long, java.util.concurrent.TimeUnit)}:
+ * all of them within the timeout or none.
+ * <pre>
+ *   LockRequest&lt;Long&gt; request = LockRequest.&lt;Long&gt;builder()
+ *     .entity(Customer.class, customerId)
+ *     .entity(Account.class, from)
+ *     .entity(Account.class, to)
+ *     .global(Ledger.class)
+ *     .build();
+ * </pre>
+ * Classes are locked in the order of their names and entities of a class in the order of their ids,
+ * so requests of different threads never wait for each other in a circle.
+ * A request remembers which classes it has locked globally, it is locked and unlocked by one thread at a time,
+ * see {@link EntityLocker#transfer(LockRequest, Thread)} to pass it to another one.
+ *
+ * @param <ID> identifier type
+ */
+public final class LockRequest<ID> {
+
+  private static final Comparator<Class<?>> CLASS_ORDER = Comparator
+    .comparing((Class<?> clazz) -> clazz.getName())
+    .thenComparingInt(System::identityHashCode);
+
+  private final List<Group<ID>> groups;
+  // per group: the class global lock is held instead of the entity locks
+  private final boolean[] lockedGlobally;
+  private Thread owner;
+
+  private LockRequest(List<Group<ID>> groups) {
+    this.groups = groups;
+    this.lockedGlobally = new boolean[groups.size()];
+  }
+
+  public static <ID> Builder<ID> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * @return classes of the request in lock order
+   */
+  public List<Class<?>> getEntityClasses() {
+    List<Class<?>> classes = new ArrayList<>(groups.size());
+    groups.forEach(group -> classes.add(group.entityClass));
+    return classes;
+  }
+
+  /**
+   * @return entities of the class in lock order, empty for classes requested globally
+   */
+  public List<EntityKey<ID>> getEntities(Class<?> clazz) {
+    for (Group<ID> group : groups) {
+      if (group.entityClass == clazz) {
+        return group.keys;
+      }
+    }
+    return List.of();
+  }
+
+  List<Group<ID>> groups() {
+    return groups;
+  }
+
+  void begin() {
+    if (owner != null) {
+      throw new IllegalStateException("Lock request is already locked by " + owner.getName());
+    }
+    owner = Thread.currentThread();
+  }
+
+  void lockedGlobally(int group) {
+    lockedGlobally[group] = true;
+  }
+
+  boolean isLockedGlobally(int group) {
+    return lockedGlobally[group];
+  }
+
+  void checkOwner() {
+    if (owner != Thread.currentThread()) {
+      throw new IllegalMonitorStateException("Lock request is not locked by " + Thread.currentThread().getName());
+    }
+  }
+
+  /**
+   * Transfer the entities one by one, the target owns the request then
+   */
+  void transfer(EntityLocker<ID> locker, Thread target) {
+    for (int i = 0; i < groups.size(); i++) {
+      if (lockedGlobally[i]) {
+        throw new IllegalStateException("Lock request holds the class global lock of " + groups.get(i).entityClass.getName());
+      }
+    }
+    for (Group<ID> group : groups) {
+      group.keys.forEach(key -> locker.transfer(key, target));
+    }
+    owner = target;
+  }
+
+  /**
+   * Lock the groups one entity at a time through the public locker methods, class global locks wait without a timeout
+   *
+   * @return false on timeout, nothing is locked then
+   */
+  boolean lockOneByOne(EntityLocker<ID> locker, long deadlineNanos) throws InterruptedException {
+    begin();
+    int lockedGroups = 0;
+    try {
+      for (; lockedGroups < groups.size(); lockedGroups++) {
+        Group<ID> group = groups.get(lockedGroups);
+        if (group.isGlobal()) {
+          locker.globalLock(group.entityClass);
+          lockedGlobally(lockedGroups);
+          continue;
+        }
+        if (!lockEntities(locker, group, deadlineNanos)) {
+          return false;
+        }
+      }
+    } finally {
+      if (lockedGroups < groups.size()) {
+        unlockGroups(locker, lockedGroups);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Unlock the first groups in reverse order and forget the request
+   */
+  void unlockGroups(EntityLocker<ID> locker, int lockedGroups) {
+    for (int i = lockedGroups - 1; i >= 0; i--) {
+      Group<ID> group = groups.get(i);
+      if (lockedGlobally[i]) {
+        locker.globalUnlock(group.entityClass);
+      } else {
+        unlockEntities(locker, group, group.keys.size());
+      }
+    }
+    reset();
+  }
+
+  /**
+   * @return false on timeout, entities of the group locked so far are unlocked then
+   */
+  static <ID> boolean lockEntities(EntityLocker<ID> locker, Group<ID> group, long deadlineNanos) throws InterruptedException {
+    for (int i = 0; i < group.keys.size(); i++) {
+      boolean locked = false;
+      try {
+        locked = locker.lock(group.keys.get(i), deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } finally {
+        if (!locked) {
+          unlockEntities(locker, group, i);
+        }
+      }
+      if (!locked) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static <ID> void unlockEntities(EntityLocker<ID> locker, Group<ID> group, int lockedEntities) {
+    for (int i = lockedEntities - 1; i >= 0; i--) {
+      locker.unlock(group.keys.get(i));
+    }
+  }
+
+  private void reset() {
+    owner = null;
+    for (int i = 0; i < lockedGlobally.length; i++) {
+      lockedGlobally[i] = false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static int compareIds(Object left, Object right) {
+    if (left instanceof Comparable && left.getClass() == right.getClass()) {
+      return ((Comparable<Object>) left).compareTo(right);
+    }
+    int byHash = Integer.compare(left.hashCode(), right.hashCode());
+    return byHash != 0 ? byHash : left.toString().compareTo(right.toString());
+  }
+
+  static final class Group<ID> {
+
+    final Class<?> entityClass;
+    // empty when the whole class is requested
+    final List<EntityKey<ID>> keys;
+
+    private Group(Class<?> entityClass, List<EntityKey<ID>> keys) {
+      this.entityClass = entityClass;
+      this.keys = keys;
+    }
+
+    boolean isGlobal() {
+      return keys.isEmpty();
+    }
+  }
+
+  public static final class Builder<ID> {
+
+    private final Map<Class<?>, Set<ID>> entities = new LinkedHashMap<>();
+    private final Set<Class<?>> globals = new LinkedHashSet<>();
+
+    private Builder() {
+    }
+
+    public Builder<ID> entity(@NonNull Class<?> clazz, @NonNull ID entityId) {
+      entities.computeIfAbsent(clazz, ignore -> new LinkedHashSet<>()).add(entityId);
+      return this;
+    }
+
+    /**
+     * The whole class, the same as {@link EntityLocker#globalLock(Class)}, entities of the class are not locked one by one
+     */
+    public Builder<ID> global(@NonNull Class<?> clazz) {
+      globals.add(clazz);
+      return this;
+    }
+
+    public LockRequest<ID> build() {
+      List<Class<?>> classes = new ArrayList<>(entities.keySet());
+      globals.stream().filter(clazz -> !entities.containsKey(clazz)).forEach(classes::add);
+      classes.sort(CLASS_ORDER);
+
+      List<Group<ID>> groups = new ArrayList<>(classes.size());
+      for (Class<?> clazz : classes) {
+        if (globals.contains(clazz)) {
+          groups.add(new Group<>(clazz, List.of()));
+          continue;
+        }
+        List<ID> ids = new ArrayList<>(entities.get(clazz));
+        ids.sort(LockRequest::compareIds);
+        List<EntityKey<ID>> keys = new ArrayList<>(ids.size());
+        ids.forEach(id -> keys.add(EntityKey.of(id, clazz)));
+        groups.add(new Group<>(clazz, Collections.unmodifiableList(keys)));
+      }
+      return new LockRequest<>(Collections.unmodifiableList(groups));
+    }
+  }
+}
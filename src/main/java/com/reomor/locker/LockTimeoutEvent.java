@@ -0,0 +1,54 @@
+package com.reomor.locker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of a timed lock that gave up.
+ * The event duration is the time spent before giving up.
+ */
+@Name(LockTimeoutEvent.NAME)
+@Label("Lock Timeout")
+@Description("Timed lock of EntityLocker gave up")
+@Category({"EntityLocker"})
+@StackTrace
+class LockTimeoutEvent extends Event {
+
+  static final String NAME = "com.reomor.locker.LockTimeout";
+
+  @Label("Entity Class")
+  Class<?> entityClass;
+
+  @Label("Entity Id")
+  String entityId;
+
+  @Label("Timeout")
+  @Timespan(Timespan.NANOSECONDS)
+  long timeout;
+
+  @Label("Holder")
+  @Description("Thread holding the entity or the class when the lock gave up")
+  Thread holder;
+
+  static LockTimeoutEvent start() {
+    LockTimeoutEvent event = new LockTimeoutEvent();
+    event.begin();
+    return event;
+  }
+
+  void end(Class<?> clazz, Object id, long timeoutNanos, TrackedLock busyLock) {
+    end();
+    if (shouldCommit()) {
+      entityClass = clazz;
+      entityId = String.valueOf(id);
+      timeout = timeoutNanos;
+      holder = busyLock.owner();
+      commit();
+    }
+  }
+}
@@ -0,0 +1,301 @@
+package com.reomor.locker;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline decoder of the lock trace written with {@link EntityLockerConfig#getTraceFile()}:
+ * per-entity timelines and wait-for chains, threads waiting for threads that wait themselves.
+ * <pre>
+ *   java -cp entitylocker.jar com.reomor.locker.LockTraceDecoder locks.trace [summary|timeline [entity prefix]|chains]
+ * </pre>
+ */
+@Getter
+public final class LockTraceDecoder {
+
+  private final long baseMillis;
+  private final long baseNanos;
+  // records of the ring file in time order
+  private final List<LockTraceEvent> events;
+  // records the locker dropped because a ring was full
+  private final long droppedRecords;
+  // records overwritten in the file by newer ones
+  private final long overwrittenRecords;
+
+  private LockTraceDecoder(long baseMillis, long baseNanos, List<LockTraceEvent> events,
+                           long droppedRecords, long overwrittenRecords) {
+    this.baseMillis = baseMillis;
+    this.baseNanos = baseNanos;
+    this.events = events;
+    this.droppedRecords = droppedRecords;
+    this.overwrittenRecords = overwrittenRecords;
+  }
+
+  public static LockTraceDecoder read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.limit() < LockTracer.HEADER_BYTES || buffer.getInt(0) != LockTracer.MAGIC) {
+      throw new IOException(file + " is not a lock trace");
+    }
+    if (buffer.getInt(4) != LockTracer.VERSION || buffer.getInt(8) != LockTracer.RECORD_BYTES) {
+      throw new IOException("Unsupported lock trace version " + buffer.getInt(4));
+    }
+    int capacity = buffer.getInt(LockTracer.CAPACITY_OFFSET);
+    long written = buffer.getLong(LockTracer.WRITTEN_OFFSET);
+
+    List<String> classNames = new ArrayList<>();
+    int position = LockTracer.CLASS_NAMES_OFFSET;
+    for (int i = buffer.getInt(LockTracer.CLASS_COUNT_OFFSET); i > 0; i--) {
+      int length = buffer.getShort(position);
+      classNames.add(new String(buffer.array(), position + Short.BYTES, length, StandardCharsets.UTF_8));
+      position += Short.BYTES + length;
+    }
+
+    int records = (int) Math.min(written, capacity);
+    List<LockTraceEvent> events = new ArrayList<>(records);
+    for (int i = 0; i < records; i++) {
+      int offset = LockTracer.HEADER_BYTES + i * LockTracer.RECORD_BYTES;
+      long header = buffer.getLong(offset + 2 * Long.BYTES);
+      int type = (int) (header & 0xff);
+      int flags = (int) (header >>> 8 & 0xff);
+      int classIndex = (int) (header >>> 32);
+      LockTraceEvent.Type eventType = LockTraceEvent.Type.values()[type];
+      long entityId = buffer.getLong(offset + 3 * Long.BYTES);
+      String id;
+      if (eventType == LockTraceEvent.Type.GLOBAL_ACQUIRE || eventType == LockTraceEvent.Type.GLOBAL_RELEASE
+        || eventType == LockTraceEvent.Type.ESCALATE) {
+        id = null;
+      } else {
+        id = (flags & LockTracer.ID_HASHED) != 0 ? '#' + Long.toHexString(entityId) : Long.toString(entityId);
+      }
+      events.add(new LockTraceEvent(
+        buffer.getLong(offset),
+        buffer.getLong(offset + Long.BYTES),
+        eventType,
+        classIndex < classNames.size() ? classNames.get(classIndex) : "class" + classIndex,
+        id,
+        buffer.getLong(offset + 4 * Long.BYTES),
+        buffer.getLong(offset + 5 * Long.BYTES)));
+    }
+    // rings are drained one after another, the file is in time order per thread only
+    events.sort(Comparator.comparingLong(LockTraceEvent::getTimeNanos));
+    return new LockTraceDecoder(buffer.getLong(LockTracer.BASE_MILLIS_OFFSET), buffer.getLong(LockTracer.BASE_NANOS_OFFSET),
+      events, buffer.getLong(LockTracer.DROPPED_OFFSET), Math.max(0, written - capacity));
+  }
+
+  /**
+   * @return events per entity, entities in the order of their first event, escalations and global locks under class#*
+   */
+  public Map<String, List<LockTraceEvent>> timelines() {
+    Map<String, List<LockTraceEvent>> timelines = new LinkedHashMap<>();
+    for (LockTraceEvent event : events) {
+      timelines.computeIfAbsent(event.entity(), ignore -> new ArrayList<>()).add(event);
+    }
+    return timelines;
+  }
+
+  /**
+   * Replay the trace and follow every new wait: the waiting thread, the holder of its entity, the entity the holder waits for
+   * and so on. The holder at the start of a wait is taken from the record when the trace missed the acquisition.
+   *
+   * @param minLinks 1 for every wait, 2 for waits for threads that wait themselves
+   */
+  public List<WaitChain> waitChains(int minLinks) {
+    Map<String, Long> owners = new HashMap<>();
+    Map<Long, String> waits = new HashMap<>();
+    List<WaitChain> chains = new ArrayList<>();
+    for (LockTraceEvent event : events) {
+      long thread = event.getThreadId();
+      String entity = event.entity();
+      switch (event.getType()) {
+        case WAIT:
+          waits.put(thread, entity);
+          if (event.getOtherThreadId() != 0) {
+            owners.putIfAbsent(entity, event.getOtherThreadId());
+          }
+          WaitChain chain = chainOf(thread, event.getTimeNanos(), owners, waits);
+          if (chain.getLinks().size() >= minLinks) {
+            chains.add(chain);
+          }
+          break;
+        case ACQUIRE:
+        case ESCALATE:
+        case GLOBAL_ACQUIRE:
+          owners.put(entity, thread);
+          waits.remove(thread);
+          break;
+        case RELEASE:
+        case GLOBAL_RELEASE:
+          owners.remove(entity, thread);
+          break;
+        case TIMEOUT:
+          waits.remove(thread);
+          break;
+        default:
+          break;
+      }
+    }
+    return chains;
+  }
+
+  private static WaitChain chainOf(long thread, long timeNanos, Map<String, Long> owners, Map<Long, String> waits) {
+    List<WaitLink> links = new ArrayList<>();
+    Set<Long> seen = new HashSet<>();
+    seen.add(thread);
+    boolean deadlock = false;
+    for (long current = thread; ; ) {
+      String entity = waits.get(current);
+      if (entity == null) {
+        break;
+      }
+      Long holder = owners.get(entity);
+      links.add(new WaitLink(current, entity, holder != null ? holder : 0));
+      if (holder == null) {
+        break;
+      }
+      if (!seen.add(holder)) {
+        deadlock = true;
+        break;
+      }
+      current = holder;
+    }
+    return new WaitChain(timeNanos, links, deadlock);
+  }
+
+  /**
+   * Threads waiting for each other at the moment the first of them started to wait
+   */
+  @Value
+  public static class WaitChain {
+
+    long timeNanos;
+    List<WaitLink> links;
+    // the last holder is one of the waiting threads
+    boolean deadlock;
+  }
+
+  @Value
+  public static class WaitLink {
+
+    long threadId;
+    String entity;
+    // 0 when the trace does not know it
+    long holderThreadId;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: LockTraceDecoder <trace file> [summary|timeline [entity prefix]|chains]");
+      System.exit(2);
+    }
+    LockTraceDecoder trace = read(Path.of(args[0]));
+    String command = args.length > 1 ? args[1] : "summary";
+    PrintStream out = System.out;
+    switch (command) {
+      case "summary":
+        trace.printSummary(out);
+        break;
+      case "timeline":
+        trace.printTimelines(out, args.length > 2 ? args[2] : "");
+        break;
+      case "chains":
+        trace.printChains(out);
+        break;
+      default:
+        System.err.println("Unknown command " + command);
+        System.exit(2);
+    }
+  }
+
+  void printSummary(PrintStream out) {
+    out.printf("%d events, %d dropped, %d overwritten%n", events.size(), droppedRecords, overwrittenRecords);
+    Map<LockTraceEvent.Type, Integer> byType = new LinkedHashMap<>();
+    for (LockTraceEvent.Type type : LockTraceEvent.Type.values()) {
+      byType.put(type, 0);
+    }
+    events.forEach(event -> byType.merge(event.getType(), 1, Integer::sum));
+    byType.forEach((type, count) -> out.printf("  %-14s %d%n", type, count));
+    List<WaitChain> chains = waitChains(2);
+    out.printf("%d wait chains of two threads or more, %d deadlocks%n",
+      chains.size(), chains.stream().filter(WaitChain::isDeadlock).count());
+  }
+
+  void printTimelines(PrintStream out, String prefix) {
+    timelines().forEach((entity, timeline) -> {
+      if (!entity.startsWith(prefix)) {
+        return;
+      }
+      out.println(entity);
+      Map<Long, Long> acquiredAt = new HashMap<>();
+      for (LockTraceEvent event : timeline) {
+        StringBuilder line = new StringBuilder()
+          .append(String.format("  %12.3f us  thread %-6d %-14s", micros(event.getTimeNanos() - baseNanos),
+            event.getThreadId(), event.getType()));
+        switch (event.getType()) {
+          case WAIT:
+            line.append(" holder ").append(event.getOtherThreadId());
+            break;
+          case ACQUIRE:
+          case GLOBAL_ACQUIRE:
+          case ESCALATE:
+            acquiredAt.put(event.getThreadId(), event.getTimeNanos());
+            if (event.getType() == LockTraceEvent.Type.ACQUIRE && event.getValue() > 0) {
+              line.append(String.format(" waited %.3f us", micros(event.getValue())));
+            }
+            if (event.getType() == LockTraceEvent.Type.ESCALATE) {
+              line.append(" released ").append(event.getValue()).append(" entities");
+            }
+            break;
+          case RELEASE:
+          case GLOBAL_RELEASE:
+            Long since = acquiredAt.remove(event.getThreadId());
+            if (since != null) {
+              line.append(String.format(" held %.3f us", micros(event.getTimeNanos() - since)));
+            }
+            break;
+          case TIMEOUT:
+            line.append(String.format(" after %.3f us, holder %d", micros(event.getValue()), event.getOtherThreadId()));
+            break;
+          default:
+            break;
+        }
+        out.println(line);
+      }
+    });
+  }
+
+  void printChains(PrintStream out) {
+    for (WaitChain chain : waitChains(2)) {
+      StringBuilder line = new StringBuilder(String.format("%12.3f us ", micros(chain.getTimeNanos() - baseNanos)));
+      for (WaitLink link : chain.getLinks()) {
+        line.append(" thread ").append(link.getThreadId()).append(" -> ").append(link.getEntity())
+          .append(" held by");
+      }
+      WaitLink last = chain.getLinks().get(chain.getLinks().size() - 1);
+      line.append(" thread ").append(last.getHolderThreadId());
+      if (chain.isDeadlock()) {
+        line.append("  DEADLOCK");
+      }
+      out.println(line);
+    }
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1_000.0;
+  }
+}
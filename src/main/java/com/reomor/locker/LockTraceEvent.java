@@ -0,0 +1,43 @@
+package com.reomor.locker;
+
+import lombok.Value;
+
+/**
+ * Record of the binary lock trace, see {@link LockTraceDecoder}.
+ */
+@Value
+public class LockTraceEvent {
+
+  public enum Type {
+    // contended entity lock, other thread is the holder at the start of the wait
+    WAIT,
+    // value is the wait in nanos, 0 for uncontended locks
+    ACQUIRE,
+    // the last hold of the thread
+    RELEASE,
+    // other thread is the holder at the moment the lock gave up, value is the part of the timeout left for the wait, in nanos
+    TIMEOUT,
+    // the thread holds the class global lock now, value is the number of entities it has released for it
+    ESCALATE,
+    GLOBAL_ACQUIRE,
+    GLOBAL_RELEASE
+  }
+
+  // System.nanoTime() of the traced process
+  long timeNanos;
+  long threadId;
+  Type type;
+  String entityClass;
+  // null for the whole class, '#' and the hash for ids that are not integral numbers
+  String entityId;
+  // 0 when there is no other thread
+  long otherThreadId;
+  long value;
+
+  /**
+   * @return class#id, class#* for the whole class
+   */
+  public String entity() {
+    return entityClass + '#' + (entityId != null ? entityId : "*");
+  }
+}
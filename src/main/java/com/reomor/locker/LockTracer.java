@@ -0,0 +1,304 @@
+package com.reomor.locker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary trace of lock events for offline analysis by {@link LockTraceDecoder}.
+ * <p>
+ * Every thread writes fixed-size records into its own ring, a plain array with a single producer and a single consumer:
+ * the record is stored and then published by a release store of the head, nothing is locked or allocated.
+ * A full ring drops the record and counts it, the lock path never waits for the trace.
+ * The drainer thread copies published records into a memory-mapped file that keeps the latest {@code traceFileRecords}
+ * records, classes are listed in the file header.
+ * <p>
+ * File layout, little endian: a header of {@link #HEADER_BYTES} bytes
+ * (magic, version, record size, capacity, records written, records dropped, clock base, class names)
+ * followed by the circular record area, a record is {@link #RECORD_LONGS} longs:
+ * time in nanos, thread id, type | flags &lt;&lt; 8 | class index &lt;&lt; 32, entity id, other thread id, value.
+ */
+@Slf4j
+class LockTracer implements AutoCloseable {
+
+  static final int MAGIC = 0x544b4c45; // "ELKT"
+  static final int VERSION = 1;
+  static final int RECORD_LONGS = 6;
+  static final int RECORD_BYTES = RECORD_LONGS * Long.BYTES;
+  static final int HEADER_BYTES = 64 * 1024;
+
+  // header offsets
+  static final int CAPACITY_OFFSET = 12;
+  static final int WRITTEN_OFFSET = 16;
+  static final int DROPPED_OFFSET = 24;
+  static final int BASE_MILLIS_OFFSET = 32;
+  static final int BASE_NANOS_OFFSET = 40;
+  static final int CLASS_COUNT_OFFSET = 48;
+  static final int CLASS_NAMES_OFFSET = 52;
+
+  // record types, ordinals of LockTraceEvent.Type
+  static final int WAIT = 0;
+  static final int ACQUIRE = 1;
+  static final int RELEASE = 2;
+  static final int TIMEOUT = 3;
+  static final int ESCALATE = 4;
+  static final int GLOBAL_ACQUIRE = 5;
+  static final int GLOBAL_RELEASE = 6;
+
+  // the entity id is a hash, the id is not a number
+  static final int ID_HASHED = 1;
+
+  private final int ringRecords;
+  private final int fileRecords;
+  private final FileChannel channel;
+  private final MappedByteBuffer file;
+  private final ThreadLocal<Ring> rings = ThreadLocal.withInitial(this::newRing);
+  private final List<Ring> allRings = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Integer> classIndexes = new ConcurrentHashMap<>();
+  private final List<String> classNames = new CopyOnWriteArrayList<>();
+  private final ScheduledExecutorService drainer;
+
+  // touched by the drainer only, under this
+  private long written;
+  private long droppedByFinishedRings;
+  private int writtenClasses;
+  private int classNamesEnd = CLASS_NAMES_OFFSET;
+
+  LockTracer(EntityLockerConfig config) {
+    this.ringRecords = Integer.highestOneBit(Math.max(2, config.getTraceBufferRecords()));
+    // one mapping is at most 2 GB
+    this.fileRecords = Math.max(1, Math.min(config.getTraceFileRecords(), (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES));
+    Path path = config.getTraceFile();
+    try {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      this.file = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) fileRecords * RECORD_BYTES);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot map trace file " + path, e);
+    }
+    file.order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(0, MAGIC);
+    file.putInt(4, VERSION);
+    file.putInt(8, RECORD_BYTES);
+    file.putInt(CAPACITY_OFFSET, fileRecords);
+    file.putLong(BASE_MILLIS_OFFSET, System.currentTimeMillis());
+    file.putLong(BASE_NANOS_OFFSET, System.nanoTime());
+
+    long periodMillis = Math.max(1, config.getTraceDrainPeriod().toMillis());
+    this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "entity-locker-tracer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    drainer.scheduleWithFixedDelay(this::drainQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void waiting(Class<?> clazz, Object id, Thread holder) {
+    record(WAIT, clazz, id, holder, 0);
+  }
+
+  void acquired(Class<?> clazz, Object id, long waitNanos) {
+    record(ACQUIRE, clazz, id, null, waitNanos);
+  }
+
+  void released(Class<?> clazz, Object id) {
+    record(RELEASE, clazz, id, null, 0);
+  }
+
+  void timedOut(Class<?> clazz, Object id, Thread holder, long timeoutNanos) {
+    record(TIMEOUT, clazz, id, holder, timeoutNanos);
+  }
+
+  void escalated(Class<?> clazz, Object id, int lockedEntities) {
+    record(ESCALATE, clazz, id, null, lockedEntities);
+  }
+
+  void globalAcquired(Class<?> clazz) {
+    record(GLOBAL_ACQUIRE, clazz, null, null, 0);
+  }
+
+  void globalReleased(Class<?> clazz) {
+    record(GLOBAL_RELEASE, clazz, null, null, 0);
+  }
+
+  private void record(int type, Class<?> clazz, Object id, Thread other, long value) {
+    int flags = 0;
+    long entityId = 0;
+    if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+      entityId = ((Number) id).longValue();
+    } else if (id != null) {
+      entityId = id.hashCode() & 0xffffffffL;
+      flags = ID_HASHED;
+    }
+    long header = type | (long) flags << 8 | (long) classIndex(clazz) << 32;
+    rings.get().offer(System.nanoTime(), header, entityId, other != null ? other.getId() : 0, value);
+  }
+
+  private int classIndex(Class<?> clazz) {
+    Integer index = classIndexes.get(clazz);
+    if (index != null) {
+      return index;
+    }
+    return classIndexes.computeIfAbsent(clazz, ignore -> {
+      synchronized (classNames) {
+        classNames.add(clazz.getName());
+        return classNames.size() - 1;
+      }
+    });
+  }
+
+  private Ring newRing() {
+    Ring ring = new Ring(Thread.currentThread(), ringRecords);
+    allRings.add(ring);
+    return ring;
+  }
+
+  private void drainQuietly() {
+    try {
+      drain();
+    } catch (RuntimeException e) {
+      log.error("Trace drain failed", e);
+    }
+  }
+
+  /**
+   * Copy published records of all threads into the file
+   */
+  synchronized void drain() {
+    long dropped = 0;
+    for (Ring ring : allRings) {
+      boolean finished = !ring.thread.isAlive();
+      ring.drainTo(this);
+      if (finished) {
+        // its records are in the file, only the count of dropped ones stays
+        allRings.remove(ring);
+        droppedByFinishedRings += ring.dropped;
+      } else {
+        dropped += ring.dropped;
+      }
+    }
+    writeClassNames();
+    file.putLong(WRITTEN_OFFSET, written);
+    file.putLong(DROPPED_OFFSET, droppedByFinishedRings + dropped);
+  }
+
+  private void write(long[] slots, int offset) {
+    int position = HEADER_BYTES + (int) (written % fileRecords) * RECORD_BYTES;
+    for (int i = 0; i < RECORD_LONGS; i++) {
+      file.putLong(position + i * Long.BYTES, slots[offset + i]);
+    }
+    written++;
+  }
+
+  private void writeClassNames() {
+    while (writtenClasses < classNames.size()) {
+      byte[] name = classNames.get(writtenClasses).getBytes(StandardCharsets.UTF_8);
+      if (classNamesEnd + Short.BYTES + name.length > HEADER_BYTES) {
+        // the decoder shows the index of a class that does not fit
+        return;
+      }
+      file.putShort(classNamesEnd, (short) name.length);
+      file.put(classNamesEnd + Short.BYTES, name);
+      classNamesEnd += Short.BYTES + name.length;
+      file.putInt(CLASS_COUNT_OFFSET, ++writtenClasses);
+    }
+  }
+
+  /**
+   * Stop the drainer, drain the rest and flush the file
+   */
+  @Override
+  public void close() {
+    drainer.shutdownNow();
+    try {
+      drainer.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      drain();
+      file.force();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.warn("Cannot close trace file", e);
+      }
+    }
+  }
+
+  /**
+   * Records of one thread, written by the thread and read by the drainer
+   */
+  private static final class Ring {
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        HEAD = lookup.findVarHandle(Ring.class, "head", long.class);
+        TAIL = lookup.findVarHandle(Ring.class, "tail", long.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    private final Thread thread;
+    private final long[] slots;
+    private final int mask;
+    // records published by the thread
+    private long head;
+    // records taken by the drainer
+    private long tail;
+    // written by the thread only
+    private volatile long dropped;
+
+    private Ring(Thread thread, int records) {
+      this.thread = thread;
+      this.slots = new long[records * RECORD_LONGS];
+      this.mask = records - 1;
+    }
+
+    private void offer(long time, long header, long entityId, long otherThreadId, long value) {
+      long h = head;
+      if (h - (long) TAIL.getAcquire(this) > mask) {
+        dropped++;
+        return;
+      }
+      int offset = (int) (h & mask) * RECORD_LONGS;
+      slots[offset] = time;
+      slots[offset + 1] = thread.getId();
+      slots[offset + 2] = header;
+      slots[offset + 3] = entityId;
+      slots[offset + 4] = otherThreadId;
+      slots[offset + 5] = value;
+      HEAD.setRelease(this, h + 1);
+    }
+
+    private void drainTo(LockTracer tracer) {
+      long h = (long) HEAD.getAcquire(this);
+      long t = tail;
+      for (; t < h; t++) {
+        tracer.write(slots, (int) (t & mask) * RECORD_LONGS);
+      }
+      TAIL.setRelease(this, t);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.reomor.locker;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Receives reports about entity locks held for too long while other threads wait for them.
+ * Called from the watchdog thread, so it should return quickly.
+ */
+@FunctionalInterface
+public interface LongHeldLockListener {
+
+  LongHeldLockListener LOGGING = new Logging();
+
+  void onLongHeldLock(LongHeldLockReport report);
+
+  @Slf4j
+  final class Logging implements LongHeldLockListener {
+
+    private Logging() {
+    }
+
+    @Override
+    public void onLongHeldLock(LongHeldLockReport report) {
+      if (log.isWarnEnabled()) {
+        log.warn(report.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.reomor.locker;
+
+import lombok.Value;
+
+/**
+ * Entity lock held longer than the watchdog threshold, see {@link LongHeldLockListener}.
+ */
+@Value
+public class LongHeldLockReport {
+
+  Class<?> entityClass;
+  Object entityId;
+  Thread owner;
+  long heldMillis;
+  int queueLength;
+  // stack of the owner at the moment of the check, empty if it was not available
+  StackTraceElement[] ownerStackTrace;
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder()
+      .append("Entity lock ").append(entityClass.getName()).append('#').append(entityId)
+      .append(" is held by ").append(owner.getName())
+      .append(" for ").append(heldMillis).append(" ms, ")
+      .append(queueLength).append(" thread(s) waiting");
+    for (StackTraceElement element : ownerStackTrace) {
+      sb.append(System.lineSeparator()).append("\tat ").append(element);
+    }
+    return sb.toString();
+  }
+}
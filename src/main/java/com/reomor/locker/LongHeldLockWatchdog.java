@@ -0,0 +1,96 @@
+package com.reomor.locker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks for entity locks that are held too long while somebody waits for them.
+ * <p>
+ * Lock paths pay only for a store of a coarse timestamp: the clock is a volatile field
+ * ticked by the watchdog thread, so nobody calls {@link System#currentTimeMillis()} on acquisition.
+ * The owner stack is captured only for locks that are reported, every acquisition is reported once.
+ */
+@Slf4j
+class LongHeldLockWatchdog implements AutoCloseable {
+
+  static final long TICK_MILLIS = 10;
+
+  private final EntityLockerImpl<?> entityLocker;
+  private final long thresholdMillis;
+  private final Map<Class<?>, Long> classThresholdsMillis = new HashMap<>();
+  private final long periodTicks;
+  private final LongHeldLockListener listener;
+  private final ScheduledExecutorService scheduler;
+
+  private volatile long nowMillis = System.currentTimeMillis();
+  // touched by the scheduler thread only
+  private long ticks;
+
+  LongHeldLockWatchdog(EntityLockerImpl<?> entityLocker, EntityLockerConfig config) {
+    this.entityLocker = entityLocker;
+    this.thresholdMillis = config.getWatchdogThreshold().toMillis();
+    config.getWatchdogClassThresholds().forEach((clazz, threshold) -> classThresholdsMillis.put(clazz, threshold.toMillis()));
+    this.periodTicks = Math.max(1, config.getWatchdogPeriod().toMillis() / TICK_MILLIS);
+    this.listener = config.getWatchdogListener();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "entity-locker-watchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  long currentTimeMillis() {
+    return nowMillis;
+  }
+
+  private void tick() {
+    nowMillis = System.currentTimeMillis();
+    if (++ticks % periodTicks == 0) {
+      try {
+        scan();
+      } catch (RuntimeException e) {
+        // a broken listener should not stop the clock
+        log.error("Watchdog scan failed", e);
+      }
+    }
+  }
+
+  void scan() {
+    long now = nowMillis;
+    entityLocker.entityLocksView().forEach((key, lock) -> check(key, lock, now));
+  }
+
+  private void check(EntityKey<?> key, TrackedLock lock, long now) {
+    if (!lock.hasQueuedWaiters()) {
+      return;
+    }
+    long threshold = classThresholdsMillis.getOrDefault(key.getEntityClass(), thresholdMillis);
+    Thread owner = lock.owner();
+    long acquiredAt = lock.getAcquiredAtMillis();
+    // the owner has not published its timestamp yet
+    if (owner == null || acquiredAt == 0) {
+      return;
+    }
+    long heldMillis = now - acquiredAt;
+    if (heldMillis < threshold || !lock.markReported(acquiredAt)) {
+      return;
+    }
+    StackTraceElement[] stackTrace = owner.getStackTrace();
+    // the lock could change hands while the stack was taken
+    if (lock.owner() != owner || lock.getAcquiredAtMillis() != acquiredAt) {
+      return;
+    }
+    listener.onLongHeldLock(new LongHeldLockReport(key.getEntityClass(), key.getEntityId(), owner, heldMillis, lock.queuedWaiters(), stackTrace));
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
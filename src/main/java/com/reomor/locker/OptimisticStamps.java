@@ -0,0 +1,89 @@
+package com.reomor.locker;
+
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versions behind optimistic reads, in the spirit of {@link java.util.concurrent.locks.StampedLock}.
+ * <p>
+ * Entities hash into striped counters, each on its own cache line, bumped when an exclusive hold of an entity starts,
+ * before the holder can write anything. Class global locks, escalations and ranges of a class bump the class version
+ * and stay counted while they last. A stamp is the sum of the stripe and the class versions: both only grow, so the stamp
+ * is the same only if neither has moved. Readers only read: the versions, the lock of the entity if it is in the table.
+ * Entities that share a stripe invalidate each other's stamps now and then, which is safe.
+ */
+class OptimisticStamps {
+
+  // longs per stripe, one cache line
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray stripes;
+  private final int mask;
+  private final Map<Class<?>, ClassVersion> classes = new ConcurrentHashMap<>();
+
+  OptimisticStamps(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes));
+    this.stripes = new AtomicLongArray(size * PADDING);
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return 0 if the class has a global lock or a range right now
+   */
+  long stamp(Object entityId, Class<?> clazz) {
+    long classVersion = 0;
+    ClassVersion version = classes.get(clazz);
+    if (version != null) {
+      classVersion = version.version.get();
+      if (version.sections.get() > 0) {
+        return 0;
+      }
+    }
+    return stripes.get(index(entityId, clazz)) + classVersion + 1;
+  }
+
+  boolean validate(Object entityId, Class<?> clazz, long stamp) {
+    // reads of the caller are not moved below the versions
+    VarHandle.acquireFence();
+    return stamp != 0 && stamp(entityId, clazz) == stamp;
+  }
+
+  /**
+   * First hold of the entity lock
+   */
+  void entityLocked(Object entityId, Class<?> clazz) {
+    stripes.getAndIncrement(index(entityId, clazz));
+  }
+
+  /**
+   * Class global lock or range acquired
+   */
+  void classSectionStarted(Class<?> clazz) {
+    ClassVersion version = classes.computeIfAbsent(clazz, ignore -> new ClassVersion());
+    version.sections.incrementAndGet();
+    version.version.incrementAndGet();
+  }
+
+  void classSectionEnded(Class<?> clazz) {
+    ClassVersion version = classes.get(clazz);
+    if (version != null) {
+      version.sections.decrementAndGet();
+    }
+  }
+
+  private int index(Object entityId, Class<?> clazz) {
+    int hash = EntityKey.hash(clazz, entityId);
+    return ((hash ^ hash >>> 16) & mask) * PADDING;
+  }
+
+  private static final class ClassVersion {
+
+    private final AtomicLong version = new AtomicLong();
+    // global locks and ranges held right now
+    private final AtomicInteger sections = new AtomicInteger();
+  }
+}
@@ -0,0 +1,259 @@
+package com.reomor.locker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Partitions of ids of one class, the step between entity locks and the class global lock,
+ * see {@link EntityLockerConfig#getPartitionEscalationThreshold()}.
+ * <p>
+ * Entities are registered in their partition once their entity lock is acquired. A thread whose entities
+ * in a partition reach the threshold takes the partition if no other thread has entities there:
+ * its entity locks in the partition turn into holds of the partition, further locks and unlocks of entities
+ * of the partition by the thread only count them. The last unlock releases the partition.
+ * An entity in a partition of another thread gives its lock back and waits for the partition, like with ranges.
+ * <p>
+ * The owner never waits with its partitions: other threads may wait for them while holding what it waits for.
+ * Before a wait the owner locks its covered entities again and gives the partitions back, see {@link #release()}.
+ *
+ * @param <ID> identifier type
+ */
+class PartitionLockTable<ID> {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final List<Partition> partitions;
+
+  PartitionLockTable(int partitions) {
+    this.partitions = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      this.partitions.add(new Partition());
+    }
+  }
+
+  int partitionOf(ID id) {
+    int hash = id.hashCode();
+    return Math.floorMod(hash ^ hash >>> 16, partitions.size());
+  }
+
+  /**
+   * Lock an entity of a partition held by the current thread
+   *
+   * @return false if the partition is not held by the current thread
+   */
+  boolean tryEnterCovered(ID id) {
+    lock.lock();
+    try {
+      Partition partition = partitions.get(partitionOf(id));
+      if (partition.owner != Thread.currentThread()) {
+        return false;
+      }
+      partition.covered.merge(id, 1, Integer::sum);
+      partition.holds++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return holds left in the partition, -1 if the entity is not covered by a partition of the current thread
+   */
+  int exitCovered(ID id) {
+    lock.lock();
+    try {
+      Partition partition = partitions.get(partitionOf(id));
+      if (partition.owner != Thread.currentThread() || !partition.covered.containsKey(id)) {
+        return -1;
+      }
+      partition.covered.computeIfPresent(id, (ignore, count) -> count == 1 ? null : count - 1);
+      if (--partition.holds == 0) {
+        partition.owner = null;
+        changed.signalAll();
+      }
+      return partition.holds;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Register an acquired entity
+   *
+   * @return entities of the current thread in the partition, counted per lock, -1 when another thread holds it
+   */
+  int tryEnterPoint(ID id) {
+    lock.lock();
+    try {
+      Partition partition = partitions.get(partitionOf(id));
+      if (partition.owner != null && partition.owner != Thread.currentThread()) {
+        return -1;
+      }
+      return partition.points.merge(Thread.currentThread(), 1, Integer::sum);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void exitPoint(ID id) {
+    lock.lock();
+    try {
+      partitions.get(partitionOf(id)).points.computeIfPresent(Thread.currentThread(), (ignore, count) -> count == 1 ? null : count - 1);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the partition for the current thread if nobody else has entities in it
+   *
+   * @param held entity locks of the current thread in the partition, counted per lock
+   * @return false if it is not possible
+   */
+  boolean tryEscalate(ID id, Map<ID, Integer> held) {
+    lock.lock();
+    try {
+      Partition partition = partitions.get(partitionOf(id));
+      Thread current = Thread.currentThread();
+      if (held.isEmpty() || partition.owner != null || partition.points.size() != 1 || !partition.points.containsKey(current)) {
+        return false;
+      }
+      partition.owner = current;
+      partition.points.remove(current);
+      partition.covered.putAll(held);
+      partition.holds = held.values().stream().mapToInt(Integer::intValue).sum();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return entities covered by the partitions of the current thread, counted per lock
+   */
+  Map<ID, Integer> coveredEntitiesOfCurrentThread() {
+    lock.lock();
+    try {
+      Map<ID, Integer> covered = new HashMap<>();
+      for (Partition partition : partitions) {
+        if (partition.owner == Thread.currentThread()) {
+          covered.putAll(partition.covered);
+        }
+      }
+      return covered;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Give the partitions of the current thread back, its covered entities have been locked again and become points
+   *
+   * @return released partitions
+   */
+  int release() {
+    lock.lock();
+    try {
+      int released = 0;
+      Thread current = Thread.currentThread();
+      for (Partition partition : partitions) {
+        if (partition.owner != current) {
+          continue;
+        }
+        partition.points.merge(current, partition.holds, Integer::sum);
+        partition.owner = null;
+        partition.holds = 0;
+        partition.covered.clear();
+        released++;
+      }
+      if (released > 0) {
+        changed.signalAll();
+      }
+      return released;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until no other thread holds the partition of the entity
+   *
+   * @return false on timeout
+   */
+  boolean awaitPartition(ID id, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Partition partition = partitions.get(partitionOf(id));
+      while (partition.owner != null && partition.owner != Thread.currentThread()) {
+        if (!timed) {
+          changed.await();
+          continue;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        changed.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean coveredByCurrentThread(ID id) {
+    lock.lock();
+    try {
+      return partitions.get(partitionOf(id)).owner == Thread.currentThread();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int heldByCurrentThread() {
+    lock.lock();
+    try {
+      int held = 0;
+      for (Partition partition : partitions) {
+        if (partition.owner == Thread.currentThread()) {
+          held++;
+        }
+      }
+      return held;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return entity locks covered by the partitions of the current thread
+   */
+  int coveredHoldsOfCurrentThread() {
+    lock.lock();
+    try {
+      int holds = 0;
+      for (Partition partition : partitions) {
+        if (partition.owner == Thread.currentThread()) {
+          holds += partition.holds;
+        }
+      }
+      return holds;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private final class Partition {
+
+    private Thread owner;
+    // entity locks by the owner, counted per lock
+    private int holds;
+    private final Map<ID, Integer> covered = new HashMap<>();
+    // registered entities per thread, counted per lock
+    private final Map<Thread, Integer> points = new HashMap<>(2);
+  }
+}
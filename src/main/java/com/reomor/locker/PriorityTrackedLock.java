@@ -0,0 +1,224 @@
+package com.reomor.locker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Entity lock with a priority wait queue in front of the {@link java.util.concurrent.locks.ReentrantLock}.
+ * <p>
+ * Only the best waiter tries to take the lock, the others stay parked; unlock wakes the best one up.
+ * The order is decided at the moment of the handoff:
+ * <ul>
+ *   <li>effective priority, that is the priority plus one level per aging period spent in the queue,</li>
+ *   <li>then the earliest deadline, waiters without a timeout go last,</li>
+ *   <li>then arrival.</li>
+ * </ul>
+ * The queue of one entity is short, so it is a list scanned under its monitor, which is touched only by
+ * threads that already have to wait.
+ */
+class PriorityTrackedLock extends TrackedLock {
+
+  // longer timeouts are as good as none, and the nanoTime arithmetic does not overflow
+  private static final long MAX_TIMEOUT_NANOS = Long.MAX_VALUE >> 2;
+
+  private final long agingNanos;
+  // guarded by itself
+  private final List<Waiter> waiters = new ArrayList<>();
+  private volatile int waiterCount;
+  // guarded by waiters
+  private long sequence;
+
+  PriorityTrackedLock(long agingNanos) {
+    this.agingNanos = agingNanos;
+  }
+
+  @Override
+  public void lock() {
+    try {
+      acquire(LockPriority.NORMAL, false, 0, false);
+    } catch (InterruptedException e) {
+      // not thrown by uninterruptible acquire
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    acquire(LockPriority.NORMAL, false, 0, true);
+  }
+
+  @Override
+  void lockInterruptibly(int priority) throws InterruptedException {
+    acquire(priority, false, 0, true);
+  }
+
+  @Override
+  public boolean tryLock() {
+    // no barging past the queue, reentrancy is always fine
+    return (waiterCount == 0 || isHeldByCurrentThread()) && super.tryLock();
+  }
+
+  @Override
+  public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+    return tryLock(LockPriority.NORMAL, timeout, unit);
+  }
+
+  @Override
+  boolean tryLock(int priority, long timeout, TimeUnit unit) throws InterruptedException {
+    long timeoutNanos = Math.max(0, Math.min(unit.toNanos(timeout), MAX_TIMEOUT_NANOS));
+    return acquire(priority, true, System.nanoTime() + timeoutNanos, true);
+  }
+
+  @Override
+  public void unlock() {
+    super.unlock();
+    if (waiterCount > 0 && !isHeldByCurrentThread()) {
+      signalNext();
+    }
+  }
+
+  @Override
+  boolean hasQueuedWaiters() {
+    return waiterCount > 0 || super.hasQueuedWaiters();
+  }
+
+  @Override
+  int queuedWaiters() {
+    return waiterCount + super.queuedWaiters();
+  }
+
+  private boolean acquire(int priority, boolean timed, long deadline, boolean interruptibly) throws InterruptedException {
+    if (interruptibly && Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (tryLock()) {
+      return true;
+    }
+
+    Waiter waiter = enqueue(priority, timed, deadline);
+    boolean interrupted = false;
+    try {
+      while (true) {
+        if (isNext(waiter)) {
+          if (super.tryLock()) {
+            return true;
+          }
+        } else if (!isLocked()) {
+          // the order changed since the last handoff, pass the signal to the one who is next now
+          signalNext();
+        }
+
+        if (timed) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return false;
+          }
+          LockSupport.parkNanos(this, remaining);
+        } else {
+          LockSupport.park(this);
+        }
+
+        if (Thread.interrupted()) {
+          if (interruptibly) {
+            throw new InterruptedException();
+          }
+          interrupted = true;
+        }
+      }
+    } finally {
+      dequeue(waiter);
+      // a waiter that leaves without the lock may have been signalled instead of somebody else
+      if (!isHeldByCurrentThread()) {
+        signalNext();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private Waiter enqueue(int priority, boolean timed, long deadline) {
+    synchronized (waiters) {
+      Waiter waiter = new Waiter(Thread.currentThread(), priority, timed, deadline, sequence++, System.nanoTime());
+      waiters.add(waiter);
+      waiterCount = waiters.size();
+      return waiter;
+    }
+  }
+
+  private void dequeue(Waiter waiter) {
+    synchronized (waiters) {
+      waiters.remove(waiter);
+      waiterCount = waiters.size();
+    }
+  }
+
+  private boolean isNext(Waiter waiter) {
+    synchronized (waiters) {
+      return next() == waiter;
+    }
+  }
+
+  private void signalNext() {
+    Waiter next;
+    synchronized (waiters) {
+      next = next();
+    }
+    if (next != null) {
+      LockSupport.unpark(next.thread);
+    }
+  }
+
+  // guarded by waiters
+  private Waiter next() {
+    long now = System.nanoTime();
+    Waiter best = null;
+    long bestPriority = 0;
+    for (Waiter waiter : waiters) {
+      long priority = waiter.effectivePriority(now, agingNanos);
+      if (best == null || priority > bestPriority
+        || (priority == bestPriority && waiter.isBefore(best))) {
+        best = waiter;
+        bestPriority = priority;
+      }
+    }
+    return best;
+  }
+
+  private static class Waiter {
+
+    private final Thread thread;
+    private final int priority;
+    private final boolean timed;
+    private final long deadline;
+    private final long sequence;
+    private final long enqueuedAt;
+
+    Waiter(Thread thread, int priority, boolean timed, long deadline, long sequence, long enqueuedAt) {
+      this.thread = thread;
+      this.priority = priority;
+      this.timed = timed;
+      this.deadline = deadline;
+      this.sequence = sequence;
+      this.enqueuedAt = enqueuedAt;
+    }
+
+    long effectivePriority(long now, long agingNanos) {
+      return agingNanos > 0 ? priority + (now - enqueuedAt) / agingNanos : priority;
+    }
+
+    // earliest deadline first, then FIFO
+    boolean isBefore(Waiter other) {
+      if (timed != other.timed) {
+        return timed;
+      }
+      // deadlines are nanoTime values, compare them by difference
+      if (timed && deadline != other.deadline) {
+        return deadline - other.deadline < 0;
+      }
+      return sequence < other.sequence;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package com.reomor.locker;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MCS queue lock with direct handoff, for the hottest entities.
+ * <p>
+ * Every waiter appends its own node to the queue and spins on that node only, so waiting threads
+ * do not hammer a shared cache line. Unlock grants the lock to the successor node: the next owner is chosen
+ * by the releasing thread, nobody can barge in and the queue is strictly FIFO. A waiter spins for a short
+ * while and then parks, the releaser unparks it only if it has parked.
+ * <p>
+ * A timed out or interrupted waiter cancels its node and leaves it in the queue, the releaser
+ * passes the lock through cancelled nodes. Reentrant like {@link java.util.concurrent.locks.ReentrantLock},
+ * the methods of which are reimplemented on top of the queue. Conditions are not supported.
+ */
+class QueuedTrackedLock extends TrackedLock {
+
+  private static final VarHandle TAIL;
+  private static final VarHandle STATE;
+  // spinning makes sense only when there is another core to release the lock
+  private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      TAIL = lookup.findVarHandle(QueuedTrackedLock.class, "tail", Node.class);
+      STATE = lookup.findVarHandle(Node.class, "state", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @SuppressWarnings("unused")
+  private volatile Node tail;
+  private volatile Thread owner;
+  // written by the owner only, volatile for diagnostics
+  private volatile Node ownerNode;
+  private int holds;
+
+  @Override
+  public void lock() {
+    try {
+      acquire(false, 0, false);
+    } catch (InterruptedException e) {
+      // not thrown by uninterruptible acquire
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    acquire(false, 0, true);
+  }
+
+  @Override
+  public boolean tryLock() {
+    if (owner == Thread.currentThread()) {
+      holds++;
+      return true;
+    }
+    Node node = new Node();
+    if (TAIL.compareAndSet(this, (Node) null, node)) {
+      acquired(node);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+    // longer timeouts are as good as none, and the nanoTime arithmetic does not overflow
+    long timeoutNanos = Math.max(0, Math.min(unit.toNanos(timeout), Long.MAX_VALUE >> 2));
+    return acquire(true, System.nanoTime() + timeoutNanos, true);
+  }
+
+  @Override
+  public void unlock() {
+    if (owner != Thread.currentThread()) {
+      throw new IllegalMonitorStateException();
+    }
+    if (--holds > 0) {
+      return;
+    }
+    Node node = ownerNode;
+    ownerNode = null;
+    owner = null;
+    release(node);
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException("Conditions are not supported by queued entity locks");
+  }
+
+  @Override
+  public boolean isLocked() {
+    return owner != null;
+  }
+
+  @Override
+  public boolean isHeldByCurrentThread() {
+    return owner == Thread.currentThread();
+  }
+
+  @Override
+  public int getHoldCount() {
+    return owner == Thread.currentThread() ? holds : 0;
+  }
+
+  @Override
+  protected Thread getOwner() {
+    return owner;
+  }
+
+  @Override
+  boolean hasQueuedWaiters() {
+    Node last = tail;
+    return last != null && last != ownerNode;
+  }
+
+  @Override
+  int queuedWaiters() {
+    // racy walk for diagnostics, the owner node and cancelled ones are not counted
+    Node head = ownerNode;
+    if (head == null) {
+      return 0;
+    }
+    int count = 0;
+    for (Node node = head.next; node != null; node = node.next) {
+      if (node.state == Node.WAITING) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    Thread current = owner;
+    return super.toString() + (current == null ? "[Unlocked]" : "[Locked by thread " + current.getName() + "]");
+  }
+
+  private boolean acquire(boolean timed, long deadline, boolean interruptibly) throws InterruptedException {
+    if (interruptibly && Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (owner == Thread.currentThread()) {
+      holds++;
+      return true;
+    }
+
+    Node node = new Node();
+    Node predecessor = (Node) TAIL.getAndSet(this, node);
+    if (predecessor == null) {
+      acquired(node);
+      return true;
+    }
+    node.thread = Thread.currentThread();
+    predecessor.next = node;
+
+    boolean interrupted = false;
+    int spins = SPINS;
+    while (true) {
+      if (node.state == Node.GRANTED) {
+        break;
+      }
+      if (spins > 0) {
+        spins--;
+        Thread.onSpinWait();
+        continue;
+      }
+
+      node.parked = true;
+      // the releaser sets the state before it looks at parked, one of us sees the other
+      if (node.state == Node.GRANTED) {
+        break;
+      }
+      if (timed) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          if (cancel(node)) {
+            return false;
+          }
+          break;
+        }
+        LockSupport.parkNanos(this, remaining);
+      } else {
+        LockSupport.park(this);
+      }
+      node.parked = false;
+
+      if (Thread.interrupted()) {
+        if (interruptibly) {
+          if (cancel(node)) {
+            throw new InterruptedException();
+          }
+          // granted meanwhile, the lock is ours and the interrupt is kept for later
+          interrupted = true;
+          break;
+        }
+        interrupted = true;
+      }
+    }
+
+    acquired(node);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return true;
+  }
+
+  private void acquired(Node node) {
+    ownerNode = node;
+    holds = 1;
+    owner = Thread.currentThread();
+  }
+
+  // false if the lock has been granted to the node already
+  private static boolean cancel(Node node) {
+    return STATE.compareAndSet(node, Node.WAITING, Node.CANCELLED);
+  }
+
+  private void release(Node node) {
+    while (true) {
+      Node next = node.next;
+      if (next == null) {
+        if (TAIL.compareAndSet(this, node, (Node) null)) {
+          return;
+        }
+        // a successor has swapped the tail but not linked itself yet
+        while ((next = node.next) == null) {
+          Thread.onSpinWait();
+        }
+      }
+      if (STATE.compareAndSet(next, Node.WAITING, Node.GRANTED)) {
+        if (next.parked) {
+          LockSupport.unpark(next.thread);
+        }
+        return;
+      }
+      // cancelled, the node gives the lock to its own successor as if it had it
+      node = next;
+    }
+  }
+
+  private static class Node {
+
+    static final int WAITING = 0;
+    static final int GRANTED = 1;
+    static final int CANCELLED = 2;
+
+    volatile Node next;
+    volatile int state;
+    volatile boolean parked;
+    Thread thread;
+  }
+}
@@ -0,0 +1,251 @@
+package com.reomor.locker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ranges of ids of one class and the entities inside them.
+ * <p>
+ * Ranges are kept by their lower bound. Ranges of different threads never overlap, but nested ranges of one thread
+ * do, so a range of another thread may start before a nearer range of the current thread: a range that contains
+ * an id is looked for among all ranges starting at or before it.
+ * Entities are registered once their entity lock is acquired, a range waits for entities of other threads inside it,
+ * an entity inside a range of another thread gives its lock back and waits for the range.
+ *
+ * @param <ID> identifier type, must be {@link Comparable}
+ */
+class RangeLockTable<ID> {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  // held ranges by lower bound, one thread may hold nested ranges with the same bound
+  private final NavigableMap<ID, List<Range<ID>>> ranges = new TreeMap<>();
+  // locked entities, entity locks are exclusive so there is a single owner
+  private final NavigableMap<ID, Hold> points = new TreeMap<>();
+  private final Map<Thread, Integer> rangesPerThread = new HashMap<>();
+
+  /**
+   * Register an acquired entity
+   *
+   * @return false when a range of another thread contains the entity
+   */
+  boolean tryEnterPoint(ID id) {
+    lock.lock();
+    try {
+      if (foreignRange(id) != null) {
+        return false;
+      }
+      Thread current = Thread.currentThread();
+      Hold hold = points.computeIfAbsent(id, ignore -> new Hold(current));
+      hold.count++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void exitPoint(ID id) {
+    lock.lock();
+    try {
+      Hold hold = points.get(id);
+      if (hold == null || hold.owner != Thread.currentThread()) {
+        return;
+      }
+      if (--hold.count == 0) {
+        points.remove(id);
+        changed.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until no range of another thread contains the entity
+   *
+   * @return false on timeout
+   */
+  boolean awaitPoint(ID id, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (foreignRange(id) != null) {
+        if (!await(timed, deadlineNanos)) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return false on timeout
+   */
+  boolean lockRange(ID from, ID to, boolean timed, long deadlineNanos) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (conflicts(from, to)) {
+        if (!await(timed, deadlineNanos)) {
+          return false;
+        }
+      }
+      Thread current = Thread.currentThread();
+      List<Range<ID>> sameBound = ranges.computeIfAbsent(from, ignore -> new ArrayList<>(1));
+      Range<ID> range = find(sameBound, to, current);
+      if (range == null) {
+        range = new Range<>(to, current);
+        sameBound.add(range);
+      }
+      range.count++;
+      rangesPerThread.merge(current, 1, Integer::sum);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @throws IllegalMonitorStateException the range is not held by the current thread
+   */
+  void unlockRange(ID from, ID to) {
+    lock.lock();
+    try {
+      Thread current = Thread.currentThread();
+      List<Range<ID>> sameBound = ranges.get(from);
+      Range<ID> range = sameBound != null ? find(sameBound, to, current) : null;
+      if (range == null) {
+        throw new IllegalMonitorStateException("Range [" + from + ", " + to + "] is not held by " + current.getName());
+      }
+      if (--range.count == 0) {
+        sameBound.remove(range);
+        if (sameBound.isEmpty()) {
+          ranges.remove(from);
+        }
+      }
+      rangesPerThread.computeIfPresent(current, (ignore, count) -> count == 1 ? null : count - 1);
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return ranges held by the current thread, a reentrant range is counted once per lock
+   */
+  int heldByCurrentThread() {
+    lock.lock();
+    try {
+      return rangesPerThread.getOrDefault(Thread.currentThread(), 0);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean coveredByCurrentThread(ID id) {
+    lock.lock();
+    try {
+      Thread current = Thread.currentThread();
+      for (List<Range<ID>> sameBound : ranges.headMap(id, true).values()) {
+        for (Range<ID> range : sameBound) {
+          if (range.owner == current && compare(range.to, id) >= 0) {
+            return true;
+          }
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Range<ID> foreignRange(ID id) {
+    Thread current = Thread.currentThread();
+    // not only the floor one, a range of the current thread nested in another one may be nearer
+    for (List<Range<ID>> sameBound : ranges.headMap(id, true).values()) {
+      for (Range<ID> range : sameBound) {
+        if (range.owner != current && compare(range.to, id) >= 0) {
+          return range;
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean conflicts(ID from, ID to) {
+    Thread current = Thread.currentThread();
+    // a range that starts before and reaches into [from, to]
+    if (foreignRange(from) != null) {
+      return true;
+    }
+    for (List<Range<ID>> sameBound : ranges.subMap(from, false, to, true).values()) {
+      for (Range<ID> range : sameBound) {
+        if (range.owner != current) {
+          return true;
+        }
+      }
+    }
+    for (Hold hold : points.subMap(from, true, to, true).values()) {
+      if (hold.owner != current) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean await(boolean timed, long deadlineNanos) throws InterruptedException {
+    if (!timed) {
+      changed.await();
+      return true;
+    }
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining <= 0) {
+      return false;
+    }
+    // the caller checks its condition again anyway
+    changed.awaitNanos(remaining);
+    return true;
+  }
+
+  private static <ID> Range<ID> find(List<Range<ID>> sameBound, ID to, Thread owner) {
+    for (Range<ID> range : sameBound) {
+      if (range.owner == owner && range.to.equals(to)) {
+        return range;
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <ID> int compare(ID left, ID right) {
+    return ((Comparable<ID>) left).compareTo(right);
+  }
+
+  private static final class Range<ID> {
+
+    private final ID to;
+    private final Thread owner;
+    private int count;
+
+    private Range(ID to, Thread owner) {
+      this.to = to;
+      this.owner = owner;
+    }
+  }
+
+  private static final class Hold {
+
+    private final Thread owner;
+    private int count;
+
+    private Hold(Thread owner) {
+      this.owner = owner;
+    }
+  }
+}
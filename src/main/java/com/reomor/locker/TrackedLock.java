@@ -0,0 +1,146 @@
+package com.reomor.locker;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ReentrantLock} that remembers when it was taken by the current owner
+ * and exposes the owner thread for diagnostics.
+ * <p>
+ * Entity locks also count threads that got the lock from the lock table and have not finished
+ * acquiring it yet, the locker must not drop such a lock from the table.
+ */
+class TrackedLock extends ReentrantLock {
+
+  private static final VarHandle ACQUIRED_AT_MILLIS;
+  private static final VarHandle PENDING;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      ACQUIRED_AT_MILLIS = lookup.findVarHandle(TrackedLock.class, "acquiredAtMillis", long.class);
+      PENDING = lookup.findVarHandle(TrackedLock.class, "pending", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  // written by the owner right after the first (not reentrant) acquisition
+  private volatile long acquiredAtNanos;
+  // coarse acquisition time for the watchdog, written with release semantics only: a plain store on x86
+  @SuppressWarnings("unused")
+  private long acquiredAtMillis;
+  // acquisition already reported by the watchdog
+  private long reportedAtMillis;
+  // last release of a cached lock, written under the locker inner lock
+  private long idleSinceNanos;
+  @SuppressWarnings("unused")
+  private volatile int pending;
+  // named conditions of the entity, created on the first wait, guarded by this lock
+  private Map<String, EntityCondition> conditions;
+
+  /**
+   * Lock with a priority, see {@link LockPriority}. Plain locks ignore it.
+   */
+  void lockInterruptibly(int priority) throws InterruptedException {
+    lockInterruptibly();
+  }
+
+  boolean tryLock(int priority, long timeout, TimeUnit unit) throws InterruptedException {
+    return tryLock(timeout, unit);
+  }
+
+  // queue methods of ReentrantLock are final, locks with their own queue override these instead
+  boolean hasQueuedWaiters() {
+    return hasQueuedThreads();
+  }
+
+  int queuedWaiters() {
+    return getQueueLength();
+  }
+
+  // taken from the lock table by a thread that is going to acquire it
+  void enter() {
+    PENDING.getAndAdd(this, 1);
+  }
+
+  // acquired or given up
+  void leave() {
+    PENDING.getAndAdd(this, -1);
+  }
+
+  boolean hasPending() {
+    return pending != 0;
+  }
+
+  void markAcquired(long nanos) {
+    acquiredAtNanos = nanos;
+  }
+
+  long getAcquiredAtNanos() {
+    return acquiredAtNanos;
+  }
+
+  /**
+   * Called by the holder only
+   *
+   * @return null if nobody waits for the condition and create is false
+   */
+  EntityCondition condition(String name, boolean create) {
+    if (conditions == null) {
+      if (!create) {
+        return null;
+      }
+      conditions = new HashMap<>(2);
+    }
+    return create ? conditions.computeIfAbsent(name, ignore -> new EntityCondition()) : conditions.get(name);
+  }
+
+  // called by the holder only
+  boolean hasConditions() {
+    return conditions != null;
+  }
+
+  void removeConditionIfUnused(String name, EntityCondition condition) {
+    if (condition.isUnused() && conditions.remove(name, condition) && conditions.isEmpty()) {
+      conditions = null;
+    }
+  }
+
+  void markIdle(long nanos) {
+    idleSinceNanos = nanos;
+  }
+
+  long getIdleSinceNanos() {
+    return idleSinceNanos;
+  }
+
+  void markAcquiredAtMillis(long millis) {
+    ACQUIRED_AT_MILLIS.setRelease(this, millis);
+  }
+
+  long getAcquiredAtMillis() {
+    return (long) ACQUIRED_AT_MILLIS.getAcquire(this);
+  }
+
+  /**
+   * Called by the watchdog thread only
+   *
+   * @return true if the current acquisition has not been reported yet
+   */
+  boolean markReported(long acquiredAt) {
+    if (reportedAtMillis == acquiredAt) {
+      return false;
+    }
+    reportedAtMillis = acquiredAt;
+    return true;
+  }
+
+  Thread owner() {
+    return getOwner();
+  }
+}
@@ -1,9 +1,35 @@
 package com.reomor.locker;
 
+import static org.junit.jupiter.api.Assertions.fail;
+
 public abstract class AbstractEntityLockerTest {
 
   static final String TEST_ID = "TEST_ID";
   static final String TEST_ID2 = "TEST_ID2";
   static final String TEST_ID3 = "TEST_ID3";
   static final Class<?> TEST_ENTITY_CLASS = Object.class;
+
+  /**
+   * Run the action in a new thread and wait for it, its failures fail the test
+   */
+  static void inOtherThread(Action action) throws InterruptedException {
+    Throwable[] failure = new Throwable[1];
+    Thread thread = new Thread(() -> {
+      try {
+        action.run();
+      } catch (Throwable e) {
+        failure[0] = e;
+      }
+    });
+    thread.start();
+    thread.join();
+    if (failure[0] != null) {
+      fail(failure[0]);
+    }
+  }
+
+  @FunctionalInterface
+  interface Action {
+    void run() throws InterruptedException;
+  }
 }
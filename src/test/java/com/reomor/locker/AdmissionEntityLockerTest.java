@@ -0,0 +1,165 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 5)
+  void entityWaiterLimitRejectsNewWaiters() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .maxWaitersPerEntity(1)
+      .metricsEnabled(true)
+      .build());
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    Thread waiter = startWaiter(entityLocker, TEST_ID);
+
+    inOtherThread(() -> {
+      LockRejectedException rejected = assertThrows(LockRejectedException.class,
+        () -> entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS));
+      assertEquals(LockRejectedException.Reason.ENTITY_WAITERS, rejected.getReason());
+      assertEquals(1, rejected.getQueuedWaiters());
+      assertEquals(TEST_ENTITY_CLASS, rejected.getEntityClass());
+      assertEquals(TEST_ID, rejected.getEntityId());
+      assertThrows(LockRejectedException.class, () -> entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+
+      // other entities are not affected
+      assertTrue(entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+    });
+
+    // the holder is never rejected
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    waiter.join();
+    assertEquals(2, entityLocker.getMetrics().snapshot(TEST_ENTITY_CLASS).getRejections());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void classWaiterLimitRejectsWaitersOfOtherEntities() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .maxWaitersPerClass(1)
+      .build());
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS);
+    Thread waiter = startWaiter(entityLocker, TEST_ID);
+
+    inOtherThread(() -> {
+      LockRejectedException rejected = assertThrows(LockRejectedException.class,
+        () -> entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      assertEquals(LockRejectedException.Reason.CLASS_WAITERS, rejected.getReason());
+
+      // a free entity does not queue
+      assertTrue(entityLocker.lock("free", TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("free", TEST_ENTITY_CLASS);
+    });
+
+    entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    waiter.join();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void timedLockIsRejectedWhenPredictedWaitExceedsTimeout() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .rejectLikelyTimeouts(true)
+      .build());
+
+    // the class has been holding its locks for 50 ms
+    entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS);
+    Thread.sleep(50);
+    entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertEquals(0, entityLocker.predictWaitNanos(TEST_ID, TEST_ENTITY_CLASS));
+    assertEquals(0, entityLocker.predictWaitNanos(TEST_ID2, TEST_ENTITY_CLASS));
+
+    inOtherThread(() -> {
+      long predictedWaitNanos = entityLocker.predictWaitNanos(TEST_ID, TEST_ENTITY_CLASS);
+      assertTrue(predictedWaitNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+
+      LockRejectedException rejected = assertThrows(LockRejectedException.class,
+        () -> entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.MILLISECONDS));
+      assertEquals(LockRejectedException.Reason.PREDICTED_TIMEOUT, rejected.getReason());
+      assertEquals(predictedWaitNanos, rejected.getPredictedWaitNanos());
+
+      // a long enough timeout queues as usual
+      assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 100, TimeUnit.MILLISECONDS));
+    });
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void lockRequestIsRejectedAsAWhole() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .maxWaitersPerEntity(1)
+      .build());
+    LockRequest<String> request = LockRequest.<String>builder()
+      .entity(TEST_ENTITY_CLASS, TEST_ID)
+      .entity(String.class, TEST_ID)
+      .build();
+
+    entityLocker.lock(TEST_ID, String.class);
+    Thread waiter = startWaiter(entityLocker, TEST_ID, String.class);
+
+    inOtherThread(() -> {
+      assertThrows(LockRejectedException.class, () -> entityLocker.lock(request, 1, TimeUnit.SECONDS));
+      // the entity of the first class is given back
+      assertTrue(entityLocker.lock(request.getEntities(TEST_ENTITY_CLASS).get(0), 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(request.getEntities(TEST_ENTITY_CLASS).get(0));
+    });
+
+    entityLocker.unlock(TEST_ID, String.class);
+    waiter.join();
+  }
+
+  @Test
+  void predictedWaitNeedsAdmissionControl() {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+
+    assertThrows(IllegalStateException.class, () -> entityLocker.predictWaitNanos(TEST_ID, TEST_ENTITY_CLASS));
+  }
+
+  private static Thread startWaiter(EntityLocker<String> entityLocker, String entityId) throws InterruptedException {
+    return startWaiter(entityLocker, entityId, TEST_ENTITY_CLASS);
+  }
+
+  private static Thread startWaiter(EntityLocker<String> entityLocker, String entityId,
+                                    Class<?> clazz) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      try {
+        started.countDown();
+        entityLocker.lock(entityId, clazz);
+        entityLocker.unlock(entityId, clazz);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    waiter.start();
+    started.await();
+    while (waiter.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+    return waiter;
+  }
+}
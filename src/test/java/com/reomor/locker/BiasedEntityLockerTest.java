@@ -0,0 +1,173 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiasedEntityLockerTest extends AbstractEntityLockerTest {
+
+  private final EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .biasThreshold(2)
+    .build());
+
+  @Test
+  @Timeout(value = 5)
+  void repeatedLocksBiasEntityToThread() throws InterruptedException {
+
+    lockAndUnlock(2);
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    // the lock table is not touched by the owner of the bias
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    inOtherThread(() -> assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS)));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    // the timed out attempt has revoked the bias
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertFalse(entityLocker.entityLocksView().isEmpty());
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void otherThreadRevokesIdleBias() throws InterruptedException {
+
+    lockAndUnlock(2);
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread other = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+    assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    release.countDown();
+    other.join();
+    assertTrue(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waiterGetsEntityAfterLastUnlockOfOwner() throws InterruptedException {
+
+    lockAndUnlock(2);
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread other = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+
+    assertFalse(locked.await(50, TimeUnit.MILLISECONDS));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+    other.join();
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void globalLockWaitsForBiasedHolder() throws InterruptedException {
+
+    lockAndUnlock(2);
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    CountDownLatch globallyLocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread global = new Thread(() -> {
+      try {
+        entityLocker.globalLock(TEST_ENTITY_CLASS);
+        globallyLocked.countDown();
+        release.await();
+        entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    global.start();
+
+    assertFalse(globallyLocked.await(50, TimeUnit.MILLISECONDS));
+    // the owner still locks the entity again while it holds it
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    assertTrue(globallyLocked.await(1, TimeUnit.SECONDS));
+
+    // the bias is gone, the class global lock covers the entity
+    assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    release.countDown();
+    global.join();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void conditionsWorkOnBiasedHold() throws InterruptedException {
+
+    lockAndUnlock(2);
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertFalse(entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, "shipped", 10, TimeUnit.MILLISECONDS));
+    inOtherThread(() -> assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 10, TimeUnit.MILLISECONDS)));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  void biasIsOffByDefault() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+
+    for (int i = 0; i < 10; i++) {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    }
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertFalse(entityLocker.entityLocksView().isEmpty());
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  void biasNeedsLockerWithoutParentsAndPartitions() {
+
+    EntityLockerConfig withParents = EntityLockerConfig.builder()
+      .biasThreshold(2)
+      .parent(String.class, EntityParent.<String>of(TEST_ENTITY_CLASS, id -> id))
+      .build();
+    EntityLockerConfig withPartitions = EntityLockerConfig.builder()
+      .biasThreshold(2)
+      .partitionEscalationThreshold(3)
+      .build();
+
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<String>(withParents));
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<String>(withPartitions));
+  }
+
+  private void lockAndUnlock(int times) throws InterruptedException {
+    for (int i = 0; i < times; i++) {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    }
+  }
+}
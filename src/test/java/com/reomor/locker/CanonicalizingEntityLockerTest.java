@@ -0,0 +1,71 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalizingEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  void equalIdsGetOneCanonicalKey() {
+
+    IdInterner<String> interner = new IdInterner<>(100);
+    assertEquals(128, interner.capacity());
+
+    EntityKey<String> key = interner.intern(new String(TEST_ID), TEST_ENTITY_CLASS);
+    assertSame(key, interner.intern(new String(TEST_ID), TEST_ENTITY_CLASS));
+    assertSame(key, interner.intern(EntityKey.of(new String(TEST_ID), TEST_ENTITY_CLASS)));
+    assertNotSame(key, interner.intern(TEST_ID, String.class));
+  }
+
+  @Test
+  void evictedKeyStillLocksTheSameEntity() throws InterruptedException {
+
+    // a single slot, every other id evicts the key
+    IdInterner<String> interner = new IdInterner<>(1);
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLocker<String> canonicalizing = new CanonicalizingEntityLocker<>(entityLocker, interner);
+
+    EntityKey<String> key = interner.intern(TEST_ID, TEST_ENTITY_CLASS);
+    assertTrue(canonicalizing.lock(new String(TEST_ID), TEST_ENTITY_CLASS));
+    assertNotSame(key, interner.intern(TEST_ID2, TEST_ENTITY_CLASS));
+
+    canonicalizing.unlock(new String(TEST_ID), TEST_ENTITY_CLASS);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void freshIdsExcludeEachOther() throws InterruptedException {
+
+    EntityLocker<String> entityLocker = new CanonicalizingEntityLocker<>(new EntityLockerImpl<>());
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> {
+      try {
+        entityLocker.lock(new String(TEST_ID), TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(new String(TEST_ID), TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    holder.start();
+    locked.await();
+
+    assertFalse(entityLocker.lock(new String(TEST_ID), TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    holder.join();
+
+    assertTrue(entityLocker.lock(new String(TEST_ID), TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlock(new String(TEST_ID), TEST_ENTITY_CLASS);
+  }
+}
@@ -0,0 +1,251 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CombineEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 10)
+  void combinedAndPlainLockersExcludeEachOther() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+    int threads = 16;
+    int iterations = 500;
+    // plain fields on purpose, the entity lock is the only guard
+    int[] counter = new int[1];
+    boolean[] inside = new boolean[1];
+    AtomicBoolean overlapped = new AtomicBoolean();
+
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      boolean plain = t % 4 == 0;
+      workers.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < iterations; i++) {
+            if (plain) {
+              entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+              try {
+                increment(counter, inside, overlapped);
+              } finally {
+                entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+              }
+            } else {
+              entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> increment(counter, inside, overlapped));
+            }
+          }
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      }));
+    }
+    workers.forEach(Thread::start);
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertFalse(overlapped.get());
+    assertEquals(threads * iterations, entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> counter[0]));
+    assertTrue(monitor.getHeldLocks(10).isEmpty());
+    assertTrue(monitor.getLockedObjectsPerClass().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void leaderRunsOperationsOfWaiters() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    int waiters = 8;
+    Set<Thread> runners = ConcurrentHashMap.newKeySet();
+    List<Integer> results = new ArrayList<>();
+    CountDownLatch started = new CountDownLatch(waiters);
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < waiters; t++) {
+      int value = t;
+      threads.add(new Thread(() -> {
+        try {
+          started.countDown();
+          int result = entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> {
+            runners.add(Thread.currentThread());
+            return value * 10;
+          });
+          synchronized (results) {
+            results.add(result - value * 10);
+          }
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    started.await();
+    // let everybody publish and fall asleep behind the leader
+    Thread.sleep(100);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every caller got its own result
+    assertEquals(waiters, results.size());
+    assertTrue(results.stream().allMatch(difference -> difference == 0));
+    assertTrue(runners.size() < waiters, "operations were not combined");
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void exceptionIsRethrownToItsCaller() throws InterruptedException {
+
+    EntityLocker<String> entityLocker = new EntityLockerImpl<>();
+
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+      () -> entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> {
+        throw new IllegalStateException(TEST_ID);
+      }));
+    assertEquals(TEST_ID, e.getMessage());
+
+    assertEquals(TEST_ID2, entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> TEST_ID2));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void combineUnderOwnLockRunsInPlace() throws InterruptedException {
+
+    EntityLocker<String> entityLocker = new EntityLockerImpl<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertEquals(Thread.currentThread(), entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, Thread::currentThread));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    assertEquals(Thread.currentThread(), entityLocker.combine(TEST_ID2, TEST_ENTITY_CLASS, Thread::currentThread));
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void interruptedWaiterIsWithdrawn() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+    AtomicBoolean withdrawnRan = new AtomicBoolean();
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread leader = new Thread(() -> {
+      try {
+        entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> null);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    leader.start();
+    while (monitor.getQueuedThreads() == 0) {
+      Thread.sleep(5);
+    }
+
+    Thread waiter = new Thread(() -> {
+      try {
+        entityLocker.combine(TEST_ID, TEST_ENTITY_CLASS, () -> {
+          withdrawnRan.set(true);
+          return null;
+        });
+      } catch (InterruptedException e) {
+        thrown.set(e);
+      }
+    });
+    waiter.start();
+    while (waiter.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+    waiter.interrupt();
+    waiter.join();
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    leader.join();
+
+    assertTrue(thrown.get() instanceof InterruptedException);
+    assertFalse(withdrawnRan.get());
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void withdrawnHeadPassesTheLeadOn() throws InterruptedException {
+
+    // the lead goes to the first waiter while it is interrupted, the scheduler decides who comes first
+    for (int i = 0; i < 50; i++) {
+      FlatCombiner combiner = new FlatCombiner();
+      Thread[] waiters = new Thread[2];
+      CountDownLatch leading = new CountDownLatch(1);
+      CountDownLatch queued = new CountDownLatch(1);
+      AtomicReference<Object> served = new AtomicReference<>();
+
+      Thread leader = new Thread(() -> {
+        try {
+          combiner.combine(() -> null, () -> {
+            leading.countDown();
+            queued.await();
+            waiters[0].interrupt();
+            throw new InterruptedException();
+          }, () -> { });
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      leader.start();
+      leading.await();
+
+      waiters[0] = new Thread(() -> {
+        try {
+          combiner.combine(() -> null, () -> { }, () -> { });
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      waiters[1] = new Thread(() -> {
+        try {
+          served.set(combiner.combine(() -> "served", () -> { }, () -> { }));
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      for (Thread waiter : waiters) {
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+          Thread.sleep(1);
+        }
+      }
+      queued.countDown();
+
+      waiters[1].join(1000);
+      assertEquals("served", served.get());
+      leader.join();
+      waiters[0].join();
+    }
+  }
+
+  private static int increment(int[] counter, boolean[] inside, AtomicBoolean overlapped) {
+    if (inside[0]) {
+      overlapped.set(true);
+    }
+    inside[0] = true;
+    int value = ++counter[0];
+    inside[0] = false;
+    return value;
+  }
+}
@@ -0,0 +1,205 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionEntityLockerTest extends AbstractEntityLockerTest {
+
+  private static final String SHIPPED = "shipped";
+
+  @Test
+  @Timeout(value = 10)
+  void waiterReleasesEntityUntilSignalled() throws InterruptedException {
+
+    for (EntityLockKind kind : EntityLockKind.values()) {
+      EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+        .entityLockKind(kind)
+        .build());
+      AtomicReference<String> state = new AtomicReference<>("new");
+      CountDownLatch done = new CountDownLatch(1);
+
+      Thread consumer = new Thread(() -> {
+        try {
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          while (!state.get().equals(SHIPPED)) {
+            entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+          }
+          // both holds are back
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+          done.countDown();
+          Thread.sleep(50);
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      consumer.start();
+      awaitParked(consumer);
+
+      assertTrue(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS), kind.name());
+      state.set(SHIPPED);
+      entityLocker.signal(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+      assertFalse(done.await(20, TimeUnit.MILLISECONDS), kind.name());
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+      assertTrue(done.await(1, TimeUnit.SECONDS), kind.name());
+      assertEquals(1, new EntityLockerMonitor(entityLocker).getHeldLocks(10).size(), kind.name());
+      consumer.join();
+      // the condition has gone with the lock of the entity
+      assertTrue(entityLocker.entityLocksView().isEmpty(), kind.name());
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void timedWaitHoldsEntityAgain() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    assertFalse(entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED, 20, TimeUnit.MILLISECONDS));
+    inOtherThread(() -> assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 10, TimeUnit.MILLISECONDS)));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void signalWakesOneAndSignalAllWakesEveryone() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    AtomicInteger woken = new AtomicInteger();
+    Thread[] waiters = new Thread[3];
+    for (int i = 0; i < waiters.length; i++) {
+      waiters[i] = new Thread(() -> {
+        try {
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          try {
+            entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+            woken.incrementAndGet();
+          } finally {
+            entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+          }
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      waiters[i].start();
+      awaitParked(waiters[i]);
+    }
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    // other conditions of the entity are not affected
+    entityLocker.signalAll(TEST_ID, TEST_ENTITY_CLASS, "paid");
+    entityLocker.signal(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    waiters[0].join();
+    Thread.sleep(20);
+    assertEquals(1, woken.get());
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.signalAll(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    for (Thread waiter : waiters) {
+      waiter.join();
+    }
+    assertEquals(3, woken.get());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void interruptedWaiterHoldsEntityAgain() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    AtomicReference<Boolean> heldAfterInterrupt = new AtomicReference<>();
+
+    Thread waiter = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        try {
+          assertThrows(InterruptedException.class, () -> entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED));
+          heldAfterInterrupt.set(entityLocker.jailbreak().isHeldByCurrentThread(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
+        } finally {
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        }
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    waiter.start();
+    awaitParked(waiter);
+    waiter.interrupt();
+    waiter.join();
+
+    assertTrue(heldAfterInterrupt.get());
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void signalWinsOverLaterInterrupt() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    AtomicReference<Boolean> interruptedAfterSignal = new AtomicReference<>();
+
+    Thread waiter = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        try {
+          entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+          interruptedAfterSignal.set(Thread.currentThread().isInterrupted());
+        } finally {
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        }
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    waiter.start();
+    awaitParked(waiter);
+
+    // the interrupted waiter waits for the entity, still in the queue of the condition
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    waiter.interrupt();
+    TrackedLock entityLock = entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS));
+    while (!entityLock.hasQueuedThread(waiter)) {
+      Thread.sleep(5);
+    }
+    entityLocker.signal(TEST_ID, TEST_ENTITY_CLASS, SHIPPED);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    waiter.join();
+
+    // the signal is taken, the interrupt is kept
+    assertTrue(interruptedAfterSignal.get());
+  }
+
+  @Test
+  void conditionsNeedTheEntityLock() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+
+    assertThrows(IllegalMonitorStateException.class, () -> entityLocker.signal(TEST_ID, TEST_ENTITY_CLASS, SHIPPED));
+    assertThrows(IllegalMonitorStateException.class,
+      () -> entityLocker.awaitCondition(TEST_ID, TEST_ENTITY_CLASS, SHIPPED, 1, TimeUnit.MILLISECONDS));
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    inOtherThread(() -> assertThrows(IllegalMonitorStateException.class,
+      () -> entityLocker.signalAll(TEST_ID, TEST_ENTITY_CLASS, SHIPPED)));
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+  }
+
+  private static void awaitParked(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityExecutorTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 10)
+  void tasksOfEntityRunSeriallyInOrder() throws Exception {
+
+    int threads = 8;
+    int tasks = 1000;
+    // plain fields, only the single writer of the partition touches them
+    int[] counter = new int[1];
+    List<Integer> order = new ArrayList<>();
+
+    try (EntityExecutor<String> executor = new EntityExecutor<>(EntityExecutorConfig.builder().partitions(4).maxBatch(16).build())) {
+      List<Thread> submitters = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        submitters.add(new Thread(() -> {
+          try {
+            for (int i = 0; i < tasks; i++) {
+              executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> counter[0]++);
+              executor.submit(TEST_ID2, TEST_ENTITY_CLASS, () -> null);
+            }
+          } catch (InterruptedException ignore) {
+            /* NOP */
+          }
+        }));
+      }
+      submitters.forEach(Thread::start);
+      for (int i = 0; i < 100; i++) {
+        int value = i;
+        executor.submit(TEST_ID3, TEST_ENTITY_CLASS, () -> order.add(value));
+      }
+      for (Thread submitter : submitters) {
+        submitter.join();
+      }
+
+      assertEquals(threads * tasks, executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> counter[0]).get());
+      List<Integer> seen = executor.submit(TEST_ID3, TEST_ENTITY_CLASS, () -> new ArrayList<>(order)).get();
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i, seen.get(i));
+      }
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void fullPartitionPushesBack() throws Exception {
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    try (EntityExecutor<String> executor = new EntityExecutor<>(EntityExecutorConfig.builder().partitions(1).partitionCapacity(1).build())) {
+      executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> {
+        started.countDown();
+        release.await();
+        return null;
+      });
+      started.await();
+      CompletableFuture<String> queued = executor.submit(TEST_ID2, TEST_ENTITY_CLASS, () -> TEST_ID2);
+
+      assertNull(executor.submit(TEST_ID3, TEST_ENTITY_CLASS, () -> TEST_ID3, 50, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertEquals(TEST_ID2, queued.get());
+      CompletableFuture<String> accepted = executor.submit(TEST_ID3, TEST_ENTITY_CLASS, () -> TEST_ID3, 1, TimeUnit.SECONDS);
+      assertNotNull(accepted);
+      assertEquals(TEST_ID3, accepted.get());
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void globalTaskDrainsAllPartitions() throws Exception {
+
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger done = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    try (EntityExecutor<String> executor = new EntityExecutor<>(EntityExecutorConfig.builder().partitions(4).build())) {
+      List<String> ids = List.of(TEST_ID, TEST_ID2, TEST_ID3, "TEST_ID4", "TEST_ID5", "TEST_ID6");
+      for (String id : ids) {
+        executor.submit(id, TEST_ENTITY_CLASS, () -> {
+          running.incrementAndGet();
+          release.await();
+          done.incrementAndGet();
+          return running.decrementAndGet();
+        });
+      }
+
+      CompletableFuture<Integer> global = executor.submitGlobal(TEST_ENTITY_CLASS, () -> running.get() * 100 + done.get());
+      List<CompletableFuture<Integer>> after = new ArrayList<>();
+      for (String id : ids) {
+        after.add(executor.submit(id, TEST_ENTITY_CLASS, () -> global.isDone() ? 1 : 0));
+      }
+
+      assertFalse(global.isDone());
+      release.countDown();
+
+      // everything before the global task is done, nothing after it has started
+      assertEquals(ids.size(), global.get());
+      for (CompletableFuture<Integer> future : after) {
+        assertEquals(1, future.get());
+      }
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void failedTaskDoesNotStopPartition() throws Exception {
+
+    try (EntityExecutor<String> executor = new EntityExecutor<>(EntityExecutorConfig.builder().partitions(1).build())) {
+      CompletableFuture<Object> failed = executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> {
+        throw new IllegalStateException(TEST_ID);
+      });
+      ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+      assertTrue(e.getCause() instanceof IllegalStateException);
+
+      assertEquals(TEST_ID2, executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> TEST_ID2).get());
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void closeRunsQueuedTasksAndRejectsNewOnes() throws Exception {
+
+    EntityExecutor<String> executor = new EntityExecutor<>(EntityExecutorConfig.builder().partitions(2).build());
+    CompletableFuture<String> queued = executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> {
+      Thread.sleep(50);
+      return TEST_ID;
+    });
+
+    executor.close();
+
+    assertEquals(TEST_ID, queued.getNow(null));
+    assertThrows(RejectedExecutionException.class, () -> executor.submit(TEST_ID, TEST_ENTITY_CLASS, () -> TEST_ID));
+    assertThrows(RejectedExecutionException.class, () -> executor.submitGlobal(TEST_ENTITY_CLASS, () -> TEST_ID));
+  }
+}
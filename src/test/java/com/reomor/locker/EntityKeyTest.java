@@ -0,0 +1,40 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityKeyTest extends AbstractEntityLockerTest {
+
+  @Test
+  void equalsAndHashCode() {
+
+    EntityKey<String> key = EntityKey.of(TEST_ID, TEST_ENTITY_CLASS);
+
+    assertEquals(key, EntityKey.of(new String(TEST_ID), TEST_ENTITY_CLASS));
+    assertEquals(key.hashCode(), EntityKey.of(TEST_ID, TEST_ENTITY_CLASS).hashCode());
+    assertNotEquals(key, EntityKey.of(TEST_ID2, TEST_ENTITY_CLASS));
+    assertNotEquals(key, EntityKey.of(TEST_ID, String.class));
+    assertThrows(NullPointerException.class, () -> EntityKey.of(null, TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  void keyAndIdLockTheSameEntity() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityKey<String> key = EntityKey.of(TEST_ID, TEST_ENTITY_CLASS);
+
+    assertTrue(entityLocker.lock(key));
+    assertTrue(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 10, TimeUnit.MILLISECONDS));
+    assertEquals(1, entityLocker.entityLocksView().size());
+    assertEquals(2, entityLocker.entityLocksView().get(key).getHoldCount());
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.unlock(key);
+
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+    assertEquals(0, entityLocker.getNumberOfLockedObject(TEST_ENTITY_CLASS));
+  }
+}
@@ -0,0 +1,117 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityLockerMonitorTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 5)
+  void heldAndQueuedLocks() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch locked = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    }, "monitor-holder");
+
+    Thread waiter = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    }, "monitor-waiter");
+
+    holder.start();
+    locked.await();
+    waiter.start();
+
+    while (monitor.getQueuedThreads() == 0) {
+      Thread.sleep(5);
+    }
+
+    // the waiter is counted as well, it blocks global lockers of the class
+    assertEquals(Map.of(TEST_ENTITY_CLASS.getName(), 2), monitor.getLockedObjectsPerClass());
+
+    List<EntityLockInfo> held = monitor.getHeldLocks(10);
+    assertEquals(1, held.size());
+    assertEquals(TEST_ID, held.get(0).getEntityId());
+    assertEquals("monitor-holder", held.get(0).getOwner());
+
+    List<EntityLockInfo> queued = monitor.getTopQueuedEntities(10);
+    assertEquals(1, queued.size());
+    assertEquals(1, queued.get(0).getQueueLength());
+
+    assertTrue(monitor.getHeldLocks(0).isEmpty());
+    assertTrue(monitor.getTopQueuedEntities(0).isEmpty());
+
+    release.countDown();
+    holder.join();
+    waiter.join();
+
+    assertTrue(monitor.getHeldLocks(10).isEmpty());
+    assertTrue(monitor.getLockedObjectsPerClass().isEmpty());
+  }
+
+  @Test
+  void globalLockHolders() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    assertEquals(Map.of(TEST_ENTITY_CLASS.getName(), Thread.currentThread().getName()), monitor.getGlobalLockHolders());
+
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    assertTrue(monitor.getGlobalLockHolders().isEmpty());
+  }
+
+  @Test
+  void registerInPlatformMBeanServer() throws Exception {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    ObjectName objectName = monitor.register("test");
+    try {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+      assertEquals(0, mBeanServer.getAttribute(objectName, "QueuedThreads"));
+
+      CompositeData[] held = (CompositeData[]) mBeanServer.invoke(objectName, "getHeldLocks",
+        new Object[]{10}, new String[]{int.class.getName()});
+      assertEquals(1, held.length);
+      assertEquals(TEST_ID, held[0].get("entityId"));
+
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    } finally {
+      EntityLockerMonitor.unregister("test");
+    }
+
+    assertFalse(mBeanServer.isRegistered(objectName));
+  }
+}
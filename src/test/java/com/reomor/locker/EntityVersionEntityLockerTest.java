@@ -0,0 +1,95 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityVersionEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 5)
+  void versionMovesOnLastRelease() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .entityVersionCapacity(100)
+      .build());
+    long first = entityLocker.version(1L, TEST_ENTITY_CLASS);
+    long second = entityLocker.version(2L, TEST_ENTITY_CLASS);
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> assertEquals(first, entityLocker.version(1L, TEST_ENTITY_CLASS)));
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+
+    long released = entityLocker.version(1L, TEST_ENTITY_CLASS);
+    assertTrue(released > first);
+    assertEquals(second, entityLocker.version(2L, TEST_ENTITY_CLASS));
+    // the lock of the entity is gone, its version is not
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+    assertEquals(released, entityLocker.version(1L, TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void versionsNeverGoBackWhenEntitiesLeaveTheTable() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .entityVersionCapacity(8)
+      .build());
+    Map<Long, Long> seen = new HashMap<>();
+
+    for (int round = 0; round < 20; round++) {
+      for (long id = 0; id < 50; id++) {
+        long before = entityLocker.version(id, TEST_ENTITY_CLASS);
+        assertTrue(before >= seen.getOrDefault(id, 0L), "id " + id);
+        if ((id + round) % 3 == 0) {
+          entityLocker.lock(id, TEST_ENTITY_CLASS);
+          entityLocker.unlock(id, TEST_ENTITY_CLASS);
+          // a write is never missed, evicted or not
+          assertTrue(entityLocker.version(id, TEST_ENTITY_CLASS) > before, "id " + id);
+        }
+        seen.put(id, entityLocker.version(id, TEST_ENTITY_CLASS));
+      }
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void globalLocksAndRangesMoveVersionsOfTheClass() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .entityVersionCapacity(100)
+      .rangeLockClass(TEST_ENTITY_CLASS)
+      .build());
+    long initial = entityLocker.version(1L, TEST_ENTITY_CLASS);
+    long otherClass = entityLocker.version(1L, String.class);
+
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    assertEquals(initial, entityLocker.version(1L, TEST_ENTITY_CLASS));
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    long afterGlobal = entityLocker.version(1L, TEST_ENTITY_CLASS);
+    assertTrue(afterGlobal > initial);
+
+    assertTrue(entityLocker.lockRange(10L, 20L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+    entityLocker.unlockRange(10L, 20L, TEST_ENTITY_CLASS);
+    assertTrue(entityLocker.version(1L, TEST_ENTITY_CLASS) > afterGlobal);
+
+    assertEquals(otherClass, entityLocker.version(1L, String.class));
+  }
+
+  @Test
+  void versionsAreOffByDefault() {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>();
+
+    assertThrows(IllegalStateException.class, () -> entityLocker.version(1L, TEST_ENTITY_CLASS));
+  }
+}
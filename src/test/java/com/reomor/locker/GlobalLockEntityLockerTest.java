@@ -6,8 +6,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -439,6 +443,46 @@ class GlobalLockEntityLockerTest extends AbstractEntityLockerTest{
     verify(entityLocker, times(1)).clearClassGlobalLock(TEST_ENTITY_CLASS);
   }
 
+  @Test
+  @Timeout(value = 10)
+  void globalLock_staysExclusive_whileUnlockCleansUp() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    AtomicInteger holders = new AtomicInteger();
+    AtomicInteger violations = new AtomicInteger();
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    // every unlock without waiters drops the class global lock, the others are taking it at the same time
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String entityId = "id" + t;
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 2_000; i++) {
+            entityLocker.globalLock(TEST_ENTITY_CLASS);
+            if (holders.incrementAndGet() != 1) {
+              violations.incrementAndGet();
+            }
+            holders.decrementAndGet();
+            entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+            entityLocker.lock(entityId, TEST_ENTITY_CLASS);
+            entityLocker.unlock(entityId, TEST_ENTITY_CLASS);
+          }
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(List.of(), failures);
+    assertEquals(0, violations.get());
+  }
+
   @Data
   @AllArgsConstructor
   private static class Entity<ID> {
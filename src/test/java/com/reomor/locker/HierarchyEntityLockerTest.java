@@ -0,0 +1,169 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchyEntityLockerTest extends AbstractEntityLockerTest {
+
+  // ids are paths: customer "c1", its order "c1/o1", the line of the order "c1/o1/l1"
+  private static final EntityParent ORDER_OF_LINE = EntityParent.of(Order.class, HierarchyEntityLockerTest::parentOf);
+  private static final EntityParent CUSTOMER_OF_ORDER = EntityParent.of(Customer.class, HierarchyEntityLockerTest::parentOf);
+
+  private final EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .parent(OrderLine.class, ORDER_OF_LINE)
+    .parent(Order.class, CUSTOMER_OF_ORDER)
+    .build());
+
+  @Test
+  @Timeout(value = 5)
+  void parentLockCoversItsChildrenOnly() throws InterruptedException {
+
+    entityLocker.lock("c1/o1", Order.class);
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock("c1/o1/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      // another aggregate of the same classes is not blocked
+      assertTrue(entityLocker.lock("c1/o2/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c1/o2/l1", OrderLine.class);
+    });
+
+    // the owner of the parent locks the children as usual
+    assertTrue(entityLocker.lock("c1/o1/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlock("c1/o1/l1", OrderLine.class);
+    entityLocker.unlock("c1/o1", Order.class);
+
+    entityLocker.lock("c1", Customer.class);
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock("c1/o1/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lock("c1/o1", Order.class, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lock("c2/o1/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c2/o1/l1", OrderLine.class);
+    });
+    entityLocker.unlock("c1", Customer.class);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock("c1/o1/l1", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c1/o1/l1", OrderLine.class);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void childLocksShareTheParentAndExcludeItsLock() throws InterruptedException {
+
+    entityLocker.lock("c1/o1/l1", OrderLine.class);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock("c1/o1/l2", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c1/o1/l2", OrderLine.class);
+
+      assertFalse(entityLocker.lock("c1/o1", Order.class, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lock("c1", Customer.class, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lock("c1/o2", Order.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c1/o2", Order.class);
+    });
+
+    // own children do not stand in the way
+    assertTrue(entityLocker.lock("c1/o1", Order.class, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlock("c1/o1", Order.class);
+    entityLocker.unlock("c1/o1/l1", OrderLine.class);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock("c1/o1", Order.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock("c1/o1", Order.class);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waitingParentHoldsBackNewChildren() throws InterruptedException {
+
+    CountDownLatch parentLocked = new CountDownLatch(1);
+
+    entityLocker.lock("c1/o1/l1", OrderLine.class);
+
+    Thread parentLocker = new Thread(() -> {
+      try {
+        entityLocker.lock("c1/o1", Order.class);
+        parentLocked.countDown();
+        entityLocker.unlock("c1/o1", Order.class);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    parentLocker.start();
+    while (parentLocker.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+
+    inOtherThread(() -> assertFalse(entityLocker.lock("c1/o1/l2", OrderLine.class, 20, TimeUnit.MILLISECONDS)));
+    // the thread the parent waits for goes on
+    assertTrue(entityLocker.lock("c1/o1/l3", OrderLine.class, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlock("c1/o1/l3", OrderLine.class);
+    assertFalse(parentLocked.await(20, TimeUnit.MILLISECONDS));
+
+    entityLocker.unlock("c1/o1/l1", OrderLine.class);
+    assertTrue(parentLocked.await(1, TimeUnit.SECONDS));
+    parentLocker.join();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void globalLockOfParentClassWaitsForChildren() throws InterruptedException {
+
+    CountDownLatch globalLocked = new CountDownLatch(1);
+
+    entityLocker.lock("c1/o1/l1", OrderLine.class);
+
+    Thread globalLocker = new Thread(() -> {
+      try {
+        entityLocker.globalLock(Order.class);
+        globalLocked.countDown();
+        entityLocker.globalUnlock(Order.class);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    globalLocker.start();
+    assertFalse(globalLocked.await(100, TimeUnit.MILLISECONDS));
+
+    entityLocker.unlock("c1/o1/l1", OrderLine.class);
+    assertTrue(globalLocked.await(1, TimeUnit.SECONDS));
+    globalLocker.join();
+
+    // a thread is not blocked by its own children
+    entityLocker.lock("c1/o1/l1", OrderLine.class);
+    entityLocker.globalLock(Order.class);
+    entityLocker.globalUnlock(Order.class);
+    entityLocker.unlock("c1/o1/l1", OrderLine.class);
+  }
+
+  @Test
+  void cyclesAreRejected() {
+
+    EntityLockerConfig config = EntityLockerConfig.builder()
+      .parent(Order.class, EntityParent.of(OrderLine.class, HierarchyEntityLockerTest::parentOf))
+      .parent(OrderLine.class, ORDER_OF_LINE)
+      .build();
+
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<String>(config));
+  }
+
+  private static String parentOf(String id) {
+    return id.substring(0, id.lastIndexOf('/'));
+  }
+
+  private static class Customer {
+  }
+
+  private static class Order {
+  }
+
+  private static class OrderLine {
+  }
+}
@@ -0,0 +1,82 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest extends AbstractEntityLockerTest {
+
+  @Test
+  void hotKeysDisabledByDefault() {
+    assertNull(new EntityLockerImpl<String>().getHotKeys());
+  }
+
+  @Test
+  void heavyHittersSurviveManyDistinctIds() {
+
+    HotKeyTracker tracker = new HotKeyTracker(4);
+    for (int i = 0; i < 10_000; i++) {
+      // every third event is the hot id, the rest are unique
+      tracker.contended(TEST_ENTITY_CLASS, i % 3 == 0 ? TEST_ID : "cold-" + i, 10);
+    }
+
+    List<HotKey> top = tracker.top(TEST_ENTITY_CLASS, 10);
+    assertEquals(4, top.size());
+    HotKey hottest = top.get(0);
+    assertEquals(TEST_ID, hottest.getEntityId());
+    // space-saving never under-estimates and errs by at most the inherited count
+    assertTrue(hottest.getCount() >= 3334);
+    assertTrue(hottest.getCount() - hottest.getError() <= 3334);
+
+    assertEquals(1, tracker.top(TEST_ENTITY_CLASS, 1).size());
+    assertTrue(tracker.top(String.class, 10).isEmpty());
+
+    tracker.reset();
+    assertTrue(tracker.top(TEST_ENTITY_CLASS, 10).isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void onlyContendedAcquisitionsAreTracked() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .hotKeyCapacity(16)
+      .build());
+
+    // free lock, not tracked
+    entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    holder.start();
+    locked.await();
+
+    assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 30, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    holder.join();
+
+    List<HotKey> top = entityLocker.getHotKeys().top(TEST_ENTITY_CLASS, 10);
+    assertEquals(1, top.size());
+    assertEquals(TEST_ID, top.get(0).getEntityId());
+    assertEquals(1, top.get(0).getCount());
+    assertTrue(top.get(0).getWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+}
@@ -0,0 +1,104 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdleLockCacheEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 5)
+  void warmKeyReusesItsLock() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .idleLockCacheCapacity(16)
+      .build());
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    TrackedLock lock = entityLocker.entityLocksView().get(EntityKey.of(1L, TEST_ENTITY_CLASS));
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+
+    assertSame(lock, entityLocker.entityLocksView().get(EntityKey.of(1L, TEST_ENTITY_CLASS)));
+    assertFalse(lock.isLocked());
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(1L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertSame(lock, entityLocker.entityLocksView().get(EntityKey.of(1L, TEST_ENTITY_CLASS)));
+      entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    });
+    assertTrue(new EntityLockerMonitor(entityLocker).getHeldLocks(10).isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void tableDoesNotGrowPastCapacity() throws InterruptedException {
+
+    int capacity = 8;
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .idleLockCacheCapacity(capacity)
+      .build());
+
+    for (long id = 0; id < 1000; id++) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+      assertTrue(entityLocker.entityLocksView().size() <= capacity);
+    }
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void heldLocksAreNeverEvicted() throws InterruptedException {
+
+    int capacity = 4;
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .idleLockCacheCapacity(capacity)
+      .idleLockTimeout(Duration.ZERO)
+      .globalEscalationThreshold(100)
+      .build());
+
+    for (long id = 0; id < 10; id++) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+    }
+    for (long id = 100; id < 200; id++) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+
+    // the table is over capacity with held locks only
+    assertEquals(10, entityLocker.entityLocksView().size());
+    inOtherThread(() -> assertFalse(entityLocker.lock(5L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS)));
+
+    for (long id = 0; id < 10; id++) {
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+    assertTrue(entityLocker.entityLocksView().size() <= capacity);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void idleLocksAreEvictedAfterTimeout() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .idleLockCacheCapacity(1000)
+      .idleLockTimeout(Duration.ofMillis(50))
+      .build());
+
+    for (long id = 0; id < 10; id++) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+    assertEquals(10, entityLocker.entityLocksView().size());
+
+    Thread.sleep(100);
+    // the next sweep comes with later releases
+    for (int i = 0; i < IdleLockSweeper.SWEEP_PERIOD; i++) {
+      entityLocker.lock(100L, TEST_ENTITY_CLASS);
+      entityLocker.unlock(100L, TEST_ENTITY_CLASS);
+    }
+    assertEquals(1, entityLocker.entityLocksView().size());
+  }
+}
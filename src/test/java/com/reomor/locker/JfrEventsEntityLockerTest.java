@@ -0,0 +1,146 @@
+package com.reomor.locker;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrEventsEntityLockerTest extends AbstractEntityLockerTest {
+
+  @Test
+  @Timeout(value = 10)
+  void timeoutAndWaitEvents() throws Exception {
+
+    EntityLocker<String> entityLocker = new EntityLockerImpl<>();
+
+    List<RecordedEvent> events = record(Duration.ofMillis(5), () -> {
+
+      CountDownLatch locked = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch committed = new CountDownLatch(1);
+
+      Thread holder = new Thread(() -> {
+        try {
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          locked.countDown();
+          release.await();
+          Thread.sleep(50);
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+          // JFR does not resolve threads that have finished before the event referencing them is committed
+          committed.await();
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      }, "jfr-holder");
+      holder.start();
+      locked.await();
+
+      assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 50, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertTrue(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS));
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      committed.countDown();
+      holder.join();
+    });
+
+    RecordedEvent timeout = single(events, LockTimeoutEvent.NAME);
+    assertEquals(TEST_ID, timeout.getString("entityId"));
+    assertEquals(TEST_ENTITY_CLASS.getName(), timeout.getClass("entityClass").getName());
+    assertEquals("jfr-holder", timeout.getThread("holder").getJavaName());
+    assertEquals(Duration.ofMillis(50), timeout.getDuration("timeout"));
+
+    RecordedEvent wait = single(events, EntityLockEvent.NAME);
+    assertEquals(TEST_ID, wait.getString("entityId"));
+    assertEquals("jfr-holder", wait.getThread("holder").getJavaName());
+    assertTrue(wait.getDuration().toMillis() >= 40);
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void escalationAndGlobalLockEvents() throws Exception {
+
+    EntityLocker<String> entityLocker = new EntityLockerImpl<>(2);
+
+    List<RecordedEvent> events = record(Duration.ZERO, () -> {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+      entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS);
+      entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+      entityLocker.globalLock(TEST_ENTITY_CLASS);
+      entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    });
+
+    RecordedEvent escalation = single(events, LockEscalationEvent.NAME);
+    assertEquals(TEST_ID2, escalation.getString("entityId"));
+    assertEquals(2, escalation.getInt("lockedEntities"));
+
+    assertTrue(events.stream()
+      .filter(event -> event.getEventType().getName().equals(GlobalLockEvent.NAME))
+      .anyMatch(event -> event.getBoolean("explicit")));
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void fastLocksAreBelowThreshold() throws Exception {
+
+    EntityLocker<String> entityLocker = new EntityLockerImpl<>();
+
+    List<RecordedEvent> events = record(Duration.ofSeconds(1), () -> {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    });
+
+    assertTrue(events.isEmpty());
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> found = events.stream()
+      .filter(event -> event.getEventType().getName().equals(name))
+      .collect(Collectors.toList());
+    assertEquals(1, found.size(), name);
+    return found.get(0);
+  }
+
+  private static List<RecordedEvent> record(Duration threshold, LockAction action) throws Exception {
+    Path file = Files.createTempFile("entity-locker", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(EntityLockEvent.NAME).withThreshold(threshold);
+      recording.enable(GlobalLockEvent.NAME).withThreshold(threshold);
+      recording.enable(LockEscalationEvent.NAME);
+      recording.enable(LockTimeoutEvent.NAME);
+      recording.start();
+
+      action.run();
+
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+        .filter(event -> event.getEventType().getName().startsWith("com.reomor.locker."))
+        .collect(Collectors.toList());
+    } finally {
+      delete(file);
+    }
+  }
+
+  private static void delete(Path file) throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @FunctionalInterface
+  private interface LockAction {
+    void run() throws InterruptedException;
+  }
+}
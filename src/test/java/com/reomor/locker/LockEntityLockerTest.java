@@ -40,7 +40,7 @@ class LockEntityLockerTest extends AbstractEntityLockerTest {
     CountDownLatch completeLatch = new CountDownLatch(1);
     AtomicInteger errors = new AtomicInteger(0);
 
-    ReentrantLock lock = entityLocker.jailbreak().getOrCreateLock(TEST_ID, TEST_ENTITY_CLASS);
+    ReentrantLock lock = entityLocker.jailbreak().getOrCreateLock(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS));
 
     Thread thread1 = new Thread(() -> {
       try {
@@ -300,7 +300,7 @@ class LockEntityLockerTest extends AbstractEntityLockerTest {
 
         assertNotNull(entityLocker.jailbreak().clazzGlobalLocks.get(TEST_ENTITY_CLASS));
         assertNotNull(entityLocker.jailbreak().clazzGlobalLocksConditions.get(TEST_ENTITY_CLASS));
-        assertNotNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+        assertNotNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
 
         long threadId = Thread.currentThread().getId();
         Set<String> entityIds = entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS);
@@ -340,13 +340,13 @@ class LockEntityLockerTest extends AbstractEntityLockerTest {
     boolean lockResult = entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
     assertTrue(lockResult);
 
-    assertNotNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+    assertNotNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
     assertNotNull(entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS));
     assertEquals(1, entityLocker.jailbreak().clazzNumberOfLockedObjects.get(TEST_ENTITY_CLASS).get());
 
     entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
 
-    assertNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+    assertNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
     assertTrue(entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS).isEmpty());
     assertEquals(0, entityLocker.jailbreak().clazzNumberOfLockedObjects.get(TEST_ENTITY_CLASS).get());
   }
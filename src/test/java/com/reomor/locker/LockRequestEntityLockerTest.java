@@ -0,0 +1,180 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockRequestEntityLockerTest extends AbstractEntityLockerTest {
+
+  private final EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>();
+
+  private static LockRequest<Long> transfer(long from, long to) {
+    return LockRequest.<Long>builder()
+      .entity(Customer.class, 1L)
+      .entity(Account.class, from)
+      .entity(Account.class, to)
+      .global(Ledger.class)
+      .build();
+  }
+
+  @Test
+  void canonicalOrder() {
+
+    LockRequest<Long> request = transfer(2L, 1L);
+
+    assertEquals(List.of(Account.class, Customer.class, Ledger.class), request.getEntityClasses());
+    assertEquals(List.of(EntityKey.of(1L, Account.class), EntityKey.of(2L, Account.class)), request.getEntities(Account.class));
+    assertTrue(request.getEntities(Ledger.class).isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void locksEverythingAndUnlocksEverything() throws InterruptedException {
+
+    LockRequest<Long> request = transfer(2L, 1L);
+    assertTrue(entityLocker.lock(request, 1, TimeUnit.SECONDS));
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock(1L, Account.class, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lock(1L, Customer.class, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lock(1L, Ledger.class, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lock(3L, Account.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(3L, Account.class);
+      assertThrows(IllegalMonitorStateException.class, () -> entityLocker.unlock(request));
+    });
+    assertThrows(IllegalStateException.class, () -> entityLocker.lock(request, 1, TimeUnit.SECONDS));
+
+    entityLocker.unlock(request);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(request, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(request);
+    });
+    assertTrue(new EntityLockerMonitor(entityLocker).getLockedObjectsPerClass().values().stream().allMatch(count -> count == 0));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void nothingIsLockedOnTimeout() throws InterruptedException {
+
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+    entityLocker.lock(2L, Account.class);
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock(transfer(1L, 2L), 50, TimeUnit.MILLISECONDS));
+
+      // the account before the busy one and the other classes are given back
+      assertEquals(1, monitor.getHeldLocks(10).size());
+      assertTrue(entityLocker.lock(1L, Account.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(1L, Account.class);
+    });
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(1L, Customer.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(1L, Customer.class);
+      assertTrue(entityLocker.globalLock(Ledger.class));
+      entityLocker.globalUnlock(Ledger.class);
+    });
+
+    entityLocker.unlock(2L, Account.class);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void largeGroupEscalatesToGlobalLock() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .globalEscalationThreshold(3)
+      .metricsEnabled(true)
+      .build());
+    EntityLockerMonitor monitor = new EntityLockerMonitor(entityLocker);
+    LockRequest<Long> request = LockRequest.<Long>builder()
+      .entity(Account.class, 1L)
+      .entity(Account.class, 2L)
+      .entity(Account.class, 3L)
+      .entity(Customer.class, 1L)
+      .build();
+
+    assertTrue(entityLocker.lock(request, 1, TimeUnit.SECONDS));
+    assertEquals(Map.of(Account.class.getName(), Thread.currentThread().getName()), monitor.getGlobalLockHolders());
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock(4L, Account.class, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lock(2L, Customer.class, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(2L, Customer.class);
+    });
+
+    entityLocker.unlock(request);
+    assertTrue(monitor.getGlobalLockHolders().isEmpty());
+
+    LockMetricsSnapshot snapshot = entityLocker.getMetrics().snapshot(Account.class);
+    assertEquals(1, snapshot.getEscalations());
+    assertEquals(0, snapshot.getGlobalLockAcquisitions());
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void crossingRequestsDoNotDeadlock() throws InterruptedException {
+
+    int threads = 8;
+    int iterations = 200;
+    AtomicInteger failures = new AtomicInteger();
+
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      // half of the threads name the accounts the other way round
+      LockRequest<Long> request = t % 2 == 0 ? transfer(1L, 2L) : transfer(2L, 1L);
+      workers.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < iterations; i++) {
+            if (!entityLocker.lock(request, 5, TimeUnit.SECONDS)) {
+              failures.incrementAndGet();
+              continue;
+            }
+            entityLocker.unlock(request);
+          }
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      }));
+    }
+    workers.forEach(Thread::start);
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertEquals(0, failures.get());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void defaultImplementationLocksOneByOne() throws InterruptedException {
+
+    EntityLocker<Long> decorated = new CanonicalizingEntityLocker<>(entityLocker);
+    LockRequest<Long> request = transfer(1L, 2L);
+
+    assertTrue(decorated.lock(request, 1, TimeUnit.SECONDS));
+    inOtherThread(() -> assertFalse(decorated.lock(2L, Account.class, 20, TimeUnit.MILLISECONDS)));
+    decorated.unlock(request);
+    inOtherThread(() -> {
+      assertTrue(decorated.lock(2L, Account.class, 20, TimeUnit.MILLISECONDS));
+      decorated.unlock(2L, Account.class);
+    });
+  }
+
+  private static class Customer {
+  }
+
+  private static class Account {
+  }
+
+  private static class Ledger {
+  }
+}
@@ -0,0 +1,128 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.reomor.locker.LockTraceEvent.Type.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockTraceEntityLockerTest extends AbstractEntityLockerTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  @Timeout(value = 5)
+  void traceHasTimelinesOfEntities() throws InterruptedException, IOException {
+
+    Path file = dir.resolve("locks.trace");
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder().traceFile(file).build());
+    long main = Thread.currentThread().getId();
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    long[] other = new long[1];
+    inOtherThread(() -> {
+      other[0] = Thread.currentThread().getId();
+      assertFalse(entityLocker.lock(1L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    });
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    entityLocker.close();
+
+    LockTraceDecoder trace = LockTraceDecoder.read(file);
+    List<LockTraceEvent> timeline = trace.timelines().get("java.lang.Object#1");
+    assertEquals(List.of(ACQUIRE, ACQUIRE, WAIT, TIMEOUT, RELEASE), types(timeline));
+    assertEquals(main, timeline.get(0).getThreadId());
+    assertEquals(other[0], timeline.get(2).getThreadId());
+    assertEquals(main, timeline.get(2).getOtherThreadId());
+    assertTrue(timeline.get(3).getValue() > 0 && timeline.get(3).getValue() <= TimeUnit.MILLISECONDS.toNanos(20));
+
+    assertEquals(List.of(GLOBAL_ACQUIRE, GLOBAL_RELEASE), types(trace.timelines().get("java.lang.Object#*")));
+    assertEquals(0, trace.getDroppedRecords());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waitChainsFollowHoldersThatWait() throws InterruptedException, IOException {
+
+    Path file = dir.resolve("locks.trace");
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder().traceFile(file).build());
+    long main = Thread.currentThread().getId();
+    CountDownLatch secondLocked = new CountDownLatch(1);
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    // holds the second entity and waits for the first one
+    Thread middle = new Thread(() -> {
+      try {
+        entityLocker.lock(2L, TEST_ENTITY_CLASS);
+        secondLocked.countDown();
+        entityLocker.lock(1L, TEST_ENTITY_CLASS);
+        entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+        entityLocker.unlock(2L, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    middle.start();
+    secondLocked.await();
+    while (middle.getState() != Thread.State.WAITING) {
+      Thread.sleep(5);
+    }
+    long[] last = new long[1];
+    inOtherThread(() -> {
+      last[0] = Thread.currentThread().getId();
+      assertFalse(entityLocker.lock(2L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    });
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    middle.join();
+    entityLocker.close();
+
+    List<LockTraceDecoder.WaitChain> chains = LockTraceDecoder.read(file).waitChains(2);
+    assertEquals(1, chains.size());
+    assertFalse(chains.get(0).isDeadlock());
+    assertEquals(List.of(
+      new LockTraceDecoder.WaitLink(last[0], "java.lang.Object#2", middle.getId()),
+      new LockTraceDecoder.WaitLink(middle.getId(), "java.lang.Object#1", main)
+    ), chains.get(0).getLinks());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void fullRingDropsRecords() throws InterruptedException, IOException {
+
+    Path file = dir.resolve("locks.trace");
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .traceFile(file)
+      .traceBufferRecords(8)
+      .traceDrainPeriod(Duration.ofMinutes(1))
+      .build());
+
+    for (long id = 0; id < 50; id++) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+    entityLocker.close();
+
+    // the ring keeps the oldest records until the drainer takes them
+    LockTraceDecoder trace = LockTraceDecoder.read(file);
+    assertEquals(8, trace.getEvents().size());
+    assertEquals(92, trace.getDroppedRecords());
+    assertEquals("java.lang.Object#0", trace.getEvents().get(0).entity());
+  }
+
+  private static List<LockTraceEvent.Type> types(List<LockTraceEvent> events) {
+    return events.stream().map(LockTraceEvent::getType).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,100 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHeldLockWatchdogTest extends AbstractEntityLockerTest {
+
+  private static EntityLockerImpl<String> lockerWithWatchdog(Duration threshold, List<LongHeldLockReport> reports) {
+    return new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .watchdogThreshold(threshold)
+      .watchdogPeriod(Duration.ofMillis(20))
+      .watchdogListener(reports::add)
+      .build());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void contendedLongHeldLock_isReportedOnce() throws InterruptedException {
+
+    List<LongHeldLockReport> reports = new CopyOnWriteArrayList<>();
+    try (EntityLockerImpl<String> entityLocker = lockerWithWatchdog(Duration.ofMillis(50), reports)) {
+
+      CountDownLatch locked = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+
+      Thread holder = new Thread(() -> {
+        try {
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          locked.countDown();
+          release.await();
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      }, "watchdog-holder");
+      holder.start();
+      locked.await();
+
+      Thread waiter = new Thread(() -> {
+        try {
+          entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        } catch (InterruptedException ignore) {
+          /* NOP */
+        }
+      });
+      waiter.start();
+
+      while (reports.isEmpty()) {
+        Thread.sleep(10);
+      }
+      // a few more scans of the same acquisition
+      Thread.sleep(100);
+
+      release.countDown();
+      holder.join();
+      waiter.join();
+
+      assertEquals(1, reports.size());
+      LongHeldLockReport report = reports.get(0);
+      assertEquals(TEST_ENTITY_CLASS, report.getEntityClass());
+      assertEquals(TEST_ID, report.getEntityId());
+      assertEquals(holder, report.getOwner());
+      assertEquals(1, report.getQueueLength());
+      assertTrue(report.getHeldMillis() >= 50);
+      assertTrue(report.getOwnerStackTrace().length > 0);
+    }
+  }
+
+  @Test
+  void uncontendedLongHeldLock_isNotReported() throws InterruptedException {
+
+    List<LongHeldLockReport> reports = new CopyOnWriteArrayList<>();
+    try (EntityLockerImpl<String> entityLocker = lockerWithWatchdog(Duration.ofMillis(10), reports)) {
+      entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+      Thread.sleep(100);
+      entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    }
+    assertTrue(reports.isEmpty());
+  }
+
+  @Test
+  void classThresholdOverridesDefault() {
+
+    EntityLockerConfig config = EntityLockerConfig.builder()
+      .watchdogThreshold(Duration.ofSeconds(1))
+      .watchdogClassThreshold(TEST_ENTITY_CLASS, Duration.ofMillis(5))
+      .build();
+
+    assertEquals(Duration.ofMillis(5), config.getWatchdogClassThresholds().get(TEST_ENTITY_CLASS));
+    assertNull(EntityLockerConfig.defaults().getWatchdogThreshold());
+  }
+}
@@ -0,0 +1,146 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsEntityLockerTest extends AbstractEntityLockerTest {
+
+  private static EntityLockerImpl<String> lockerWithMetrics(int globalEscalationThreshold) {
+    return new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .globalEscalationThreshold(globalEscalationThreshold)
+      .metricsEnabled(true)
+      .build());
+  }
+
+  @Test
+  void metricsDisabledByDefault() {
+    assertNull(new EntityLockerImpl<String>().getMetrics());
+  }
+
+  @Test
+  void lockUnlock_countsAcquisitionAndHoldTime() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = lockerWithMetrics(EntityLockerConfig.DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD);
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    Thread.sleep(20);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+
+    LockMetricsSnapshot snapshot = entityLocker.getMetrics().snapshot(TEST_ENTITY_CLASS);
+
+    assertEquals(1, snapshot.getAcquisitions());
+    assertEquals(0, snapshot.getContendedAcquisitions());
+    assertEquals(0, snapshot.getTimeouts());
+    assertEquals(1, snapshot.getHoldTime().getCount());
+    assertTrue(snapshot.getHoldTime().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(snapshot.getHoldTime().percentile(99, TimeUnit.MILLISECONDS) >= 16);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void timeoutLock_countsTimeoutAndReleasesClass() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = lockerWithMetrics(EntityLockerConfig.DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    holder.start();
+    locked.await();
+
+    assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 100, TimeUnit.MILLISECONDS));
+
+    // the class is not blocked by the failed attempt
+    assertTrue(entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS, 100, TimeUnit.MILLISECONDS));
+    entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+
+    release.countDown();
+    holder.join();
+
+    LockMetricsSnapshot snapshot = entityLocker.getMetrics().snapshot(TEST_ENTITY_CLASS);
+    assertEquals(1, snapshot.getTimeouts());
+    assertEquals(2, snapshot.getAcquisitions());
+    assertEquals(0, entityLocker.getNumberOfLockedObject(TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void contendedLock_recordsWaitTime() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = lockerWithMetrics(EntityLockerConfig.DEFAULT_GLOBAL_LOCK_ESCALATION_THRESHOLD);
+
+    CountDownLatch locked = new CountDownLatch(1);
+
+    Thread holder = new Thread(() -> {
+      try {
+        entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        locked.countDown();
+        Thread.sleep(50);
+        entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    holder.start();
+    locked.await();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    holder.join();
+
+    LockMetricsSnapshot snapshot = entityLocker.getMetrics().snapshot(TEST_ENTITY_CLASS);
+    assertEquals(1, snapshot.getContendedAcquisitions());
+    assertTrue(snapshot.getEntityWaitTime().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertEquals(2, snapshot.getHoldTime().getCount());
+  }
+
+  @Test
+  void escalation_isCounted() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = lockerWithMetrics(2);
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS);
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+    LockMetricsSnapshot snapshot = entityLocker.getMetrics().snapshot(TEST_ENTITY_CLASS);
+    assertEquals(1, snapshot.getEscalations());
+    assertEquals(1, snapshot.getGlobalLockAcquisitions());
+    assertTrue(entityLocker.getMetrics().snapshot().containsKey(TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  void histogramPercentiles() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1_000L);
+    }
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.getCount());
+    assertEquals(100_000L, snapshot.getMaxNanos());
+    assertEquals(50_500L, snapshot.getMeanNanos());
+    // power of two buckets: the estimate is not below the real value and less than twice of it
+    assertTrue(snapshot.percentileNanos(50) >= 50_000L && snapshot.percentileNanos(50) < 100_000L);
+    assertEquals(100_000L, snapshot.percentileNanos(100));
+  }
+}
@@ -0,0 +1,140 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticReadEntityLockerTest extends AbstractEntityLockerTest {
+
+  private final EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .optimisticReadStripes(1024)
+    .globalEscalationThreshold(2)
+    .build());
+
+  @Test
+  @Timeout(value = 5)
+  void stampIsValidUntilEntityIsLocked() throws InterruptedException {
+
+    long stamp = entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS);
+    assertNotEquals(0, stamp);
+    assertTrue(entityLocker.validate(1L, TEST_ENTITY_CLASS, stamp));
+
+    inOtherThread(() -> {
+      entityLocker.lock(1L, TEST_ENTITY_CLASS);
+      entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    });
+    assertFalse(entityLocker.validate(1L, TEST_ENTITY_CLASS, stamp));
+
+    long next = entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS);
+    assertTrue(entityLocker.validate(1L, TEST_ENTITY_CLASS, next));
+    // reads leave nothing behind
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void lockedEntityHasNoStamp() throws InterruptedException {
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> {
+      assertEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+      assertFalse(entityLocker.validate(1L, TEST_ENTITY_CLASS, 0));
+    });
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+
+    assertNotEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void globalLockAndEscalationInvalidateStamps() throws InterruptedException {
+
+    long stamp = entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS);
+
+    entityLocker.globalLock(TEST_ENTITY_CLASS);
+    inOtherThread(() -> {
+      assertFalse(entityLocker.validate(1L, TEST_ENTITY_CLASS, stamp));
+      assertEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+    });
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+    long afterGlobal = entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS);
+    assertNotEquals(0, afterGlobal);
+
+    // the second entity crosses the threshold
+    entityLocker.lock(2L, TEST_ENTITY_CLASS);
+    entityLocker.lock(3L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> {
+      assertFalse(entityLocker.validate(1L, TEST_ENTITY_CLASS, afterGlobal));
+      assertEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+    });
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+
+    assertNotEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void validatedReadsSeeConsistentEntity() throws InterruptedException {
+
+    // written under the entity lock, the invariant is first == second
+    long[] entity = new long[2];
+    AtomicBoolean stop = new AtomicBoolean();
+    AtomicLong validated = new AtomicLong();
+    AtomicLong torn = new AtomicLong();
+
+    Thread writer = new Thread(() -> {
+      try {
+        while (!stop.get()) {
+          entityLocker.lock(1L, TEST_ENTITY_CLASS);
+          entity[0]++;
+          Thread.yield();
+          entity[1]++;
+          entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+          // gives readers a quiet window now and then
+          LockSupport.parkNanos(50_000);
+        }
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    Thread reader = new Thread(() -> {
+      while (!stop.get()) {
+        long stamp = entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS);
+        long first = entity[0];
+        Thread.yield();
+        long second = entity[1];
+        if (entityLocker.validate(1L, TEST_ENTITY_CLASS, stamp)) {
+          validated.incrementAndGet();
+          if (first != second) {
+            torn.incrementAndGet();
+          }
+        }
+      }
+    });
+    writer.start();
+    reader.start();
+    TimeUnit.MILLISECONDS.sleep(300);
+    stop.set(true);
+    writer.join();
+    reader.join();
+
+    assertEquals(0, torn.get());
+    assertTrue(validated.get() > 0);
+  }
+
+  @Test
+  void optimisticReadsAreOffByDefault() {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>();
+
+    assertEquals(0, entityLocker.tryOptimisticRead(1L, TEST_ENTITY_CLASS));
+    assertFalse(entityLocker.validate(1L, TEST_ENTITY_CLASS, 1));
+  }
+}
@@ -0,0 +1,198 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionEscalationEntityLockerTest extends AbstractEntityLockerTest {
+
+  // long ids are their own hash: 1, 5, 9 and 13 share a partition, 2 is in another one
+  private final EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .partitionEscalationThreshold(3)
+    .escalationPartitions(4)
+    .globalEscalationThreshold(100)
+    .build());
+
+  @Test
+  @Timeout(value = 5)
+  void batchTakesPartitionOthersUseTheRest() throws InterruptedException {
+
+    lock(1L, 5L, 9L);
+    // entity locks have turned into the partition
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(2L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      entityLocker.unlock(2L, TEST_ENTITY_CLASS);
+      assertFalse(entityLocker.lock(13L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    });
+    // covered by the partition
+    assertTrue(entityLocker.lock(13L, TEST_ENTITY_CLASS, 0, TimeUnit.MILLISECONDS));
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+
+    unlock(1L, 5L, 9L);
+    inOtherThread(() -> assertFalse(entityLocker.lock(13L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS)));
+    unlock(13L);
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(13L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      entityLocker.unlock(13L, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void partitionWithEntitiesOfOthersIsNotTaken() throws InterruptedException {
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread other = new Thread(() -> {
+      try {
+        entityLocker.lock(5L, TEST_ENTITY_CLASS);
+        locked.countDown();
+        release.await();
+        entityLocker.unlock(5L, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+
+    lock(1L, 9L, 13L);
+    assertEquals(4, entityLocker.entityLocksView().size());
+    release.countDown();
+    other.join();
+    unlock(1L, 9L, 13L);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waiterGetsEntityWhenPartitionIsReleased() throws InterruptedException {
+
+    lock(1L, 5L, 9L);
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread other = new Thread(() -> {
+      try {
+        entityLocker.lock(13L, TEST_ENTITY_CLASS);
+        locked.countDown();
+        entityLocker.unlock(13L, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+
+    assertFalse(locked.await(50, TimeUnit.MILLISECONDS));
+    unlock(1L, 5L, 9L);
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+    other.join();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void ownerGivesPartitionBackBeforeItWaits() throws InterruptedException {
+
+    lock(1L, 5L, 9L);
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread other = new Thread(() -> {
+      try {
+        entityLocker.lock(2L, TEST_ENTITY_CLASS);
+        locked.countDown();
+        // waits for the partition while holding what the owner is about to wait for
+        entityLocker.lock(13L, TEST_ENTITY_CLASS);
+        entityLocker.unlock(13L, TEST_ENTITY_CLASS);
+        entityLocker.unlock(2L, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+
+    lock(2L);
+    other.join();
+    // the partition has turned back into entity locks
+    assertEquals(4, entityLocker.entityLocksView().size());
+    unlock(2L, 1L, 5L, 9L);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void classLockCountsEntitiesOfPartitions() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .partitionEscalationThreshold(3)
+      .escalationPartitions(4)
+      .globalEscalationThreshold(6)
+      .build());
+
+    for (long id : new long[]{1, 5, 9, 2, 6}) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+    }
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(3L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      entityLocker.unlock(3L, TEST_ENTITY_CLASS);
+    });
+
+    // three entities of the partition, two others and the new one reach the class threshold
+    entityLocker.lock(10L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> assertFalse(entityLocker.lock(3L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS)));
+
+    for (long id : new long[]{1, 5, 9}) {
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+    entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(3L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+      entityLocker.unlock(3L, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  void partitionsAreOffByDefault() throws InterruptedException {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>();
+
+    for (long id : new long[]{1, 5, 9}) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+    }
+    assertEquals(3, entityLocker.entityLocksView().size());
+    for (long id : new long[]{1, 5, 9}) {
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+  }
+
+  @Test
+  void partitionSettingsAreChecked() {
+
+    EntityLockerConfig noPartitions = EntityLockerConfig.builder()
+      .partitionEscalationThreshold(3)
+      .escalationPartitions(0)
+      .build();
+    // partitions would never escalate before the class
+    EntityLockerConfig aboveGlobal = EntityLockerConfig.builder()
+      .partitionEscalationThreshold(6)
+      .globalEscalationThreshold(6)
+      .build();
+
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<Long>(noPartitions));
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<Long>(aboveGlobal));
+  }
+
+  private void lock(long... ids) throws InterruptedException {
+    for (long id : ids) {
+      entityLocker.lock(id, TEST_ENTITY_CLASS);
+    }
+  }
+
+  private void unlock(long... ids) {
+    for (long id : ids) {
+      entityLocker.unlock(id, TEST_ENTITY_CLASS);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityEntityLockerTest extends AbstractEntityLockerTest {
+
+  private static EntityLockerImpl<String> priorityLocker(Duration aging) {
+    return new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .classLockKind(TEST_ENTITY_CLASS, EntityLockKind.PRIORITY)
+      .priorityAging(aging)
+      .build());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void higherPriorityGoesFirst() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = priorityLocker(Duration.ofHours(1));
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread low = waiter(entityLocker, "low", LockPriority.LOW, 0, order);
+    awaitQueue(entityLocker, 1);
+    Thread high = waiter(entityLocker, "high", LockPriority.HIGH, 0, order);
+    awaitQueue(entityLocker, 2);
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    low.join();
+    high.join();
+
+    assertEquals(List.of("high", "low"), order);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void agingLetsLowPriorityThrough() throws InterruptedException {
+
+    // one level per millisecond
+    EntityLockerImpl<String> entityLocker = priorityLocker(Duration.ofMillis(1));
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread low = waiter(entityLocker, "low", LockPriority.LOW, 0, order);
+    awaitQueue(entityLocker, 1);
+    Thread.sleep(100);
+    Thread high = waiter(entityLocker, "high", LockPriority.HIGH, 0, order);
+    awaitQueue(entityLocker, 2);
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    low.join();
+    high.join();
+
+    assertEquals(List.of("low", "high"), order);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void earliestDeadlineFirst() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = priorityLocker(Duration.ofHours(1));
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread untimed = waiter(entityLocker, "untimed", LockPriority.NORMAL, 0, order);
+    awaitQueue(entityLocker, 1);
+    Thread relaxed = waiter(entityLocker, "relaxed", LockPriority.NORMAL, 4_000, order);
+    awaitQueue(entityLocker, 2);
+    Thread urgent = waiter(entityLocker, "urgent", LockPriority.NORMAL, 3_000, order);
+    awaitQueue(entityLocker, 3);
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    untimed.join();
+    relaxed.join();
+    urgent.join();
+
+    assertEquals(List.of("urgent", "relaxed", "untimed"), order);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void timedOutWaiterLeavesQueue() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = priorityLocker(Duration.ofHours(1));
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread low = waiter(entityLocker, "low", LockPriority.LOW, 0, order);
+    awaitQueue(entityLocker, 1);
+
+    CountDownLatch timedOut = new CountDownLatch(1);
+    Thread impatient = new Thread(() -> {
+      try {
+        assertFalse(entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, LockPriority.HIGH, 50, TimeUnit.MILLISECONDS));
+        timedOut.countDown();
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    impatient.start();
+    timedOut.await();
+    impatient.join();
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    low.join();
+
+    assertEquals(List.of("low"), order);
+    assertEquals(0, entityLocker.getNumberOfLockedObject(TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waiterDoesNotBlockOtherEntitiesOfClass() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = new EntityLockerImpl<>();
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+    Thread waiting = waiter(entityLocker, "waiting", LockPriority.NORMAL, 0, order);
+    awaitQueue(entityLocker, 1);
+
+    Thread other = new Thread(() -> {
+      try {
+        assertTrue(entityLocker.lock(TEST_ID2, TEST_ENTITY_CLASS, 100, TimeUnit.MILLISECONDS));
+        order.add("other");
+        entityLocker.unlock(TEST_ID2, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    other.start();
+    other.join();
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    waiting.join();
+
+    assertEquals(List.of("other", "waiting"), order);
+  }
+
+  private static Thread waiter(EntityLocker<String> entityLocker, String name, int priority,
+                               long timeoutMillis, List<String> order) {
+    Thread thread = new Thread(() -> {
+      try {
+        boolean locked = timeoutMillis > 0
+          ? entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, priority, timeoutMillis, TimeUnit.MILLISECONDS)
+          : entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, priority);
+        if (locked) {
+          order.add(name);
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        }
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    }, name);
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitQueue(EntityLockerImpl<String> entityLocker, int length) throws InterruptedException {
+    EntityKey<String> key = EntityKey.of(TEST_ID, TEST_ENTITY_CLASS);
+    while (entityLocker.entityLocksView().get(key).queuedWaiters() < length) {
+      Thread.sleep(5);
+    }
+  }
+}
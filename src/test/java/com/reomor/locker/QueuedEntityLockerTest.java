@@ -0,0 +1,163 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueuedEntityLockerTest extends AbstractEntityLockerTest {
+
+  private static EntityLockerImpl<String> queuedLocker() {
+    return new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .classLockKind(TEST_ENTITY_CLASS, EntityLockKind.QUEUED)
+      .build());
+  }
+
+  @Test
+  void reentrantAndOwnerOnly() throws InterruptedException {
+
+    QueuedTrackedLock lock = new QueuedTrackedLock();
+
+    assertTrue(lock.tryLock());
+    lock.lock();
+    assertEquals(2, lock.getHoldCount());
+    assertSame(Thread.currentThread(), lock.owner());
+
+    AtomicInteger errors = new AtomicInteger();
+    Thread stranger = new Thread(() -> {
+      assertFalse(lock.tryLock());
+      try {
+        lock.unlock();
+      } catch (IllegalMonitorStateException e) {
+        errors.incrementAndGet();
+      }
+    });
+    stranger.start();
+    stranger.join();
+    assertEquals(1, errors.get());
+
+    lock.unlock();
+    lock.unlock();
+    assertFalse(lock.isLocked());
+    assertThrows(IllegalMonitorStateException.class, lock::unlock);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waitersAreServedInArrivalOrder() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = queuedLocker();
+    List<Integer> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    List<Thread> waiters = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      waiters.add(waiter(entityLocker, i, 0, order));
+      awaitQueue(entityLocker, i + 1);
+    }
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    for (Thread waiter : waiters) {
+      waiter.join();
+    }
+
+    assertEquals(List.of(0, 1, 2, 3, 4), order);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void timedOutWaiterIsSkipped() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = queuedLocker();
+    List<Integer> order = new CopyOnWriteArrayList<>();
+
+    entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+
+    Thread first = waiter(entityLocker, 1, 0, order);
+    awaitQueue(entityLocker, 1);
+    Thread impatient = waiter(entityLocker, 2, 50, order);
+    awaitQueue(entityLocker, 2);
+    Thread last = waiter(entityLocker, 3, 0, order);
+    awaitQueue(entityLocker, 3);
+
+    impatient.join();
+    assertEquals(2, entityLocker.entityLocksView().get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)).queuedWaiters());
+
+    entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+    first.join();
+    last.join();
+
+    assertEquals(List.of(1, 3), order);
+    assertEquals(0, entityLocker.getNumberOfLockedObject(TEST_ENTITY_CLASS));
+  }
+
+  @Test
+  @Timeout(value = 10)
+  void mutualExclusionUnderContention() throws InterruptedException {
+
+    EntityLockerImpl<String> entityLocker = queuedLocker();
+    int threads = 32;
+    int iterations = 500;
+    int[] counter = new int[1];
+    AtomicInteger errors = new AtomicInteger();
+
+    ExecutorService service = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      service.submit(() -> {
+        try {
+          for (int j = 0; j < iterations; j++) {
+            entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+            try {
+              counter[0]++;
+            } finally {
+              entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+            }
+          }
+        } catch (InterruptedException e) {
+          errors.incrementAndGet();
+        }
+      });
+    }
+    service.shutdown();
+    assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(0, errors.get());
+    assertEquals(threads * iterations, counter[0]);
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+  }
+
+  private static Thread waiter(EntityLocker<String> entityLocker, int id, long timeoutMillis, List<Integer> order) {
+    Thread thread = new Thread(() -> {
+      try {
+        boolean locked = timeoutMillis > 0
+          ? entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, timeoutMillis, TimeUnit.MILLISECONDS)
+          : entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS);
+        if (locked) {
+          order.add(id);
+          entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
+        }
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitQueue(EntityLockerImpl<String> entityLocker, int length) throws InterruptedException {
+    EntityKey<String> key = EntityKey.of(TEST_ID, TEST_ENTITY_CLASS);
+    while (entityLocker.entityLocksView().get(key).queuedWaiters() < length) {
+      Thread.sleep(5);
+    }
+  }
+}
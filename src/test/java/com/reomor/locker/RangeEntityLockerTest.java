@@ -0,0 +1,160 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeEntityLockerTest extends AbstractEntityLockerTest {
+
+  private final EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .rangeLockClass(TEST_ENTITY_CLASS)
+    .build());
+
+  @Test
+  @Timeout(value = 5)
+  void rangeExcludesEntitiesInsideIt() throws InterruptedException {
+
+    assertTrue(entityLocker.lockRange(1000L, 2000L, TEST_ENTITY_CLASS));
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock(1000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lock(2000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lock(2001L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(2001L, TEST_ENTITY_CLASS);
+    });
+
+    // the owner of the range locks entities inside it as usual
+    assertTrue(entityLocker.lock(1500L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlock(1500L, TEST_ENTITY_CLASS);
+
+    entityLocker.unlockRange(1000L, 2000L, TEST_ENTITY_CLASS);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lock(1500L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlock(1500L, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void lockedEntityExcludesRangesOverIt() throws InterruptedException {
+
+    entityLocker.lock(1500L, TEST_ENTITY_CLASS);
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lockRange(1000L, 2000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lockRange(1501L, 2000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlockRange(1501L, 2000L, TEST_ENTITY_CLASS);
+    });
+
+    // own entities do not stand in the way
+    assertTrue(entityLocker.lockRange(1000L, 2000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    entityLocker.unlockRange(1000L, 2000L, TEST_ENTITY_CLASS);
+
+    entityLocker.unlock(1500L, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void overlappingRangesOfOtherThreadsExcludeEachOther() throws InterruptedException {
+
+    assertTrue(entityLocker.lockRange(1000L, 2000L, TEST_ENTITY_CLASS));
+    // nested range of the same thread
+    assertTrue(entityLocker.lockRange(1000L, 1500L, TEST_ENTITY_CLASS));
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lockRange(500L, 1000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lockRange(1200L, 1300L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lockRange(2000L, 3000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      assertTrue(entityLocker.lockRange(2001L, 3000L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlockRange(2001L, 3000L, TEST_ENTITY_CLASS);
+
+      assertThrows(IllegalMonitorStateException.class, () -> entityLocker.unlockRange(1000L, 2000L, TEST_ENTITY_CLASS));
+    });
+
+    entityLocker.unlockRange(1000L, 2000L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> assertFalse(entityLocker.lockRange(1500L, 1500L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS)));
+    entityLocker.unlockRange(1000L, 1500L, TEST_ENTITY_CLASS);
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lockRange(1500L, 1500L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+      entityLocker.unlockRange(1500L, 1500L, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void nestedRangeDoesNotHideOuterRange() throws InterruptedException {
+
+    assertTrue(entityLocker.lockRange(1L, 100L, TEST_ENTITY_CLASS));
+    // nearer to the ids above it than the outer range
+    assertTrue(entityLocker.lockRange(50L, 60L, TEST_ENTITY_CLASS));
+
+    inOtherThread(() -> {
+      assertFalse(entityLocker.lock(70L, TEST_ENTITY_CLASS, 200, TimeUnit.MILLISECONDS));
+      assertFalse(entityLocker.lockRange(70L, 80L, TEST_ENTITY_CLASS, 200, TimeUnit.MILLISECONDS));
+    });
+
+    entityLocker.unlockRange(50L, 60L, TEST_ENTITY_CLASS);
+    entityLocker.unlockRange(1L, 100L, TEST_ENTITY_CLASS);
+
+    inOtherThread(() -> {
+      assertTrue(entityLocker.lockRange(70L, 80L, TEST_ENTITY_CLASS, 200, TimeUnit.MILLISECONDS));
+      entityLocker.unlockRange(70L, 80L, TEST_ENTITY_CLASS);
+    });
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waitersGoOnWhenRangeIsReleased() throws InterruptedException {
+
+    AtomicBoolean entityLocked = new AtomicBoolean();
+    AtomicBoolean globalLocked = new AtomicBoolean();
+    CountDownLatch done = new CountDownLatch(2);
+
+    entityLocker.lockRange(1000L, 2000L, TEST_ENTITY_CLASS);
+
+    Thread entityWaiter = new Thread(() -> {
+      try {
+        entityLocker.lock(1500L, TEST_ENTITY_CLASS);
+        entityLocked.set(true);
+        entityLocker.unlock(1500L, TEST_ENTITY_CLASS);
+        done.countDown();
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    Thread globalWaiter = new Thread(() -> {
+      try {
+        entityLocker.globalLock(TEST_ENTITY_CLASS);
+        globalLocked.set(true);
+        entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+        done.countDown();
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    entityWaiter.start();
+    globalWaiter.start();
+
+    assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+    assertFalse(entityLocked.get());
+    assertFalse(globalLocked.get());
+
+    entityLocker.unlockRange(1000L, 2000L, TEST_ENTITY_CLASS);
+    done.await();
+    assertTrue(entityLocked.get());
+    assertTrue(globalLocked.get());
+  }
+
+  @Test
+  void rangesMustBeEnabledAndNotEmpty() {
+
+    assertThrows(IllegalArgumentException.class, () -> entityLocker.lockRange(1L, 2L, String.class));
+    assertThrows(IllegalArgumentException.class, () -> entityLocker.lockRange(2L, 1L, TEST_ENTITY_CLASS));
+  }
+}
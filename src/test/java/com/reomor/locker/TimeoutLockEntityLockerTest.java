@@ -212,7 +212,7 @@ public class TimeoutLockEntityLockerTest extends AbstractEntityLockerTest {
 
         assertNotNull(entityLocker.jailbreak().clazzGlobalLocks.get(TEST_ENTITY_CLASS));
         assertNotNull(entityLocker.jailbreak().clazzGlobalLocksConditions.get(TEST_ENTITY_CLASS));
-        assertNotNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+        assertNotNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
 
         long threadId = Thread.currentThread().getId();
         Set<String> entityIds = entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS);
@@ -252,13 +252,13 @@ public class TimeoutLockEntityLockerTest extends AbstractEntityLockerTest {
     boolean lockResult = entityLocker.lock(TEST_ID, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS);
     assertTrue(lockResult);
 
-    assertNotNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+    assertNotNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
     assertNotNull(entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS));
     assertEquals(1, entityLocker.jailbreak().clazzNumberOfLockedObjects.get(TEST_ENTITY_CLASS).get());
 
     entityLocker.unlock(TEST_ID, TEST_ENTITY_CLASS);
 
-    assertNull(entityLocker.jailbreak().entitiesLockMaps.get(TEST_ENTITY_CLASS).get(TEST_ID));
+    assertNull(entityLocker.jailbreak().entityLocks.get(EntityKey.of(TEST_ID, TEST_ENTITY_CLASS)));
     assertTrue(entityLocker.jailbreak().threadLockedEntities.get(threadId).get(TEST_ENTITY_CLASS).isEmpty());
     assertEquals(0, entityLocker.jailbreak().clazzNumberOfLockedObjects.get(TEST_ENTITY_CLASS).get());
   }
@@ -0,0 +1,160 @@
+package com.reomor.locker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferEntityLockerTest extends AbstractEntityLockerTest {
+
+  private final EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+    .lockTransfersEnabled(true)
+    .build());
+  // the other stage of the pipeline
+  private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+  @AfterEach
+  void stopWorker() {
+    worker.shutdownNow();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void targetHoldsAndUnlocksTransferredEntity() throws Exception {
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.transfer(1L, TEST_ENTITY_CLASS, workerThread());
+
+    // the lock of the entity is gone, the entity is not
+    assertTrue(entityLocker.entityLocksView().isEmpty());
+    assertFalse(entityLocker.lock(1L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    onWorker(() -> {
+      entityLocker.lock(1L, TEST_ENTITY_CLASS);
+      entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+      entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+    });
+    assertFalse(entityLocker.lock(1L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+
+    onWorker(() -> entityLocker.unlock(1L, TEST_ENTITY_CLASS));
+    assertTrue(entityLocker.lock(1L, TEST_ENTITY_CLASS, 1, TimeUnit.SECONDS));
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void waiterGetsEntityAfterTarget() throws Exception {
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      try {
+        entityLocker.lock(1L, TEST_ENTITY_CLASS);
+        locked.countDown();
+        entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+      } catch (InterruptedException ignore) {
+        /* NOP */
+      }
+    });
+    waiter.start();
+
+    entityLocker.transfer(1L, TEST_ENTITY_CLASS, workerThread());
+    assertFalse(locked.await(50, TimeUnit.MILLISECONDS));
+    onWorker(() -> entityLocker.unlock(1L, TEST_ENTITY_CLASS));
+    assertTrue(locked.await(1, TimeUnit.SECONDS));
+    waiter.join();
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void countsGoAlongWithEntities() throws Exception {
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>(EntityLockerConfig.builder()
+      .lockTransfersEnabled(true)
+      .globalEscalationThreshold(3)
+      .build());
+    LockRequest<Long> wholeClass = LockRequest.<Long>builder().global(TEST_ENTITY_CLASS).build();
+
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    entityLocker.lock(2L, TEST_ENTITY_CLASS);
+    entityLocker.transfer(1L, TEST_ENTITY_CLASS, workerThread());
+    entityLocker.transfer(2L, TEST_ENTITY_CLASS, workerThread());
+    // transferred entities still keep global lockers away
+    assertFalse(entityLocker.lock(wholeClass, 20, TimeUnit.MILLISECONDS));
+
+    // they count for the escalation of the worker now
+    onWorker(() -> entityLocker.lock(3L, TEST_ENTITY_CLASS));
+    assertFalse(entityLocker.lock(4L, TEST_ENTITY_CLASS, 20, TimeUnit.MILLISECONDS));
+    onWorker(() -> {
+      entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+      entityLocker.unlock(2L, TEST_ENTITY_CLASS);
+      entityLocker.globalUnlock(TEST_ENTITY_CLASS);
+    });
+
+    assertTrue(entityLocker.lock(wholeClass, 1, TimeUnit.SECONDS));
+    entityLocker.unlock(wholeClass);
+  }
+
+  @Test
+  @Timeout(value = 5)
+  void requestGoesToTarget() throws Exception {
+
+    LockRequest<Long> request = LockRequest.<Long>builder()
+      .entity(TEST_ENTITY_CLASS, 1L)
+      .entity(TEST_ENTITY_CLASS, 2L)
+      .build();
+
+    assertTrue(entityLocker.lock(request, 1, TimeUnit.SECONDS));
+    entityLocker.transfer(request, workerThread());
+    assertThrows(IllegalMonitorStateException.class, () -> entityLocker.unlock(request));
+
+    onWorker(() -> entityLocker.unlock(request));
+    assertTrue(entityLocker.lock(request, 1, TimeUnit.SECONDS));
+    entityLocker.unlock(request);
+  }
+
+  @Test
+  void onlyHeldEntitiesAreTransferred() throws InterruptedException {
+
+    assertThrows(IllegalMonitorStateException.class, () -> entityLocker.transfer(1L, TEST_ENTITY_CLASS, Thread.currentThread()));
+
+    EntityLockerImpl<Long> entityLocker = new EntityLockerImpl<>();
+    entityLocker.lock(1L, TEST_ENTITY_CLASS);
+    assertThrows(IllegalStateException.class, () -> entityLocker.transfer(1L, TEST_ENTITY_CLASS, Thread.currentThread()));
+    entityLocker.unlock(1L, TEST_ENTITY_CLASS);
+  }
+
+  @Test
+  void transfersNeedLockerWithoutParentsAndPartitions() {
+
+    EntityLockerConfig withParents = EntityLockerConfig.builder()
+      .lockTransfersEnabled(true)
+      .parent(String.class, EntityParent.<Long>of(TEST_ENTITY_CLASS, id -> id))
+      .build();
+    EntityLockerConfig withPartitions = EntityLockerConfig.builder()
+      .lockTransfersEnabled(true)
+      .partitionEscalationThreshold(3)
+      .build();
+
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<Long>(withParents));
+    assertThrows(IllegalArgumentException.class, () -> new EntityLockerImpl<Long>(withPartitions));
+  }
+
+  private Thread workerThread() throws ExecutionException, InterruptedException {
+    return worker.submit(Thread::currentThread).get();
+  }
+
+  private void onWorker(Action action) throws ExecutionException, InterruptedException {
+    worker.submit(() -> {
+      action.run();
+      return null;
+    }).get();
+  }
+}